@@ -0,0 +1,24 @@
+package receipt_scanner_bot;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Точка входа benchmarks.jar: те же аргументы, что у org.openjdk.jmh.Main,
+ * но профайлер GC включён всегда, чтобы вместе со временем печатались
+ * gc.alloc.rate.norm (байт на операцию) и число сборок.
+ *   java -jar benchmarks/target/benchmarks.jar Rendering -p items=300
+ */
+public class BenchmarkRunner {
+	
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		new Runner(new OptionsBuilder()
+				.parent(commandLine)
+				.addProfiler(GCProfiler.class)
+				.build())
+			.run();
+	}
+}
@@ -0,0 +1,48 @@
+package receipt_scanner_bot;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Потоковый Parser против прежнего разбора через org.json
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+	
+	@Param({"10", "300", "800"})
+	int items;
+	
+	private String json;
+	private final Parser streaming = new Parser();
+	private final DomReceiptParser dom = new DomReceiptParser();
+	
+	@Setup
+	public void setUp() {
+		json = ReceiptGenerator.receiptJson(items, 42);
+	}
+
+	@Benchmark
+	public List<Product> streaming() {
+		return streaming.parse(json);
+	}
+	
+	@Benchmark
+	public List<Product> dom() {
+		return dom.parse(json);
+	}
+}
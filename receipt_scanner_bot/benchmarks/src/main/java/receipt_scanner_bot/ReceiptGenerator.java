@@ -0,0 +1,138 @@
+package receipt_scanner_bot;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import receipt_scanner_bot.dto.PriceHistoryDTO;
+import receipt_scanner_bot.dto.ProductDetailStatsDTO;
+import receipt_scanner_bot.dto.ProductStatsDTO;
+import receipt_scanner_bot.dto.TrendDTO;
+
+// Синтетические данные для бенчмарков: ответы proverkacheka той же структуры, что и настоящие
+// (включая html и request), позиции чеков и DTO статистики
+final class ReceiptGenerator {
+	
+	private static final String[] NAMES = {
+		"Молоко ПРОСТОКВАШИНО паст. 3,2% 930мл",
+		"Хлеб Бородинский нарезка 350г",
+		"Бананы весовые",
+		"Сыр РОССИЙСКИЙ 50% фасованный",
+		"Яйцо куриное С1 10шт",
+		"Пакет-майка ПНД 65х40",
+		"Огурцы среднеплодные гладкие",
+		"Вода питьевая СВЯТОЙ ИСТОЧНИК негаз. 1,5л",
+		"Кофе JACOBS MONARCH растворимый 190г",
+		"Шоколад ALPEN GOLD молочный 85г"
+	};
+	
+	private static final DateTimeFormatter API_DATE_FORMATTER =
+			DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+	
+	private ReceiptGenerator() {}
+	
+	static String receiptJson(int items, long seed) {
+		Random random = new Random(seed);
+		StringBuilder sb = new StringBuilder(items * 320 + 1024);
+		StringBuilder html = new StringBuilder();
+		
+		sb.append("{\"code\":1,\"first\":0,\"data\":{\"json\":{\"code\":3,\"user\":\"ООО \\\"ГИПЕРМАРКЕТ\\\"\",")
+			.append("\"userInn\":\"7700000000\",\"requestNumber\":183,\"shiftNumber\":112,\"operationType\":1,")
+			.append("\"items\":[");
+		
+		long total = 0;
+		for (int i = 0; i < items; i++) {
+			String name = NAMES[random.nextInt(NAMES.length)] + " #" + i;
+			boolean weight = random.nextInt(4) == 0;
+			long price = 1_000 + random.nextInt(200_000);
+			String quantity = weight ? String.format("%d.%03d", random.nextInt(3), 1 + random.nextInt(999)) 
+					: String.valueOf(1 + random.nextInt(5));
+			long sum = Math.round(price * Double.parseDouble(quantity));
+			total += sum;
+			
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append("{\"nds\":2,\"sum\":").append(sum)
+				.append(",\"name\":\"").append(name)
+				.append("\",\"price\":").append(price)
+				.append(",\"ndsSum\":").append(sum / 11)
+				.append(",\"quantity\":").append(quantity)
+				.append(",\"paymentType\":4,\"productType\":1,\"itemsQuantityMeasure\":").append(weight ? 11 : 0)
+				.append('}');
+			html.append("<tr><td>").append(name).append("</td><td>").append(price).append("</td></tr>");
+		}
+		
+		sb.append("],\"nds10\":").append(total / 11)
+			.append(",\"totalSum\":").append(total)
+			.append(",\"dateTime\":\"").append(LocalDateTime.of(2024, 3, 15, 18, 42).format(API_DATE_FORMATTER))
+			.append("\",\"fiscalDriveNumber\":\"7284440500123456\",\"fiscalDocumentNumber\":12345,")
+			.append("\"fiscalSign\":3456789012},\"html\":\"<table>").append(html).append("</table>\"},")
+			.append("\"request\":{\"qrurl\":\"\",\"qrfile\":\"\",\"qrraw\":\"t=20240315T1842&s=1.00\",")
+			.append("\"manual\":{\"fn\":\"\",\"fd\":\"\",\"fp\":\"\",\"check_time\":\"\",\"type\":\"\",\"sum\":\"\"}}}");
+		return sb.toString();
+	}
+	
+	// Позиции покупок: distinctNames разных продуктов, даты в пределах года
+	static List<Product> products(int count, int distinctNames, long seed) {
+		Random random = new Random(seed);
+		LocalDate start = LocalDate.of(2024, 1, 1);
+		List<Product> products = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			int nameIndex = random.nextInt(distinctNames);
+			products.add(product(NAMES[nameIndex % NAMES.length] + " #" + nameIndex, random,
+					start.plusDays(random.nextInt(365))));
+		}
+		return products;
+	}
+	
+	// История одного продукта: по покупке в день подряд
+	static List<Product> history(String name, int count, long seed) {
+		Random random = new Random(seed);
+		LocalDate start = LocalDate.of(2020, 1, 1);
+		List<Product> products = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			products.add(product(name, random, start.plusDays(i)));
+		}
+		return products;
+	}
+	
+	static List<ProductStatsDTO> productStats(int count, long seed) {
+		Random random = new Random(seed);
+		List<ProductStatsDTO> stats = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			boolean weight = random.nextInt(4) == 0;
+			Quantity quantity = weight
+					? Quantity.ofMillis(1 + random.nextInt(50_000))
+					: Quantity.ofUnits(1 + random.nextInt(200));
+			stats.add(new ProductStatsDTO(NAMES[i % NAMES.length] + " #" + i, quantity,
+					Money.ofKopecks(10_000 + random.nextInt(10_000_000)), weight));
+		}
+		return stats;
+	}
+	
+	static ProductDetailStatsDTO productDetail(long seed) {
+		Random random = new Random(seed);
+		List<PriceHistoryDTO> history = new ArrayList<>();
+		LocalDate date = LocalDate.of(2024, 3, 1);
+		for (int i = 0; i < 5; i++) {
+			history.add(new PriceHistoryDTO(date.plusDays(i * 7L), Money.ofKopecks(8_000 + random.nextInt(2_000)),
+					i == 0 ? null : Money.parse("1.20"), i == 0 ? 0 : 150));
+		}
+		return new ProductDetailStatsDTO(NAMES[0], Money.parse("79.99"), Money.parse("99.99"),
+				Money.parse("89.45"), Money.parse("20.00"), new TrendDTO(Money.parse("5.00"), 625, 394, "UP"),
+				120, LocalDate.of(2023, 3, 1), LocalDate.of(2024, 3, 29), history);
+	}
+	
+	private static Product product(String name, Random random, LocalDate date) {
+		boolean weight = random.nextInt(4) == 0;
+		Quantity quantity = weight
+				? Quantity.ofMillis(1 + random.nextInt(2_999))
+				: Quantity.ofUnits(1 + random.nextInt(5));
+		Money price = Money.ofKopecks(1_000 + random.nextInt(200_000));
+		return new Product(name, quantity, price, price.times(quantity), date);
+	}
+}
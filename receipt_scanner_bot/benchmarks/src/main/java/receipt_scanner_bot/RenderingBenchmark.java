@@ -0,0 +1,82 @@
+package receipt_scanner_bot;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import receipt_scanner_bot.dto.ProductDetailStatsDTO;
+import receipt_scanner_bot.dto.ProductStatsDTO;
+import receipt_scanner_bot.dto.StatsPageDTO;
+
+// Тексты ответов: StatsFormatter, Product.toString и Utils.limitWords
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderingBenchmark {
+	
+	// Позиций в чеке для formatProducts и продуктов для formatAllProductsStats и formatStatsPage
+	@Param({"10", "300"})
+	int items;
+	
+	private final StatsFormatter formatter = new StatsFormatter();
+	private List<Product> receipt;
+	private List<ProductStatsDTO> stats;
+	private StatsPageDTO page;
+	private ProductDetailStatsDTO detail;
+	private Product product;
+	
+	@Setup
+	public void setUp() {
+		receipt = ReceiptGenerator.products(items, items, 42);
+		stats = ReceiptGenerator.productStats(items, 42);
+		page = new StatsPageDTO(stats, 2, items,
+				new StatsPageDTO.Cursor(stats.get(0).totalAmount(), 1),
+				new StatsPageDTO.Cursor(stats.get(stats.size() - 1).totalAmount(), items));
+		detail = ReceiptGenerator.productDetail(42);
+		product = receipt.get(0);
+	}
+
+	@Benchmark
+	public String formatProducts() {
+		return formatter.formatProducts(receipt);
+	}
+	
+	@Benchmark
+	public String formatAllProductsStats() {
+		return formatter.formatAllProductsStats(stats);
+	}
+	
+	@Benchmark
+	public String formatStatsPage() {
+		return formatter.formatStatsPage(page);
+	}
+	
+	@Benchmark
+	public String formatProductDetailStats() {
+		return formatter.formatProductDetailStats(detail);
+	}
+	
+	@Benchmark
+	public String productToString() {
+		return product.toString();
+	}
+	
+	@Benchmark
+	public String limitWords() {
+		return Utils.limitWords(product.getName(), 2);
+	}
+}
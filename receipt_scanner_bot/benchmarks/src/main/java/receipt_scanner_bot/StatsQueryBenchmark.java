@@ -0,0 +1,125 @@
+package receipt_scanner_bot;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import receipt_scanner_bot.dto.ProductDetailStatsDTO;
+import receipt_scanner_bot.dto.ProductStatsDTO;
+import receipt_scanner_bot.dto.StatsPageDTO;
+
+/**
+ * Запросы статистики DatabaseService на встроенной H2 в режиме MySQL с теми же миграциями Flyway.
+ * Группировка давно выполняется в БД (product_totals и GROUP BY по line_items),
+ * поэтому меряется весь путь: запрос, маппинг строк в DTO и транзакция.
+ * В чате STATS_CHAT rows позиций по rows/100 продуктам, в чате HISTORY_CHAT - история
+ * одного продукта из rows/10 покупок.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StatsQueryBenchmark {
+	
+	private static final long STATS_CHAT = 1L;
+	private static final long HISTORY_CHAT = 2L;
+	private static final String HISTORY_PRODUCT = "Молоко ПРОСТОКВАШИНО паст. 3,2% 930мл";
+	
+	// Позиции загружаются транзакциями по столько штук
+	private static final int LOAD_CHUNK = 10_000;
+	
+	@Param({"10000", "100000", "1000000"})
+	int rows;
+	
+	private ConfigurableApplicationContext context;
+	private DatabaseService databaseService;
+	private LineItemRepository lineItemRepository;
+	private StatsPageDTO secondPage;
+	
+	@Setup
+	public void setUp() {
+		context = new SpringApplicationBuilder(ReceiptScannerBotApplication.class)
+				.web(WebApplicationType.NONE)
+				// Аргументы командной строки важнее application.properties приложения
+				.run("--spring.datasource.url=jdbc:h2:mem:bench_" + rows + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+						"--spring.datasource.username=sa",
+						"--spring.datasource.password=",
+						"--spring.datasource.driver-class-name=org.h2.Driver",
+						"--spring.jpa.show-sql=false",
+						// Без Telegram: ни long polling, ни регистрации webhook
+						"--bot.mode=webhook",
+						"--bot.webhook.secret=benchmark",
+						"--bot.token=benchmark",
+						"--logging.level.root=WARN");
+		databaseService = context.getBean(DatabaseService.class);
+		lineItemRepository = context.getBean(LineItemRepository.class);
+		
+		load(STATS_CHAT, ReceiptGenerator.products(rows, Math.max(10, rows / 100), 42));
+		load(HISTORY_CHAT, ReceiptGenerator.history(HISTORY_PRODUCT, rows / 10, 42));
+		secondPage = databaseService.getStatsPageAfter(STATS_CHAT,
+				databaseService.getStatsPage(STATS_CHAT, 10).next(), 2, 10);
+	}
+	
+	private void load(long chatId, List<Product> products) {
+		for (int from = 0; from < products.size(); from += LOAD_CHUNK) {
+			databaseService.saveProducts(chatId, products.subList(from, Math.min(from + LOAD_CHUNK, products.size())));
+		}
+	}
+	
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	// /stats до перехода на страницы: весь агрегат чата из product_totals
+	@Benchmark
+	public List<ProductStatsDTO> allProductsFromTotals() {
+		return databaseService.getStatsForAllProducts(STATS_CHAT);
+	}
+	
+	// Запасной путь для чатов без product_totals: GROUP BY по line_items
+	@Benchmark
+	public List<LineItemRepository.AggregateRow> allProductsGroupBy() {
+		return lineItemRepository.aggregateStatsByChatId(STATS_CHAT);
+	}
+	
+	@Benchmark
+	public StatsPageDTO firstStatsPage() {
+		return databaseService.getStatsPage(STATS_CHAT, 10);
+	}
+	
+	// Кнопки "вперёд" и "назад": keyset-запросы от курсора второй страницы
+	@Benchmark
+	public StatsPageDTO nextStatsPage() {
+		return databaseService.getStatsPageAfter(STATS_CHAT, secondPage.next(), 3, 10);
+	}
+	
+	@Benchmark
+	public StatsPageDTO previousStatsPage() {
+		return databaseService.getStatsPageBefore(STATS_CHAT, secondPage.previous(), 1, 10);
+	}
+	
+	// Мин/макс/среднее, тренд и последние цены по длинной истории одного продукта
+	@Benchmark
+	public Optional<ProductDetailStatsDTO> productDetail() {
+		return databaseService.getStatsForProduct(HISTORY_CHAT, HISTORY_PRODUCT);
+	}
+}
@@ -1,15 +1,36 @@
 package receipt_scanner_bot;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.meta.api.methods.GetFile;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Document;
+import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
 @Component
 public class Bot extends TelegramLongPollingBot {
 	
@@ -20,6 +41,13 @@ public class Bot extends TelegramLongPollingBot {
 	private static final String STATS = "/stats";
 	private static final String HELP = "/help";
 	private static final String PRODUCT_STATS = "/product_stats";
+	private static final String IMPORT = "/import";
+	private static final String PERIOD = "/period";
+	private static final String MONTHS = "/months";
+	
+	// Для тега command: всё, что не команда, попадает в unknown, чтобы тег не разрастался
+	private static final Set<String> COMMANDS = Set.of(START, RECEIPT_UPLOAD, STATS, HELP, PRODUCT_STATS, IMPORT,
+			PERIOD, MONTHS);
 	
 	@Autowired
 	private ReceiptService service;
@@ -27,19 +55,82 @@ public class Bot extends TelegramLongPollingBot {
 	@Autowired
     private UserSessionService userSessionService;
 	
-	public Bot(@Value("${bot.token}") String botToken) {
-		super(botToken);
+	@Autowired
+	private UpdateDispatcher updateDispatcher;
+	
+	@Autowired
+	private OutboundMessageSender outboundMessageSender;
+	
+	@Autowired
+	private MeterRegistry meterRegistry;
+	
+	@Value("${import.max-document-size:5MB}")
+	private DataSize maxDocumentSize;
+	
+	public Bot(@Value("${bot.token}") String botToken,
+			@Value("${bot.api-url:https://api.telegram.org/bot}") String apiUrl) {
+		super(options(apiUrl), botToken);
+	}
+	
+	private static DefaultBotOptions options(String apiUrl) {
+		var options = new DefaultBotOptions();
+		options.setBaseUrl(apiUrl);
+		return options;
 	}
 
 	@Override
 	public void onUpdateReceived(Update update) {
 		
-		if(!update.hasMessage() || !update.getMessage().hasText()) {
+		if (update.hasCallbackQuery()) {
+			var callback = update.getCallbackQuery();
+			if (callback.getMessage() != null) {
+				updateDispatcher.dispatch(callback.getMessage().getChatId(), () -> handleCallback(callback));
+			}
 			return;
 		}
-		var message = update.getMessage().getText();
+		
+		// Документы нужны только для /import, остальное без текста пропускаем
+		if(!update.hasMessage() || !(update.getMessage().hasText() || update.getMessage().hasDocument())) {
+			return;
+		}
+		// Обработка уходит в пул, поток опроса (или webhook-запрос) сразу возвращается
+		updateDispatcher.dispatch(update.getMessage().getChatId(), () -> handleUpdate(update));
+	}
+	
+	// bot.updates: время обработки апдейта в пуле, без ожидания в очереди чата
+	private void handleUpdate(Update update) {
 		var chatId = update.getMessage().getChatId();
 		var userState = userSessionService.getUserState(chatId);
+		Timer.Sample sample = Timer.start(meterRegistry);
+		try {
+			handleMessage(update, userState);
+		} finally {
+			sample.stop(meterRegistry.timer("bot.updates", "command", commandTag(userState, update.getMessage().getText())));
+		}
+	}
+	
+	private static String commandTag(UserState userState, String message) {
+		return switch (userState) {
+			case WAITING_FOR_RECEIPT -> "receipt_qr";
+			case WAITING_FOR_PRODUCT -> "product_name";
+			case WAITING_FOR_IMPORT -> "import_document";
+			case WAITING_FOR_PERIOD -> "period_range";
+			default -> message != null && COMMANDS.contains(message) ? message.substring(1) : "unknown";
+		};
+	}
+	
+	private void handleMessage(Update update, UserState userState) {
+		var message = update.getMessage().getText();
+		var chatId = update.getMessage().getChatId();
+        
+        if (userState == UserState.WAITING_FOR_IMPORT) {
+            processImport(chatId, update.getMessage());
+            return;
+        }
+        
+        if (message == null) {
+            return;
+        }
         		
         if (userState == UserState.WAITING_FOR_RECEIPT) {
             processReceiptQr(chatId, message);
@@ -51,6 +142,11 @@ public class Bot extends TelegramLongPollingBot {
             return;
         }
         
+        if (userState == UserState.WAITING_FOR_PERIOD) {
+            processPeriodStat(chatId, message);
+            return;
+        }
+        
 		switch(message) {
 			case START -> {
 				String userName = update.getMessage().getChat().getFirstName();
@@ -65,6 +161,15 @@ public class Bot extends TelegramLongPollingBot {
 			case PRODUCT_STATS -> {
 				productCommand(chatId);
 			}
+			case IMPORT -> {
+				importCommand(chatId);
+			}
+			case PERIOD -> {
+				periodCommand(chatId);
+			}
+			case MONTHS -> {
+				sendMessage(chatId, service.getMonthlySpending(chatId));
+			}
 			case HELP -> helpCommand(chatId);
 			default -> unknownCommand(chatId);
 		}
@@ -91,6 +196,16 @@ public class Bot extends TelegramLongPollingBot {
 		*/
 	}
 	
+	private void processPeriodStat(Long chatId, String period) {
+		try {
+			sendMessage(chatId, service.getStatsForPeriod(chatId, period));
+		} catch (Exception e) {
+			sendMessage(chatId, "❌ Ошибка при подсчёте статистики за период: " + e.getMessage());
+		} finally {
+			userSessionService.clearUserState(chatId);
+		}
+	}
+	
 	private void processReceiptQr(Long chatId, String qrCode) {
 		try {
 	        // Обрабатываем QR-код
@@ -105,10 +220,89 @@ public class Bot extends TelegramLongPollingBot {
 	    }
     }
 
+	private void processImport(Long chatId, Message message) {
+		try {
+			String document = message.hasDocument() ? downloadDocument(message.getDocument()) : message.getText();
+			sendMessage(chatId, service.importReceipts(chatId, document));
+		} catch (IllegalArgumentException e) {
+			sendMessage(chatId, "❌ " + e.getMessage());
+		} catch (Exception e) {
+			sendMessage(chatId, "❌ Ошибка при импорте: " + e.getMessage());
+		} finally {
+			userSessionService.clearUserState(chatId);
+		}
+	}
+	
+	private String downloadDocument(Document document) throws TelegramApiException, IOException {
+		if (document.getFileSize() != null && document.getFileSize() > maxDocumentSize.toBytes()) {
+			throw tooLarge();
+		}
+		var file = execute(new GetFile(document.getFileId()));
+		// Размер в сообщении может отсутствовать: лимит проверяется и при чтении
+		int limit = Math.toIntExact(maxDocumentSize.toBytes());
+		try (InputStream in = downloadFileAsStream(file)) {
+			byte[] content = in.readNBytes(limit + 1);
+			if (content.length > limit) {
+				throw tooLarge();
+			}
+			return new String(content, StandardCharsets.UTF_8);
+		}
+	}
+	
+	private IllegalArgumentException tooLarge() {
+		return new IllegalArgumentException("Файл слишком большой, максимум " + maxDocumentSize.toMegabytes() + " МБ.");
+	}
+
 	private void statsCommand(Long chatId) {
 		
-		String statres = service.getStatsForAllProducts(chatId);
-		sendMessage(chatId, statres);
+		StatsPage page = service.getStatsPage(chatId, null);
+		var message = new SendMessage(String.valueOf(chatId), page.text());
+		message.setReplyMarkup(pageKeyboard(page));
+		outboundMessageSender.send(chatId, message);
+	}
+	
+	// Кнопки листания /stats: сообщение со статистикой редактируется на месте
+	private void handleCallback(CallbackQuery callback) {
+		Timer.Sample sample = Timer.start(meterRegistry);
+		try {
+			handleStatsPage(callback);
+		} finally {
+			sample.stop(meterRegistry.timer("bot.updates", "command", "stats_page"));
+		}
+	}
+	
+	private void handleStatsPage(CallbackQuery callback) {
+		Long chatId = callback.getMessage().getChatId();
+		Optional<StatsCallback> request = StatsCallback.parse(callback.getData());
+		// Ответ на callback убирает индикатор загрузки на кнопке, он не считается сообщением
+		try {
+			executeAsync(new AnswerCallbackQuery(callback.getId()));
+		} catch (TelegramApiException e) {
+			log.warn("Failed answering callback query in chat {}", chatId, e);
+		}
+		if (request.isEmpty()) {
+			return;
+		}
+		
+		StatsPage page = service.getStatsPage(chatId, request.get());
+		var edit = EditMessageText.builder()
+				.chatId(chatId)
+				.messageId(callback.getMessage().getMessageId())
+				.text(page.text())
+				.replyMarkup(pageKeyboard(page))
+				.build();
+		outboundMessageSender.send(chatId, edit);
+	}
+	
+	private InlineKeyboardMarkup pageKeyboard(StatsPage page) {
+		List<InlineKeyboardButton> row = new ArrayList<>(2);
+		if (page.previousCallback() != null) {
+			row.add(InlineKeyboardButton.builder().text("⬅️ Назад").callbackData(page.previousCallback()).build());
+		}
+		if (page.nextCallback() != null) {
+			row.add(InlineKeyboardButton.builder().text("Далее ➡️").callbackData(page.nextCallback()).build());
+		}
+		return row.isEmpty() ? null : new InlineKeyboardMarkup(List.of(row));
 	}
 	
 	private void uploadCommand(Long chatId) {
@@ -117,6 +311,20 @@ public class Bot extends TelegramLongPollingBot {
         sendMessage(chatId, "📷 Отправьте QR-код из чека в виде текста:");
 	}
 	
+	private void importCommand(Long chatId) {
+		
+		userSessionService.setUserState(chatId, UserState.WAITING_FOR_IMPORT);
+		sendMessage(chatId, "📥 Отправьте QR-коды чеков текстом, по одному в строке, "
+				+ "или файл .txt/.json со списком QR-кодов или сохранёнными ответами proverkacheka:");
+	}
+	
+	private void periodCommand(Long chatId) {
+		
+		userSessionService.setUserState(chatId, UserState.WAITING_FOR_PERIOD);
+		sendMessage(chatId, "📅 Напишите период: неделя, месяц, прошлый месяц, 03.2024, "
+				+ "01.03.2024 или 01.03.2024-15.03.2024:");
+	}
+	
 	private void productCommand(Long chatId) {
 		
 		userSessionService.setUserState(chatId, UserState.WAITING_FOR_PRODUCT);
@@ -138,21 +346,18 @@ public class Bot extends TelegramLongPollingBot {
 				/receipt_upload - Загрузить чек по QR-коду
 				/stats - Общая статистика по всем продуктам
 				/product_stats [название] - Детальная статистика по продукту
+				/period - Статистика за неделю, месяц или свои даты
+				/months - Траты по месяцам
+				/import - Загрузить сразу много чеков
 				/help - Подробная справка
 				""";
 		var formattedText = String.format(text, userName);
 		sendMessage(chatId, formattedText);
 		
 	}
+	// Отправка идёт через очередь с учётом лимитов Telegram, поток обработки не ждёт ответа API
 	private void sendMessage(Long chatId, String text) {
-		var chatIdStr = String.valueOf(chatId);
-		var sendMessage = new SendMessage(chatIdStr, text);
-		try {
-			execute(sendMessage);
-		} catch (TelegramApiException e) {
-			log.error("Failed sending message");
-		}
-		
+		outboundMessageSender.send(chatId, text);
 	}
 	@Override
 	public String getBotUsername() {
@@ -167,6 +372,9 @@ public class Bot extends TelegramLongPollingBot {
 		        /receipt_upload - Загрузить чек по QR-коду
 		        /stats - Общая статистика по всем продуктам
 		        /product_stats [название] - Детальная статистика по конкретному продукту
+		        /period - Статистика за неделю, месяц, прошлый месяц или диапазон дат
+		        /months - Траты по месяцам и изменение к предыдущему месяцу
+		        /import - Загрузить много чеков списком QR-кодов или файлом
 		        /help - Показать эту справку
 		        
 		        💡 После загрузки чека данные автоматически сохраняются для анализа.
@@ -0,0 +1,65 @@
+package receipt_scanner_bot;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Публикует в Micrometer счётчики, которые компоненты и так ведут у себя:
+ * очередь обработки апдейтов, очередь исходящих сообщений и кэш статистики.
+ * Таймеры по этапам (bot.updates, fns.requests, receipt.parse, db.operations, bot.messages.send)
+ * пишут сами компоненты.
+ */
+@Component
+public class BotMetrics implements MeterBinder {
+	
+	private final UpdateDispatcher updateDispatcher;
+	private final OutboundMessageSender outboundMessageSender;
+	private final StatsCache statsCache;
+	
+	public BotMetrics(UpdateDispatcher updateDispatcher,
+			OutboundMessageSender outboundMessageSender,
+			StatsCache statsCache) {
+		this.updateDispatcher = updateDispatcher;
+		this.outboundMessageSender = outboundMessageSender;
+		this.statsCache = statsCache;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("bot.dispatcher.queued", updateDispatcher, UpdateDispatcher::getQueueDepth)
+				.description("Апдейты, ожидающие обработки")
+				.register(registry);
+		Gauge.builder("bot.dispatcher.in-flight", updateDispatcher, UpdateDispatcher::getInFlight)
+				.description("Апдейты, обрабатываемые прямо сейчас")
+				.register(registry);
+		Gauge.builder("bot.dispatcher.active-chats", updateDispatcher, UpdateDispatcher::getActiveChats)
+				.description("Чаты с необработанными апдейтами")
+				.register(registry);
+		
+		Gauge.builder("bot.outbound.pending", outboundMessageSender, OutboundMessageSender::getPending)
+				.description("Сообщения, ожидающие отправки")
+				.register(registry);
+		FunctionCounter.builder("bot.outbound.sent", outboundMessageSender, OutboundMessageSender::getSent)
+				.register(registry);
+		FunctionCounter.builder("bot.outbound.dropped", outboundMessageSender, OutboundMessageSender::getDropped)
+				.register(registry);
+		FunctionCounter.builder("bot.outbound.retried", outboundMessageSender, OutboundMessageSender::getRetried)
+				.register(registry);
+		
+		Gauge.builder("stats.cache.size", statsCache, StatsCache::size)
+				.register(registry);
+		FunctionCounter.builder("stats.cache.requests", statsCache, cache -> cache.stats().hitCount())
+				.tag("result", "hit")
+				.register(registry);
+		FunctionCounter.builder("stats.cache.requests", statsCache, cache -> cache.stats().missCount())
+				.tag("result", "miss")
+				.register(registry);
+		FunctionCounter.builder("stats.cache.evictions", statsCache, cache -> cache.stats().evictionCount())
+				.description("Ответы, вытесненные по размеру или TTL")
+				.register(registry);
+	}
+}
@@ -0,0 +1,155 @@
+package receipt_scanner_bot;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.TemporalAdjusters;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Чтение и пересчёт календарных агрегатов product_daily_totals и product_monthly_totals.
+ * Период раскладывается на целые месяцы посередине и отдельные дни по краям (Buckets),
+ * поэтому отчёт за год читает не больше 12 месячных строк и 60 дневных на продукт, а не всю историю покупок.
+ * Пополняет агрегаты ReceiptBatchWriter при каждой записи чека, здесь - только пересчёт с нуля.
+ */
+@Repository
+public class CalendarRollupRepository {
+
+	// Продукт за период
+	public record PeriodTotal(String productName, Quantity totalQuantity, Money totalAmount,
+			boolean weightProduct, long purchaseCount) {}
+
+	public record MonthTotal(YearMonth month, Money totalAmount, long purchaseCount) {}
+
+	/**
+	 * Раскладка периода: дни [headFrom, headTo], месяцы [fromMonth, toMonth] и дни [tailFrom, tailTo].
+	 * Пустой отрезок - начало позже конца, BETWEEN по нему ничего не находит.
+	 */
+	record Buckets(LocalDate headFrom, LocalDate headTo, int fromMonth, int toMonth,
+			LocalDate tailFrom, LocalDate tailTo) {
+
+		static Buckets of(LocalDate from, LocalDate to) {
+			LocalDate firstFull = from.getDayOfMonth() == 1 ? from : from.withDayOfMonth(1).plusMonths(1);
+			LocalDate lastFull = to.equals(to.with(TemporalAdjusters.lastDayOfMonth()))
+					? to : to.withDayOfMonth(1).minusDays(1);
+			if (firstFull.isAfter(lastFull)) {
+				// Ни одного целого месяца внутри: только дни
+				return new Buckets(from, to, 0, -1, to.plusDays(1), to);
+			}
+			return new Buckets(from, firstFull.minusDays(1), monthKey(firstFull), monthKey(lastFull),
+					lastFull.plusDays(1), to);
+		}
+	}
+
+	private static final String BUCKET_COLUMNS =
+			"product_id, total_quantity, total_amount, is_weight_product, purchase_count";
+
+	private static final String SUM_PERIOD =
+			"SELECT n.name AS product_name, SUM(b.total_quantity) AS total_quantity, " +
+			"SUM(b.total_amount) AS total_amount, " +
+			"MAX(CASE WHEN b.is_weight_product THEN 1 ELSE 0 END) AS is_weight_product, " +
+			"SUM(b.purchase_count) AS purchase_count " +
+			"FROM (SELECT " + BUCKET_COLUMNS + " FROM product_daily_totals " +
+			"      WHERE chat_id = ? AND purchase_date BETWEEN ? AND ? " +
+			"      UNION ALL " +
+			"      SELECT " + BUCKET_COLUMNS + " FROM product_monthly_totals " +
+			"      WHERE chat_id = ? AND purchase_month BETWEEN ? AND ? " +
+			"      UNION ALL " +
+			"      SELECT " + BUCKET_COLUMNS + " FROM product_daily_totals " +
+			"      WHERE chat_id = ? AND purchase_date BETWEEN ? AND ?) b " +
+			"JOIN product_names n ON n.id = b.product_id " +
+			"GROUP BY b.product_id, n.name " +
+			"ORDER BY total_amount DESC, n.name ASC";
+
+	private static final String SUM_BY_MONTH =
+			"SELECT purchase_month, SUM(total_amount) AS total_amount, SUM(purchase_count) AS purchase_count " +
+			"FROM product_monthly_totals WHERE chat_id = ? AND purchase_month BETWEEN ? AND ? " +
+			"GROUP BY purchase_month ORDER BY purchase_month";
+
+	private static final String MONTH_OF_DATE =
+			"EXTRACT(YEAR FROM purchase_date) * 100 + EXTRACT(MONTH FROM purchase_date)";
+
+	private static final String REBUILD_DAILY =
+			"INSERT INTO product_daily_totals " +
+			"(chat_id, purchase_date, product_id, total_quantity, total_amount, is_weight_product, purchase_count) " +
+			"SELECT chat_id, purchase_date, product_id, SUM(quantity), SUM(total_price), " +
+			"MAX(CASE WHEN is_weight_product THEN 1 ELSE 0 END), COUNT(*) " +
+			"FROM line_items WHERE chat_id = ? AND purchase_date BETWEEN ? AND ? " +
+			"GROUP BY chat_id, purchase_date, product_id";
+
+	private static final String REBUILD_MONTHLY =
+			"INSERT INTO product_monthly_totals " +
+			"(chat_id, purchase_month, product_id, total_quantity, total_amount, is_weight_product, purchase_count) " +
+			"SELECT chat_id, " + MONTH_OF_DATE + ", product_id, SUM(total_quantity), SUM(total_amount), " +
+			"MAX(CASE WHEN is_weight_product THEN 1 ELSE 0 END), SUM(purchase_count) " +
+			"FROM product_daily_totals WHERE chat_id = ? AND purchase_date BETWEEN ? AND ? " +
+			"GROUP BY chat_id, " + MONTH_OF_DATE + ", product_id";
+
+	private final JdbcTemplate jdbcTemplate;
+
+	public CalendarRollupRepository(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	// Год и месяц числом, как в product_monthly_totals.purchase_month
+	static int monthKey(LocalDate date) {
+		return date.getYear() * 100 + date.getMonthValue();
+	}
+
+	static int monthKey(YearMonth month) {
+		return month.getYear() * 100 + month.getMonthValue();
+	}
+
+	// Продукты за [from, to] включительно, по убыванию суммы
+	public List<PeriodTotal> sumPeriod(Long chatId, LocalDate from, LocalDate to) {
+		Buckets buckets = Buckets.of(from, to);
+		return jdbcTemplate.query(SUM_PERIOD, (rs, rowNum) -> new PeriodTotal(
+				rs.getString("product_name"),
+				Quantity.of(rs.getBigDecimal("total_quantity")),
+				Money.of(rs.getBigDecimal("total_amount")),
+				rs.getInt("is_weight_product") == 1,
+				rs.getLong("purchase_count")),
+				chatId, buckets.headFrom(), buckets.headTo(),
+				chatId, buckets.fromMonth(), buckets.toMonth(),
+				chatId, buckets.tailFrom(), buckets.tailTo());
+	}
+
+	// Суммы по месяцам [from, to]; месяцы без покупок пропущены
+	public List<MonthTotal> sumByMonth(Long chatId, YearMonth from, YearMonth to) {
+		return jdbcTemplate.query(SUM_BY_MONTH, (rs, rowNum) -> {
+			int key = rs.getInt("purchase_month");
+			return new MonthTotal(YearMonth.of(key / 100, key % 100),
+					Money.of(rs.getBigDecimal("total_amount")),
+					rs.getLong("purchase_count"));
+		}, chatId, monthKey(from), monthKey(to));
+	}
+
+	/**
+	 * Пересчёт агрегатов чата по line_items для месяцев, в которые попадает [from, to]:
+	 * месячная строка складывается из дневных, поэтому дни пересчитываются целыми месяцами.
+	 * Возвращает число записанных строк обеих таблиц.
+	 */
+	public int rebuild(Long chatId, LocalDate from, LocalDate to) {
+		LocalDate first = from.withDayOfMonth(1);
+		LocalDate last = to.with(TemporalAdjusters.lastDayOfMonth());
+		jdbcTemplate.update("DELETE FROM product_daily_totals WHERE chat_id = ? AND purchase_date BETWEEN ? AND ?",
+				chatId, first, last);
+		jdbcTemplate.update("DELETE FROM product_monthly_totals WHERE chat_id = ? AND purchase_month BETWEEN ? AND ?",
+				chatId, monthKey(first), monthKey(last));
+		int days = jdbcTemplate.update(REBUILD_DAILY, chatId, first, last);
+		return days + jdbcTemplate.update(REBUILD_MONTHLY, chatId, first, last);
+	}
+
+	// Пересчёт всей истории чата
+	public int rebuild(Long chatId) {
+		jdbcTemplate.update("DELETE FROM product_daily_totals WHERE chat_id = ?", chatId);
+		jdbcTemplate.update("DELETE FROM product_monthly_totals WHERE chat_id = ?", chatId);
+		LocalDate[] range = jdbcTemplate.queryForObject(
+				"SELECT MIN(purchase_date), MAX(purchase_date) FROM line_items WHERE chat_id = ?",
+				(rs, rowNum) -> new LocalDate[] {rs.getObject(1, LocalDate.class), rs.getObject(2, LocalDate.class)},
+				chatId);
+		return range[0] == null ? 0 : rebuild(chatId, range[0], range[1]);
+	}
+}
@@ -0,0 +1,69 @@
+package receipt_scanner_bot;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Простой предохранитель для внешнего API.
+ * После failureThreshold ошибок подряд запросы отклоняются сразу в течение openDuration,
+ * затем пропускается один пробный запрос: успех закрывает предохранитель, ошибка снова открывает.
+ */
+class CircuitBreaker {
+
+	enum State { CLOSED, OPEN, HALF_OPEN }
+
+	private final int failureThreshold;
+	private final long openNanos;
+	private final LongSupplier clock;
+
+	private State state = State.CLOSED;
+	private int consecutiveFailures;
+	private long openedAt;
+	private boolean trialInFlight;
+
+	CircuitBreaker(int failureThreshold, Duration openDuration) {
+		this(failureThreshold, openDuration, System::nanoTime);
+	}
+
+	CircuitBreaker(int failureThreshold, Duration openDuration, LongSupplier clock) {
+		this.failureThreshold = failureThreshold;
+		this.openNanos = openDuration.toNanos();
+		this.clock = clock;
+	}
+
+	synchronized boolean tryAcquire() {
+		if (state == State.OPEN) {
+			if (clock.getAsLong() - openedAt < openNanos) {
+				return false;
+			}
+			state = State.HALF_OPEN;
+			trialInFlight = false;
+		}
+		if (state == State.HALF_OPEN) {
+			if (trialInFlight) {
+				return false;
+			}
+			trialInFlight = true;
+		}
+		return true;
+	}
+
+	synchronized void onSuccess() {
+		state = State.CLOSED;
+		consecutiveFailures = 0;
+		trialInFlight = false;
+	}
+
+	synchronized void onFailure() {
+		if (state == State.HALF_OPEN || ++consecutiveFailures >= failureThreshold) {
+			state = State.OPEN;
+			openedAt = clock.getAsLong();
+			consecutiveFailures = 0;
+			trialInFlight = false;
+		}
+	}
+
+	synchronized State getState() {
+		return state;
+	}
+}
@@ -1,11 +1,21 @@
 package receipt_scanner_bot;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
 import okhttp3.MultipartBody;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -15,35 +25,148 @@ import okhttp3.Response;
 @Component
 public class Client {
 	
-	@Value("${fns.url}")
-	private String URL;
+	private final OkHttpClient client;
+	private final HttpUrl url;
+	private final MultipartBody.Part tokenPart;
 	
-	@Value("${fns.token}")
-	private String token;
+	private final Duration callTimeout;
+	private final int maxAttempts;
+	private final Duration retryBackoff;
+	private final CircuitBreaker circuitBreaker;
+	private final MeterRegistry meterRegistry;
 	
-	@Autowired
-	private OkHttpClient client; 
+	public Client(OkHttpClient client,
+			@Value("${fns.url}") String url,
+			@Value("${fns.token}") String token,
+			@Value("${fns.http.call-timeout:20s}") Duration callTimeout,
+			@Value("${fns.http.max-attempts:3}") int maxAttempts,
+			@Value("${fns.http.retry-backoff:500ms}") Duration retryBackoff,
+			@Value("${fns.circuit-breaker.failure-threshold:5}") int failureThreshold,
+			@Value("${fns.circuit-breaker.open-duration:30s}") Duration openDuration,
+			MeterRegistry meterRegistry) {
+		this.client = client;
+		this.url = HttpUrl.get(url);
+		// Токен одинаков для всех запросов, собираем эту часть формы один раз
+		this.tokenPart = MultipartBody.Part.createFormData("token", token);
+		this.callTimeout = callTimeout;
+		this.maxAttempts = maxAttempts;
+		this.retryBackoff = retryBackoff;
+		this.circuitBreaker = new CircuitBreaker(failureThreshold, openDuration);
+		this.meterRegistry = meterRegistry;
+		meterRegistry.gauge("fns.circuit.open", circuitBreaker,
+				breaker -> breaker.getState() == CircuitBreaker.State.OPEN ? 1 : 0);
+	}
 	
 	public String getReceiptData(String qrRawData) throws IOException {
-        // create multipart form data
-        RequestBody requestBody = new MultipartBody.Builder()
-            .setType(MultipartBody.FORM)
-            .addFormDataPart("qrraw", qrRawData)
-            .addFormDataPart("token", token)
-            .build();
-        
-        Request request = new Request.Builder()
-            .url(URL)
-            .header("Cookie", "ENGID=1.1")
-            .post(requestBody)
-            .build();
-        
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("Ошибка запроса: " + response.code() + " " + response.message());
-            }
-            
-            return response.body().string();
-        }
-    }
+		try {
+			return getReceiptDataAsync(qrRawData).get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException io) {
+				throw io;
+			}
+			throw new IOException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Запрос прерван");
+		}
+	}
+	
+	public CompletableFuture<String> getReceiptDataAsync(String qrRawData) {
+		if (!circuitBreaker.tryAcquire()) {
+			meterRegistry.counter("fns.receipts.rejected").increment();
+			return CompletableFuture.failedFuture(
+					new IOException("Сервис проверки чеков временно недоступен, попробуйте позже"));
+		}
+		
+		// create multipart form data
+		RequestBody requestBody = new MultipartBody.Builder()
+			.setType(MultipartBody.FORM)
+			.addFormDataPart("qrraw", qrRawData)
+			.addPart(tokenPart)
+			.build();
+		
+		// Один и тот же запрос переиспользуется во всех попытках
+		Request request = new Request.Builder()
+			.url(url)
+			.header("Cookie", "ENGID=1.1")
+			.post(requestBody)
+			.build();
+		
+		// fns.receipts - весь запрос чека вместе с повторами, fns.requests - каждая попытка отдельно
+		Timer.Sample sample = Timer.start(meterRegistry);
+		CompletableFuture<String> result = new CompletableFuture<>();
+		execute(request, 1, result);
+		return result.whenComplete((body, error) -> sample.stop(meterRegistry.timer("fns.receipts",
+				"outcome", error == null ? "success" : "failure")));
+	}
+	
+	CircuitBreaker.State getCircuitState() {
+		return circuitBreaker.getState();
+	}
+	
+	private void execute(Request request, int attempt, CompletableFuture<String> result) {
+		Call call = client.newCall(request);
+		call.timeout().timeout(callTimeout.toMillis(), TimeUnit.MILLISECONDS);
+		long started = System.nanoTime();
+		call.enqueue(new Callback() {
+			
+			@Override
+			public void onFailure(Call call, IOException e) {
+				recordAttempt(started, e instanceof InterruptedIOException ? "timeout" : "io_error");
+				// Таймауты (в том числе общий дедлайн вызова) считаем временной ошибкой
+				onAttemptFailed(request, attempt, result, e, e instanceof InterruptedIOException);
+			}
+			
+			@Override
+			public void onResponse(Call call, Response response) {
+				try (response) {
+					if (!response.isSuccessful()) {
+						recordAttempt(started, String.valueOf(response.code()));
+						onAttemptFailed(request, attempt, result,
+								new IOException("Ошибка запроса: " + response.code() + " " + response.message()),
+								response.code() >= 500);
+						return;
+					}
+					String body = response.body().string();
+					// Время успешной попытки - вместе с чтением тела ответа
+					recordAttempt(started, String.valueOf(response.code()));
+					circuitBreaker.onSuccess();
+					result.complete(body);
+				} catch (IOException e) {
+					recordAttempt(started, e instanceof InterruptedIOException ? "timeout" : "io_error");
+					onAttemptFailed(request, attempt, result, e, e instanceof InterruptedIOException);
+				}
+			}
+		});
+	}
+	
+	private void onAttemptFailed(Request request, int attempt, CompletableFuture<String> result,
+			IOException error, boolean retryable) {
+		if (!retryable) {
+			// Ошибка клиента (4xx и т.п.) не говорит о недоступности сервиса
+			circuitBreaker.onSuccess();
+			result.completeExceptionally(error);
+			return;
+		}
+		
+		circuitBreaker.onFailure();
+		if (attempt >= maxAttempts || circuitBreaker.getState() == CircuitBreaker.State.OPEN) {
+			result.completeExceptionally(error);
+			return;
+		}
+		
+		CompletableFuture.delayedExecutor(backoffMillis(attempt), TimeUnit.MILLISECONDS)
+			.execute(() -> execute(request, attempt + 1, result));
+	}
+	
+	private void recordAttempt(long started, String status) {
+		meterRegistry.timer("fns.requests", "status", status)
+			.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+	}
+	
+	// Экспоненциальная задержка с джиттером: половина фиксированная, половина случайная
+	private long backoffMillis(int attempt) {
+		long base = retryBackoff.toMillis() << (attempt - 1);
+		return base / 2 + ThreadLocalRandom.current().nextLong(base / 2 + 1);
+	}
 }
@@ -1,28 +1,54 @@
 package receipt_scanner_bot;
 
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
 import okhttp3.logging.HttpLoggingInterceptor;
 import okhttp3.logging.HttpLoggingInterceptor.Level;
 
 @Configuration
+@EnableScheduling
 public class Config {
 
 	private HttpLoggingInterceptor log = new HttpLoggingInterceptor().setLevel(Level.BASIC);
 	
 	@Bean
-	public OkHttpClient okHttpClient() {
+	public OkHttpClient okHttpClient(
+			@Value("${fns.http.max-concurrent-requests:16}") int maxConcurrentRequests,
+			@Value("${fns.http.max-idle-connections:8}") int maxIdleConnections,
+			@Value("${fns.http.keep-alive:5m}") Duration keepAlive,
+			@Value("${fns.http.connect-timeout:5s}") Duration connectTimeout,
+			@Value("${fns.http.read-timeout:15s}") Duration readTimeout) {
+		// Все запросы идут на один хост, поэтому общий лимит и лимит на хост совпадают
+		var dispatcher = new Dispatcher();
+		dispatcher.setMaxRequests(maxConcurrentRequests);
+		dispatcher.setMaxRequestsPerHost(maxConcurrentRequests);
+		
 		return new OkHttpClient.Builder()
+				.dispatcher(dispatcher)
+				.connectionPool(new ConnectionPool(maxIdleConnections, keepAlive.toMillis(), TimeUnit.MILLISECONDS))
+				.connectTimeout(connectTimeout)
+				.readTimeout(readTimeout)
+				.writeTimeout(readTimeout)
 				.addInterceptor(log)
 				.build();
 	}
 	
+	// Long polling включён по умолчанию; при bot.mode=webhook апдейты принимает WebhookController
 	@Bean
+	@ConditionalOnProperty(name = "bot.mode", havingValue = "polling", matchIfMissing = true)
 	public TelegramBotsApi telegramBotsApi(Bot bot) throws TelegramApiException{
 		var api = new TelegramBotsApi(DefaultBotSession.class);
 		api.registerBot(bot);
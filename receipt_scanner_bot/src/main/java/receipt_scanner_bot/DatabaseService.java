@@ -1,54 +1,93 @@
 package receipt_scanner_bot;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.PersistenceContext;
+import receipt_scanner_bot.CalendarRollupRepository.MonthTotal;
+import receipt_scanner_bot.CalendarRollupRepository.PeriodTotal;
+import receipt_scanner_bot.LineItemRepository.AggregateRow;
+import receipt_scanner_bot.LineItemRepository.PricePoint;
+import receipt_scanner_bot.LineItemRepository.PriceSummary;
+import receipt_scanner_bot.ProductTotalRepository.TotalRow;
+import receipt_scanner_bot.dto.MonthlySpendingDTO;
+import receipt_scanner_bot.dto.PeriodStatsDTO;
 import receipt_scanner_bot.dto.PriceHistoryDTO;
 import receipt_scanner_bot.dto.ProductDetailStatsDTO;
 import receipt_scanner_bot.dto.ProductStatsDTO;
+import receipt_scanner_bot.dto.StatsPageDTO;
 import receipt_scanner_bot.dto.TrendDTO;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Transactional
 public class DatabaseService {
+	
+	// Столько последних цен показывает StatsFormatter.formatProductDetailStats
+	static final int PRICE_HISTORY_LIMIT = 5;
+    
+    private final LineItemRepository lineItemRepository;
+    private final ProductTotalRepository productTotalRepository;
+    private final CalendarRollupRepository calendarRollupRepository;
+    private final ReceiptRepository receiptRepository;
+    private final ReceiptBatchWriter receiptBatchWriter;
+    private final ProductDictionary productDictionary;
+    private final MeterRegistry meterRegistry;
     
-    private final PurchaseDetailRepository purchaseDetailRepository;
-    private final ProductStatRepository productStatRepository;
+    public DatabaseService(LineItemRepository lineItemRepository,
+                          ProductTotalRepository productTotalRepository,
+                          CalendarRollupRepository calendarRollupRepository,
+                          ReceiptRepository receiptRepository,
+                          ReceiptBatchWriter receiptBatchWriter,
+                          ProductDictionary productDictionary,
+                          MeterRegistry meterRegistry) {
+        this.lineItemRepository = lineItemRepository;
+        this.productTotalRepository = productTotalRepository;
+        this.calendarRollupRepository = calendarRollupRepository;
+        this.receiptRepository = receiptRepository;
+        this.receiptBatchWriter = receiptBatchWriter;
+        this.productDictionary = productDictionary;
+        this.meterRegistry = meterRegistry;
+    }
     
-    @PersistenceContext
-    private EntityManager entityManager;
+    // Чек и его позиции сохраняются в одной транзакции.
+    // Повторный чек упадёт на уникальном ключе receipts до записи позиций.
+    @Transactional
+    public void saveReceipt(Long chatId, ReceiptQr qr, List<Product> products) {
+        receiptRepository.saveAndFlush(new ReceiptEntity(chatId, qr));
+        saveProducts(chatId, products);
+    }
     
-    public DatabaseService(PurchaseDetailRepository purchaseDetailRepository,
-                          ProductStatRepository productStatRepository) {
-        this.purchaseDetailRepository = purchaseDetailRepository;
-        this.productStatRepository = productStatRepository;
+    // Пачка чеков из импорта одной транзакцией: чеки по одному (нужны уникальные ключи),
+    // позиции всех чеков - одним пакетом
+    @Transactional
+    public void saveReceipts(Long chatId, List<ParsedReceipt> receipts) {
+        List<Product> products = new ArrayList<>();
+        for (ParsedReceipt receipt : receipts) {
+            receiptRepository.save(new ReceiptEntity(chatId, receipt.qr()));
+            products.addAll(receipt.products());
+        }
+        receiptRepository.flush();
+        saveProducts(chatId, products);
     }
     
     @Transactional
     public void saveProducts(Long chatId, List<Product> products) {
     	
         try {
-            List<PurchaseDetailEntity> purchaseDetails = new ArrayList<>();
-            List<ProductStatEntity> productStats = new ArrayList<>();
-            
-            for (Product product : products) {
-                purchaseDetails.add(convertToPurchaseDetail(chatId, product));
-                productStats.add(convertToProductStat(chatId, product));
-            }
-            
-            purchaseDetailRepository.saveAll(purchaseDetails);
-            productStatRepository.saveAll(productStats);
-            
+            long started = System.nanoTime();
+            receiptBatchWriter.write(chatId, products);
+            record("save_products", started, products.size());
         } catch (Exception e) {
             throw new RuntimeException("Failed to save products", e);
         }
@@ -56,176 +95,246 @@ public class DatabaseService {
     
     @Transactional(readOnly = true)
     public List<ProductStatsDTO> getStatsForAllProducts(Long chatId) {
-    	
-    	entityManager.clear();
-    	
-        List<PurchaseDetailEntity> allPurchases = purchaseDetailRepository
-        		.findByChatIdOrderByPurchaseDateAscProductNameAsc(chatId);
-        
-        if (allPurchases.isEmpty()) {
-            return List.of(); // Возвращаем пустой список вместо строки
+        long started = System.nanoTime();
+        List<ProductStatsDTO> stats = productTotalRepository.findStatsByChatId(chatId);
+        if (stats.isEmpty()) {
+            // Для чатов, чья история ещё не попала в product_totals (до запуска пересчёта),
+            // агрегируем line_items запросом GROUP BY
+            stats = new ArrayList<>();
+            for (AggregateRow row : lineItemRepository.aggregateStatsByChatId(chatId)) {
+                stats.add(new ProductStatsDTO(row.getProductName(), Quantity.of(row.getTotalQuantity()),
+                		Money.of(row.getTotalAmount()), row.isWeightProduct()));
+            }
         }
-        
-        return allPurchases.stream()
-            .collect(Collectors.groupingBy(
-                PurchaseDetailEntity::getProductName,
-                Collectors.collectingAndThen(
-                    Collectors.toList(),
-                    list -> {
-                    	BigDecimal totalQuantity = list.stream()
-                    			.map(PurchaseDetailEntity::getQuantity)
-                    			.reduce(BigDecimal.ZERO, BigDecimal::add);
-                    	
-                        BigDecimal totalAmount = list.stream()
-                            .map(PurchaseDetailEntity::getPrice)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
-                        
-                        boolean isWeightProduct = list.get(0).isWeightProduct();
-                        
-                        return new ProductStatsDTO(
-                            list.get(0).getProductName(), // Берем имя из любой записи
-                            totalQuantity, 
-                            totalAmount,
-                            isWeightProduct
-                        );
-                    }
-                )
-            ))
-            .values().stream()
-            .sorted((p1, p2) -> p2.totalAmount().compareTo(p1.totalAmount()))
-            .collect(Collectors.toList());
+        record("stats_all", started, stats.size());
+        return stats;
+    }
+    
+    // Первая страница /stats: продукты с наибольшей суммой покупок
+    @Transactional(readOnly = true)
+    public StatsPageDTO getStatsPage(Long chatId, int pageSize) {
+        long started = System.nanoTime();
+        List<TotalRow> rows = productTotalRepository.findFirstPage(chatId, Limit.of(pageSize + 1));
+        boolean hasNext = rows.size() > pageSize;
+        record("stats_page", started, rows.size());
+        return buildPage(trim(rows, pageSize), 1, pageSize, false, hasNext);
+    }
+    
+    // Страница page, начинающаяся сразу после cursor
+    @Transactional(readOnly = true)
+    public StatsPageDTO getStatsPageAfter(Long chatId, StatsPageDTO.Cursor cursor, int page, int pageSize) {
+        long started = System.nanoTime();
+        List<TotalRow> rows = productTotalRepository.findPageAfter(chatId,
+        		cursor.totalAmount(), cursor.productId(), Limit.of(pageSize + 1));
+        boolean hasNext = rows.size() > pageSize;
+        record("stats_page", started, rows.size());
+        return buildPage(trim(rows, pageSize), page, pageSize, true, hasNext);
+    }
+    
+    // Страница page, заканчивающаяся прямо перед cursor
+    @Transactional(readOnly = true)
+    public StatsPageDTO getStatsPageBefore(Long chatId, StatsPageDTO.Cursor cursor, int page, int pageSize) {
+        long started = System.nanoTime();
+        List<TotalRow> rows = productTotalRepository.findPageBefore(chatId,
+        		cursor.totalAmount(), cursor.productId(), Limit.of(pageSize + 1));
+        boolean hasPrevious = rows.size() > pageSize;
+        record("stats_page", started, rows.size());
+        List<TotalRow> items = new ArrayList<>(trim(rows, pageSize));
+        Collections.reverse(items);
+        // Если перед страницей ничего нет, это первая страница, даже если номер успел устареть
+        return buildPage(items, hasPrevious ? Math.max(page, 2) : 1, pageSize, hasPrevious, true);
+    }
+    
+    // Время операции (db.operations) и сколько строк она записала или прочитала (db.rows)
+    private void record(String operation, long started, int rows) {
+        meterRegistry.timer("db.operations", "operation", operation)
+        		.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        meterRegistry.summary("db.rows", "operation", operation).record(rows);
+    }
+    
+    private List<TotalRow> trim(List<TotalRow> rows, int pageSize) {
+        return rows.size() > pageSize ? rows.subList(0, pageSize) : rows;
+    }
+    
+    private StatsPageDTO buildPage(List<TotalRow> rows, int page, int pageSize,
+    		boolean hasPrevious, boolean hasNext) {
+        List<ProductStatsDTO> items = new ArrayList<>(rows.size());
+        for (TotalRow row : rows) {
+            items.add(new ProductStatsDTO(row.getProductName(), row.getTotalQuantity(),
+            		row.getTotalAmount(), row.isWeightProduct()));
+        }
+        if (rows.isEmpty()) {
+            return new StatsPageDTO(items, page, pageSize, null, null);
+        }
+        return new StatsPageDTO(items, page, pageSize,
+        		hasPrevious ? cursorOf(rows.get(0)) : null,
+        		hasNext ? cursorOf(rows.get(rows.size() - 1)) : null);
+    }
+    
+    private StatsPageDTO.Cursor cursorOf(TotalRow row) {
+        return new StatsPageDTO.Cursor(row.getTotalAmount(), row.getProductId());
+    }
+    
+    // Пересчёт агрегата чата с нуля по line_items
+    @Transactional
+    public int rebuildProductTotals(Long chatId) {
+        productTotalRepository.deleteByChatId(chatId);
+        return productTotalRepository.rebuildFromLineItems(chatId);
+    }
+    
+    // Пересчёт календарных агрегатов чата с нуля
+    @Transactional
+    public int rebuildCalendarTotals(Long chatId) {
+        return calendarRollupRepository.rebuild(chatId);
+    }
+    
+    // Пересчёт календарных агрегатов за месяцы, в которые попадает [from, to]:
+    // для чеков, дописанных в line_items в обход saveProducts
+    @Transactional
+    public int rebuildCalendarTotals(Long chatId, LocalDate from, LocalDate to) {
+        return calendarRollupRepository.rebuild(chatId, from, to);
+    }
+    
+    // Статистика за [from, to] включительно: первые limit продуктов по сумме и итоги по всем
+    @Transactional(readOnly = true)
+    public PeriodStatsDTO getStatsForPeriod(Long chatId, LocalDate from, LocalDate to, int limit) {
+        long started = System.nanoTime();
+        List<PeriodTotal> totals = calendarRollupRepository.sumPeriod(chatId, from, to);
+        List<ProductStatsDTO> items = new ArrayList<>(Math.min(limit, totals.size()));
+        Money totalAmount = Money.ZERO;
+        long purchaseCount = 0;
+        for (PeriodTotal total : totals) {
+            totalAmount = totalAmount.plus(total.totalAmount());
+            purchaseCount += total.purchaseCount();
+            if (items.size() < limit) {
+                items.add(new ProductStatsDTO(total.productName(), total.totalQuantity(),
+                		total.totalAmount(), total.weightProduct()));
+            }
+        }
+        record("stats_period", started, totals.size());
+        return new PeriodStatsDTO(from, to, items, totalAmount, totals.size(), purchaseCount);
+    }
+    
+    // Траты по месяцам с from по to включительно; месяц без покупок идёт с нулевой суммой
+    @Transactional(readOnly = true)
+    public List<MonthlySpendingDTO> getMonthlySpending(Long chatId, YearMonth from, YearMonth to) {
+        long started = System.nanoTime();
+        List<MonthTotal> totals = calendarRollupRepository.sumByMonth(chatId, from, to);
+        List<MonthlySpendingDTO> months = new ArrayList<>();
+        int next = 0;
+        Money previous = null;
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            Money amount = Money.ZERO;
+            long purchases = 0;
+            if (next < totals.size() && totals.get(next).month().equals(month)) {
+                amount = totals.get(next).totalAmount();
+                purchases = totals.get(next).purchaseCount();
+                next++;
+            }
+            if (previous != null && previous.signum() != 0) {
+                Money change = amount.minus(previous);
+                months.add(new MonthlySpendingDTO(month, amount, purchases, change, basisPoints(change, previous)));
+            } else {
+                months.add(new MonthlySpendingDTO(month, amount, purchases, null, 0));
+            }
+            previous = amount;
+        }
+        record("stats_months", started, totals.size());
+        return months;
+    }
+    
+    @Transactional(readOnly = true)
+    public List<Long> findAllChatIds() {
+        return lineItemRepository.findDistinctChatIds();
+    }
+    
+    @Transactional(readOnly = true)
+    public List<Long> findChatIdsWithoutTotals() {
+        return lineItemRepository.findChatIdsWithoutTotals();
     }
     
     @Transactional(readOnly = true)
     public Optional<ProductDetailStatsDTO> getStatsForProduct(Long chatId, String productName) {
-        List<ProductStatEntity> stats = productStatRepository
-        		.findByChatIdAndProductNameOrderByStatDateAsc(chatId, productName);
+        long started = System.nanoTime();
+        Optional<Integer> productId = productDictionary.findId(chatId, productName);
+        if (productId.isEmpty()) {
+            record("stats_product", started, 0);
+            return Optional.empty();
+        }
         
-        if (stats.isEmpty()) {
+        PriceSummary summary = lineItemRepository.summarizePrices(chatId, productId.get());
+        
+        if (summary == null || summary.getRecordCount() == 0) {
+            record("stats_product", started, 0);
             return Optional.empty();
         }
         
-        // Вычисления статистики
-        BigDecimal minPrice = stats.stream()
-            .map(ProductStatEntity::getUnitPrice)
-            .min(BigDecimal::compareTo)
-            .orElse(BigDecimal.ZERO);
-            
-        BigDecimal maxPrice = stats.stream()
-            .map(ProductStatEntity::getUnitPrice)
-            .max(BigDecimal::compareTo)
-            .orElse(BigDecimal.ZERO);
-            
-        BigDecimal averagePrice = stats.stream()
-            .map(ProductStatEntity::getUnitPrice)
-            .reduce(BigDecimal.ZERO, BigDecimal::add)
-            .divide(BigDecimal.valueOf(stats.size()), 2, RoundingMode.HALF_UP);
+        int recordCount = summary.getRecordCount().intValue();
+        Money minPrice = Money.of(summary.getMinPrice());
+        Money maxPrice = Money.of(summary.getMaxPrice());
+        Money averagePrice = Money.of(summary.getTotalPrice()).dividedBy(recordCount);
         
-        TrendDTO trend = calculateTrend(stats);
-        List<PriceHistoryDTO> priceHistory = buildPriceHistory(stats);
+        TrendDTO trend = calculateTrend(summary);
+        List<PriceHistoryDTO> priceHistory = buildPriceHistory(lineItemRepository
+        		.findRecentPrices(chatId, productId.get(), PRICE_HISTORY_LIMIT + 1, PRICE_HISTORY_LIMIT));
+        record("stats_product", started, recordCount);
         
         return Optional.of(new ProductDetailStatsDTO(
             productName,
             minPrice,
             maxPrice,
             averagePrice,
-            maxPrice.subtract(minPrice),
-            formatTrend(trend), // Только форматирование строки
-            stats.size(),
-            stats.get(0).getStatDate(),
-            stats.get(stats.size()-1).getStatDate(),
+            maxPrice.minus(minPrice),
+            trend,
+            recordCount,
+            summary.getFirstDate(),
+            summary.getLastDate(),
             priceHistory
         ));
     }
     
-    // Логика вычисления тренда (возвращает DTO, а не строку)
-    private TrendDTO calculateTrend(List<ProductStatEntity> stats) {
-        if (stats.size() < 2) {
-            return new TrendDTO(BigDecimal.ZERO, BigDecimal.ZERO, 0, "STABLE");
+    // Логика вычисления тренда; текст собирает StatsFormatter
+    private TrendDTO calculateTrend(PriceSummary summary) {
+        if (summary.getRecordCount() < 2) {
+            return new TrendDTO(Money.ZERO, 0, 0, "STABLE");
         }
         
-        BigDecimal firstPrice = stats.get(0).getUnitPrice();
-        BigDecimal lastPrice = stats.get(stats.size() - 1).getUnitPrice();
-        BigDecimal change = lastPrice.subtract(firstPrice);
-        BigDecimal percentChange = change.divide(firstPrice, 4, RoundingMode.HALF_UP)
-                                       .multiply(BigDecimal.valueOf(100));
+        Money firstPrice = Money.of(summary.getFirstPrice());
+        Money lastPrice = Money.of(summary.getLastPrice());
+        Money change = lastPrice.minus(firstPrice);
+        long percentChange = basisPoints(change, firstPrice);
         
-        long daysBetween = ChronoUnit.DAYS.between(
-            stats.get(0).getStatDate(), 
-            stats.get(stats.size() - 1).getStatDate()
-        );
+        long daysBetween = ChronoUnit.DAYS.between(summary.getFirstDate(), summary.getLastDate());
         
-        String direction = change.compareTo(BigDecimal.ZERO) > 0 ? "UP" : 
-                          change.compareTo(BigDecimal.ZERO) < 0 ? "DOWN" : "STABLE";
+        String direction = change.signum() > 0 ? "UP" : 
+                          change.signum() < 0 ? "DOWN" : "STABLE";
         
         return new TrendDTO(change, percentChange, daysBetween, direction);
     }
     
-    // Логика построения истории цен
-    private List<PriceHistoryDTO> buildPriceHistory(List<ProductStatEntity> stats) {
-        List<PriceHistoryDTO> history = new ArrayList<>();
+    // История приходит от новых к старым, разворачиваем в хронологический порядок.
+    // Процент считается здесь по паре цен с тем же округлением HALF_UP, что и раньше.
+    private List<PriceHistoryDTO> buildPriceHistory(List<PricePoint> points) {
+        List<PriceHistoryDTO> history = new ArrayList<>(points.size());
         
-        for (int i = 0; i < stats.size(); i++) {
-            ProductStatEntity current = stats.get(i);
-            String change = i > 0 ? calculatePriceChange(stats.get(i-1).getUnitPrice(), current.getUnitPrice()) : "";
+        for (int i = points.size() - 1; i >= 0; i--) {
+            PricePoint current = points.get(i);
+            Money price = Money.of(current.getUnitPrice());
+            Money previous = current.getPreviousPrice() != null ? Money.of(current.getPreviousPrice()) : null;
             
-            history.add(new PriceHistoryDTO(
-                current.getStatDate(),
-                current.getUnitPrice(),
-                change
-            ));
+            if (previous != null && previous.signum() != 0) {
+                Money change = price.minus(previous);
+                history.add(new PriceHistoryDTO(current.getPurchaseDate(), price, change, basisPoints(change, previous)));
+            } else {
+                history.add(new PriceHistoryDTO(current.getPurchaseDate(), price, null, 0));
+            }
         }
         
         return history;
     }
     
-    // Логика расчета изменения цены
-    private String calculatePriceChange(BigDecimal previousPrice, BigDecimal currentPrice) {
-        if (previousPrice.compareTo(BigDecimal.ZERO) == 0) return "";
-        
-        BigDecimal change = currentPrice.subtract(previousPrice);
-        BigDecimal percent = change.divide(previousPrice, 4, RoundingMode.HALF_UP)
-                                 .multiply(BigDecimal.valueOf(100));
-        
-        if (change.compareTo(BigDecimal.ZERO) > 0) {
-            return String.format("( ↑ +%.1f%%)", percent.doubleValue());
-        } else if (change.compareTo(BigDecimal.ZERO) < 0) {
-            return String.format("( ↓ %.1f%%)", percent.doubleValue());
-        } else {
-            return "(→ 0%)";
-        }
+    // Изменение в процентах от base с двумя знаками (базисные пункты), HALF_UP
+    private long basisPoints(Money change, Money base) {
+        return Money.divideHalfUp(change.kopecks() * 10_000, base.kopecks());
     }
-    
-    // Только форматирование тренда в строку
-    private String formatTrend(TrendDTO trend) {
-        return switch (trend.direction()) {
-            case "UP" -> String.format("📈 Рост +%.2f руб. (+%.1f%%) за %d дней", 
-                trend.changeAmount().doubleValue(), trend.changePercent().doubleValue(), trend.daysBetween());
-            case "DOWN" -> String.format("📉 Снижение %.2f руб. (%.1f%%) за %d дней", 
-                trend.changeAmount().doubleValue(), trend.changePercent().doubleValue(), trend.daysBetween());
-            default -> "➡️ Цена стабильна";
-        };
-    }
-    
-    // Вспомогательные методы для конвертации
-    //разные методы для конвертации в подходящие классы для каждой из двух таблиц
-    private PurchaseDetailEntity convertToPurchaseDetail(Long chatId, Product product) {
-        return new PurchaseDetailEntity(
-        	chatId,
-            product.getName(),
-            product.getQuantity(),
-            product.getTotalPrice(),
-            product.getDate(),
-            product.getIsWeightProduct()
-        );
-    }
-    
-    private ProductStatEntity convertToProductStat(Long chatId, Product product) {
-        return new ProductStatEntity(
-        	chatId,
-            product.getName(),
-            product.getPricePerUnit(),
-            product.getDate()
-        );
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,71 @@
+package receipt_scanner_bot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Разбор документа для /import.
+ * Текст - по строке QR-кода на строку. JSON - массив, элементы которого либо строки QR-кодов,
+ * либо сохранённые ответы proverkacheka; одиночный ответ proverkacheka тоже принимается.
+ */
+final class ImportDocument {
+	
+	// Элемент импорта: строка QR-кода (нужен запрос к proverkacheka) или готовый ответ
+	record Source(String qr, String response) {
+		
+		static Source qr(String qr) {
+			return new Source(qr, null);
+		}
+		
+		static Source response(String response) {
+			return new Source(null, response);
+		}
+	}
+	
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	
+	private ImportDocument() {}
+	
+	static List<Source> parse(String content) {
+		String text = content.strip();
+		if (text.startsWith("[") || text.startsWith("{")) {
+			return parseJson(text);
+		}
+		
+		List<Source> sources = new ArrayList<>();
+		for (String line : text.split("\\R")) {
+			if (!line.isBlank()) {
+				sources.add(Source.qr(line.strip()));
+			}
+		}
+		return sources;
+	}
+	
+	private static List<Source> parseJson(String text) {
+		JsonNode root;
+		try {
+			root = MAPPER.readTree(text);
+		} catch (JsonProcessingException e) {
+			throw new IllegalArgumentException("Не удалось прочитать JSON: " + e.getOriginalMessage());
+		}
+		
+		if (root.isObject()) {
+			return List.of(Source.response(root.toString()));
+		}
+		List<Source> sources = new ArrayList<>(root.size());
+		for (JsonNode element : root) {
+			if (element.isTextual()) {
+				sources.add(Source.qr(element.asText().strip()));
+			} else if (element.isObject()) {
+				sources.add(Source.response(element.toString()));
+			} else {
+				throw new IllegalArgumentException("Неожиданный элемент JSON: " + element);
+			}
+		}
+		return sources;
+	}
+}
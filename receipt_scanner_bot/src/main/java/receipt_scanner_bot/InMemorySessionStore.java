@@ -0,0 +1,55 @@
+package receipt_scanner_bot;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+// Состояния в памяти процесса: истекают через ttl после записи, при переполнении вытесняются
+@Component
+@ConditionalOnProperty(name = "session.store", havingValue = "memory", matchIfMissing = true)
+public class InMemorySessionStore implements SessionStore {
+	
+	private final Cache<Long, UserState> states;
+	
+	@Autowired
+	public InMemorySessionStore(@Value("${session.ttl:15m}") Duration ttl,
+			@Value("${session.max-size:100000}") long maxSize) {
+		this(ttl, maxSize, Ticker.systemTicker());
+	}
+	
+	InMemorySessionStore(Duration ttl, long maxSize, Ticker ticker) {
+		this.states = Caffeine.newBuilder()
+				.expireAfterWrite(ttl)
+				.maximumSize(maxSize)
+				.ticker(ticker)
+				.build();
+	}
+	
+	@Override
+	public Optional<UserState> get(Long chatId) {
+		return Optional.ofNullable(states.getIfPresent(chatId));
+	}
+	
+	@Override
+	public void put(Long chatId, UserState state) {
+		states.put(chatId, state);
+	}
+	
+	@Override
+	public void remove(Long chatId) {
+		states.invalidate(chatId);
+	}
+	
+	long size() {
+		states.cleanUp();
+		return states.estimatedSize();
+	}
+}
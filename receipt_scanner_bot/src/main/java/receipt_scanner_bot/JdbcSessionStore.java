@@ -0,0 +1,73 @@
+package receipt_scanner_bot;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Состояния в таблице user_sessions, общей для всех экземпляров бота.
+ * Срок жизни считается по часам базы, чтобы расхождение часов экземпляров не влияло на него.
+ * Просроченные строки не читаются, а удаляются периодической очисткой.
+ */
+@Component
+@ConditionalOnProperty(name = "session.store", havingValue = "jdbc")
+public class JdbcSessionStore implements SessionStore {
+	
+	private static Logger log = LoggerFactory.getLogger(JdbcSessionStore.class);
+	
+	private static final String SELECT_STATE =
+			"SELECT state FROM user_sessions WHERE chat_id = ? AND expires_at > CURRENT_TIMESTAMP";
+	
+	private static final String UPSERT_STATE =
+			"INSERT INTO user_sessions (chat_id, state, expires_at) " +
+			"VALUES (?, ?, TIMESTAMPADD(SECOND, ?, CURRENT_TIMESTAMP)) " +
+			"ON DUPLICATE KEY UPDATE state = VALUES(state), expires_at = VALUES(expires_at)";
+	
+	private static final String DELETE_STATE =
+			"DELETE FROM user_sessions WHERE chat_id = ?";
+	
+	private static final String DELETE_EXPIRED =
+			"DELETE FROM user_sessions WHERE expires_at <= CURRENT_TIMESTAMP";
+	
+	private final JdbcTemplate jdbcTemplate;
+	private final long ttlSeconds;
+	
+	public JdbcSessionStore(JdbcTemplate jdbcTemplate, @Value("${session.ttl:15m}") Duration ttl) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.ttlSeconds = Math.max(1, ttl.toSeconds());
+	}
+	
+	@Override
+	public Optional<UserState> get(Long chatId) {
+		List<String> states = jdbcTemplate.queryForList(SELECT_STATE, String.class, chatId);
+		return states.isEmpty() ? Optional.empty() : Optional.of(UserState.valueOf(states.get(0)));
+	}
+	
+	@Override
+	public void put(Long chatId, UserState state) {
+		jdbcTemplate.update(UPSERT_STATE, chatId, state.name(), ttlSeconds);
+	}
+	
+	@Override
+	public void remove(Long chatId) {
+		jdbcTemplate.update(DELETE_STATE, chatId);
+	}
+	
+	// Запускают все экземпляры, повторное удаление уже удалённых строк безвредно
+	@Scheduled(fixedDelayString = "${session.jdbc.cleanup-interval:PT10M}")
+	public int deleteExpired() {
+		int deleted = jdbcTemplate.update(DELETE_EXPIRED);
+		if (deleted > 0) {
+			log.info("Deleted {} expired sessions", deleted);
+		}
+		return deleted;
+	}
+}
@@ -1,8 +1,6 @@
 package receipt_scanner_bot;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -11,9 +9,10 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
 
+// Позиция чека: и история покупок, и история цен продукта
 @Entity
-@Table(name = "purchase_details")
-public class PurchaseDetailEntity {
+@Table(name = "line_items")
+public class LineItemEntity {
     
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -22,14 +21,17 @@ public class PurchaseDetailEntity {
     @Column(name = "chat_id", nullable = false)
     private Long chatId;
     
-    @Column(name = "product_name", nullable = false)
-    private String productName;
+    @Column(name = "product_id", nullable = false)
+    private Integer productId;
 
     @Column(nullable = false, precision = 10, scale = 3)
-    private BigDecimal quantity;
+    private Quantity quantity;
     
-    @Column(nullable = false, precision = 10, scale = 2)
-    private BigDecimal price;
+    @Column(name = "unit_price", nullable = false, precision = 10, scale = 2)
+    private Money unitPrice;
+    
+    @Column(name = "total_price", nullable = false, precision = 10, scale = 2)
+    private Money totalPrice;
     
     @Column(name = "purchase_date", nullable = false)
     private LocalDate purchaseDate;
@@ -37,17 +39,19 @@ public class PurchaseDetailEntity {
     @Column(name = "is_weight_product", nullable = false)
     private boolean isWeightProduct;
     
-    public PurchaseDetailEntity() {}
-    public PurchaseDetailEntity(Long chatId,
-    		String productName,
-    		BigDecimal quantity, 
-            BigDecimal price,
+    public LineItemEntity() {}
+    public LineItemEntity(Long chatId,
+    		Integer productId,
+    		Quantity quantity,
+    		Money unitPrice,
+            Money totalPrice,
             LocalDate purchaseDate,
             boolean isWeightProduct) {
     	this.chatId = chatId;
-        this.productName = productName;
+        this.productId = productId;
         this.quantity = quantity;
-        this.price = price;
+        this.unitPrice = unitPrice;
+        this.totalPrice = totalPrice;
         this.purchaseDate = purchaseDate;
         this.isWeightProduct = isWeightProduct;
     }
@@ -55,14 +59,17 @@ public class PurchaseDetailEntity {
     public Long getId() { return id; }
 	public void setId(Long id) { this.id = id; }
     
-    public String getProductName() { return productName; }
-    public void setProductName(String productName) { this.productName = productName; }
+    public Integer getProductId() { return productId; }
+    public void setProductId(Integer productId) { this.productId = productId; }
+    
+    public Quantity getQuantity() { return quantity; }
+    public void setQuantity(Quantity quantity) { this.quantity = quantity; }
     
-    public BigDecimal getQuantity() { return quantity; }
-    public void setInteger(BigDecimal quantity) { this.quantity = quantity; }
+    public Money getUnitPrice() { return unitPrice; }
+    public void setUnitPrice(Money unitPrice) { this.unitPrice = unitPrice; }
     
-    public BigDecimal getPrice() { return price; }
-    public void setPrice(BigDecimal price) { this.price = price; }
+    public Money getTotalPrice() { return totalPrice; }
+    public void setTotalPrice(Money totalPrice) { this.totalPrice = totalPrice; }
     
     public LocalDate getPurchaseDate() { return purchaseDate; }
     public void setPurchaseDate(LocalDate purchaseDate) { this.purchaseDate = purchaseDate; }
@@ -70,4 +77,4 @@ public class PurchaseDetailEntity {
     public boolean isWeightProduct() { return isWeightProduct; }
 	public void setWeightProduct(boolean isWeightProduct) { this.isWeightProduct = isWeightProduct; }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,95 @@
+package receipt_scanner_bot;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+// Запросы к позициям чеков: общая статистика по продуктам и история цен одного продукта
+@Repository
+public interface LineItemRepository extends JpaRepository<LineItemEntity, Long> {
+
+    // Уникальные id берутся из индекса (chat_id, product_id, ...), названия - из словаря
+    @Query("SELECT n.name FROM ProductNameEntity n WHERE n.id IN " +
+           "(SELECT p.productId FROM LineItemEntity p WHERE p.chatId = :chatId)")
+    List<String> findDistinctProductNamesByChatId(@Param("chatId") Long chatId);
+
+    // Строка агрегата: SUM по колонкам с конвертером приходит как BigDecimal,
+    // в Quantity и Money её переводит DatabaseService
+    interface AggregateRow {
+    	String getProductName();
+    	BigDecimal getTotalQuantity();
+    	BigDecimal getTotalAmount();
+    	boolean isWeightProduct();
+    }
+
+    // Агрегация /stats на стороне базы: одна строка на продукт, без загрузки сущностей.
+    // Группировка идёт по целочисленному product_id, название подставляется из словаря
+    @Query("SELECT n.name AS productName, SUM(p.quantity) AS totalQuantity, SUM(p.totalPrice) AS totalAmount, " +
+           "CASE WHEN MAX(CASE WHEN p.isWeightProduct = true THEN 1 ELSE 0 END) = 1 THEN true ELSE false END " +
+           "AS weightProduct " +
+           "FROM LineItemEntity p JOIN ProductNameEntity n ON n.id = p.productId " +
+           "WHERE p.chatId = :chatId " +
+           "GROUP BY p.productId, n.name " +
+           "ORDER BY SUM(p.totalPrice) DESC, n.name ASC")
+    List<AggregateRow> aggregateStatsByChatId(@Param("chatId") Long chatId);
+
+    @Query("SELECT DISTINCT p.chatId FROM LineItemEntity p")
+    List<Long> findDistinctChatIds();
+
+    // Чаты с покупками, но без строк в product_totals: история записана в обход saveProducts
+    @Query("SELECT DISTINCT p.chatId FROM LineItemEntity p WHERE NOT EXISTS " +
+           "(SELECT 1 FROM ProductTotalEntity t WHERE t.chatId = p.chatId)")
+    List<Long> findChatIdsWithoutTotals();
+
+    // Сводка по всей истории цен продукта одним запросом
+    interface PriceSummary {
+    	BigDecimal getMinPrice();
+    	BigDecimal getMaxPrice();
+    	BigDecimal getTotalPrice();
+    	Long getRecordCount();
+    	LocalDate getFirstDate();
+    	LocalDate getLastDate();
+    	BigDecimal getFirstPrice();
+    	BigDecimal getLastPrice();
+    }
+
+    interface PricePoint {
+    	LocalDate getPurchaseDate();
+    	BigDecimal getUnitPrice();
+    	BigDecimal getPreviousPrice();
+    }
+
+    @Query(value = "SELECT MIN(s.unit_price) AS minPrice, MAX(s.unit_price) AS maxPrice, " +
+    		"SUM(s.unit_price) AS totalPrice, COUNT(*) AS recordCount, " +
+    		"MIN(s.purchase_date) AS firstDate, MAX(s.purchase_date) AS lastDate, " +
+    		"(SELECT f.unit_price FROM line_items f " +
+    		" WHERE f.chat_id = :chatId AND f.product_id = :productId " +
+    		" ORDER BY f.purchase_date ASC, f.id ASC LIMIT 1) AS firstPrice, " +
+    		"(SELECT l.unit_price FROM line_items l " +
+    		" WHERE l.chat_id = :chatId AND l.product_id = :productId " +
+    		" ORDER BY l.purchase_date DESC, l.id DESC LIMIT 1) AS lastPrice " +
+    		"FROM line_items s WHERE s.chat_id = :chatId AND s.product_id = :productId",
+    		nativeQuery = true)
+    PriceSummary summarizePrices(@Param("chatId") Long chatId, @Param("productId") Integer productId);
+
+    // Последние limit точек истории вместе с предыдущей ценой (LAG).
+    // Берём limit + 1 последних строк, чтобы у самой старой из возвращаемых была предыдущая цена,
+    // поэтому объём работы не зависит от длины истории.
+    @Query(value = "SELECT h.purchase_date AS purchaseDate, h.unit_price AS unitPrice, h.previous_price AS previousPrice " +
+    		"FROM (SELECT w.id, w.purchase_date, w.unit_price, " +
+    		"             LAG(w.unit_price) OVER (ORDER BY w.purchase_date, w.id) AS previous_price " +
+    		"      FROM (SELECT id, purchase_date, unit_price FROM line_items " +
+    		"            WHERE chat_id = :chatId AND product_id = :productId " +
+    		"            ORDER BY purchase_date DESC, id DESC LIMIT :window) w) h " +
+    		"ORDER BY h.purchase_date DESC, h.id DESC LIMIT :limit",
+    		nativeQuery = true)
+    List<PricePoint> findRecentPrices(@Param("chatId") Long chatId,
+    		@Param("productId") Integer productId,
+    		@Param("window") int window,
+    		@Param("limit") int limit);
+}
@@ -0,0 +1,230 @@
+package receipt_scanner_bot;
+
+import java.text.DecimalFormatSymbols;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Сборка текста ответов без String.format: числа, даты и сокращённые названия дописываются
+ * прямо в StringBuilder. Суммы и количества выводятся из long-значений Money и Quantity.
+ * Результат совпадает с прежними шаблонами "%d", "%.Nf", "%s" для дат и с Utils.limitWords,
+ * включая округление HALF_UP и десятичный разделитель локали по умолчанию.
+ * Не потокобезопасен; на поток есть один переиспользуемый экземпляр (reuse/release).
+ */
+final class MessageWriter {
+
+	private static final long[] POW10 = {1, 10, 100, 1_000};
+
+	// Буфер больше этого не держим в потоке после отправки
+	private static final int MAX_RETAINED = 16 * 1024;
+
+	private static final char DECIMAL_SEPARATOR =
+			DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT)).getDecimalSeparator();
+	private static final DateTimeFormatter DAY_MONTH_YEAR = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+
+	private static final ThreadLocal<MessageWriter> CACHED = ThreadLocal.withInitial(() -> new MessageWriter(256));
+
+	private final StringBuilder out;
+
+	MessageWriter(int estimatedLength) {
+		this.out = new StringBuilder(estimatedLength);
+	}
+
+	// Буфер текущего потока; до release его нельзя брать повторно
+	static MessageWriter reuse(int estimatedLength) {
+		MessageWriter writer = CACHED.get();
+		writer.out.setLength(0);
+		writer.out.ensureCapacity(estimatedLength);
+		return writer;
+	}
+
+	String release() {
+		String text = out.toString();
+		out.setLength(0);
+		if (out.capacity() > MAX_RETAINED) {
+			out.trimToSize();
+		}
+		return text;
+	}
+
+	MessageWriter text(String text) {
+		out.append(text);
+		return this;
+	}
+
+	MessageWriter text(char c) {
+		out.append(c);
+		return this;
+	}
+
+	// "%d"
+	MessageWriter number(long value) {
+		out.append(value);
+		return this;
+	}
+
+	// "%.2f" для суммы в рублях
+	MessageWriter money(Money money) {
+		long kopecks = money.kopecks();
+		if (kopecks < 0) {
+			out.append('-');
+		}
+		fixed(Math.abs(kopecks), 2);
+		return this;
+	}
+
+	// "%.{digits}f" для количества, digits от 0 до 3, с округлением HALF_UP
+	MessageWriter quantity(Quantity quantity, int digits) {
+		long millis = quantity.millis();
+		if (millis < 0) {
+			out.append('-');
+		}
+		long drop = POW10[3 - digits];
+		fixed((Math.abs(millis) + drop / 2) / drop, digits);
+		return this;
+	}
+
+	// "%.1f" для процента, заданного в сотых долях (BigDecimal со scale 2), с округлением HALF_UP
+	MessageWriter percent(long basisPoints) {
+		if (basisPoints < 0) {
+			out.append('-');
+		}
+		fixed((Math.abs(basisPoints) + 5) / 10, 1);
+		return this;
+	}
+
+	// Как date.format(DateTimeFormatter.ofPattern("dd-MM-yyyy"))
+	MessageWriter date(LocalDate date) {
+		return date(date, '-');
+	}
+
+	// dd.MM.yyyy при separator '.', формат периодов /period
+	MessageWriter date(LocalDate date, char separator) {
+		int year = date.getYear();
+		if (year < 1 || year > 9999) {
+			out.append(DAY_MONTH_YEAR.format(date).replace('-', separator));
+			return this;
+		}
+		twoDigits(date.getDayOfMonth());
+		out.append(separator);
+		twoDigits(date.getMonthValue());
+		out.append(separator);
+		fourDigits(year);
+		return this;
+	}
+
+	// MM.yyyy
+	MessageWriter month(YearMonth month) {
+		twoDigits(month.getMonthValue());
+		out.append('.');
+		fourDigits(month.getYear());
+		return this;
+	}
+
+	// Как "%s" для LocalDate: yyyy-MM-dd
+	MessageWriter isoDate(LocalDate date) {
+		if (date == null || date.getYear() < 0 || date.getYear() > 9999) {
+			out.append(date);
+			return this;
+		}
+		fourDigits(date.getYear());
+		out.append('-');
+		twoDigits(date.getMonthValue());
+		out.append('-');
+		twoDigits(date.getDayOfMonth());
+		return this;
+	}
+
+	// Как Utils.limitWords(text, maxWords), но без split и промежуточных строк
+	MessageWriter words(String text, int maxWords) {
+		if (countWords(text, maxWords) <= maxWords) {
+			out.append(text);
+			return this;
+		}
+
+		int length = text.length();
+		int start = 0;
+		for (int word = 0; word < maxWords; word++) {
+			int end = start;
+			while (end < length && !isSpace(text.charAt(end))) {
+				end++;
+			}
+			if (word > 0) {
+				out.append(' ');
+			}
+			out.append(text, start, end);
+			start = end;
+			while (start < length && isSpace(text.charAt(start))) {
+				start++;
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Число элементов text.split("\\s+"), но не больше limit + 1:
+	 * ведущий пробел даёт пустое первое слово, хвостовые пустые слова отбрасываются.
+	 */
+	static int countWords(String text, int limit) {
+		int length = text.length();
+		if (length == 0) {
+			return 1;
+		}
+		int count = 0;
+		int start = 0;
+		while (start < length) {
+			int end = start;
+			while (end < length && !isSpace(text.charAt(end))) {
+				end++;
+			}
+			int next = end;
+			while (next < length && isSpace(text.charAt(next))) {
+				next++;
+			}
+			if (end == start && next == length) {
+				break;
+			}
+			if (++count > limit) {
+				break;
+			}
+			start = next;
+		}
+		return count;
+	}
+
+	@Override
+	public String toString() {
+		return out.toString();
+	}
+
+	// Класс \s в регулярных выражениях Java
+	private static boolean isSpace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	// units / 10^scale: целая часть, разделитель и ровно scale знаков дробной
+	private void fixed(long units, int scale) {
+		if (scale == 0) {
+			out.append(units);
+			return;
+		}
+		long pow = POW10[scale];
+		long fraction = units % pow;
+		out.append(units / pow).append(DECIMAL_SEPARATOR);
+		for (long p = pow / 10; p > 1 && p > fraction; p /= 10) {
+			out.append('0');
+		}
+		out.append(fraction);
+	}
+
+	private void twoDigits(int value) {
+		out.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+	}
+
+	private void fourDigits(int value) {
+		twoDigits(value / 100);
+		twoDigits(value % 100);
+	}
+}
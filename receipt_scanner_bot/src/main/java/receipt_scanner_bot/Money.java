@@ -0,0 +1,85 @@
+package receipt_scanner_bot;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Денежная сумма в копейках.
+ * Сложение, сравнение и деление идут по long; в BigDecimal сумма переводится только
+ * на границе с базой (MoneyConverter, JDBC) и при разборе строк.
+ */
+public record Money(long kopecks) implements Comparable<Money> {
+
+	public static final Money ZERO = new Money(0);
+
+	public static Money ofKopecks(long kopecks) {
+		return kopecks == 0 ? ZERO : new Money(kopecks);
+	}
+
+	// Точное значение: больше двух знаков после запятой - ArithmeticException
+	public static Money of(BigDecimal value) {
+		return ofKopecks(value.setScale(2, RoundingMode.UNNECESSARY).unscaledValue().longValueExact());
+	}
+
+	// "1234.50", "1234.5", "1234"
+	public static Money parse(String text) {
+		try {
+			return of(new BigDecimal(text));
+		} catch (ArithmeticException e) {
+			throw new NumberFormatException("Некорректная сумма: " + text);
+		}
+	}
+
+	public Money plus(Money other) {
+		return ofKopecks(Math.addExact(kopecks, other.kopecks));
+	}
+
+	public Money minus(Money other) {
+		return ofKopecks(Math.subtractExact(kopecks, other.kopecks));
+	}
+
+	// Стоимость quantity по этой цене, с округлением до копейки HALF_UP
+	public Money times(Quantity quantity) {
+		return ofKopecks(divideHalfUp(Math.multiplyExact(kopecks, quantity.millis()), Quantity.SCALE_FACTOR));
+	}
+
+	// Среднее из count слагаемых, с округлением до копейки HALF_UP
+	public Money dividedBy(long count) {
+		return ofKopecks(divideHalfUp(kopecks, count));
+	}
+
+	public int signum() {
+		return Long.signum(kopecks);
+	}
+
+	public BigDecimal toBigDecimal() {
+		return BigDecimal.valueOf(kopecks, 2);
+	}
+
+	// Как toBigDecimal().toPlainString(): всегда два знака после точки
+	public String toPlainString() {
+		long abs = Math.abs(kopecks);
+		long fraction = abs % 100;
+		return (kopecks < 0 ? "-" : "") + abs / 100 + (fraction < 10 ? ".0" : ".") + fraction;
+	}
+
+	@Override
+	public int compareTo(Money other) {
+		return Long.compare(kopecks, other.kopecks);
+	}
+
+	@Override
+	public String toString() {
+		return toPlainString();
+	}
+
+	// Деление с округлением половины от нуля, как RoundingMode.HALF_UP
+	static long divideHalfUp(long dividend, long divisor) {
+		long quotient = dividend / divisor;
+		long remainder = Math.abs(dividend % divisor);
+		if (remainder * 2 >= Math.abs(divisor)) {
+			quotient += (dividend < 0) == (divisor < 0) ? 1 : -1;
+		}
+		return quotient;
+	}
+}
@@ -0,0 +1,384 @@
+package receipt_scanner_bot;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Очередь исходящих сообщений.
+ * Обработчик апдейта только ставит ответ в очередь, отправкой занимается отдельный поток:
+ * общий лимит Telegram и лимит на чат соблюдаются через TokenBucket, текстовые ответы одному чату,
+ * накопившиеся за время ожидания, склеиваются в одно сообщение, а на 429 отправка
+ * повторяется через retry_after. Сверх outbound.max-pending сообщения отбрасываются.
+ * В одном чате одновременно выполняется не больше одного вызова Bot API, порядок сохраняется.
+ */
+@Component
+public class OutboundMessageSender {
+	
+	private static Logger log = LoggerFactory.getLogger(OutboundMessageSender.class);
+	
+	// Максимальная длина текста одного сообщения в Bot API
+	static final int MAX_MESSAGE_LENGTH = 4096;
+	
+	private static final String SEPARATOR = "\n\n";
+	private static final int TOO_MANY_REQUESTS = 429;
+	
+	@FunctionalInterface
+	interface Transport {
+		Serializable send(BotApiMethod<?> method) throws TelegramApiException;
+	}
+	
+	// Вызов Bot API в очереди; result есть только у вызовов, чей ответ кому-то нужен
+	private record Outgoing(BotApiMethod<?> method, CompletableFuture<Object> result) {}
+	
+	private final Transport transport;
+	private final TokenBucket globalBucket;
+	private final Cache<Long, TokenBucket> chatBuckets;
+	private final double chatRate;
+	private final int chatBurst;
+	private final int maxPending;
+	private final int maxAttempts;
+	
+	private final Map<Long, ChatOutbox> outboxes = new ConcurrentHashMap<>();
+	private final BlockingQueue<ChatOutbox> ready = new LinkedBlockingQueue<>();
+	private final Thread dispatcher;
+	private final ScheduledExecutorService scheduler;
+	private final ExecutorService senders;
+	
+	private final AtomicInteger pending = new AtomicInteger();
+	private final AtomicLong sent = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong retried = new AtomicLong();
+	private final MeterRegistry meterRegistry;
+	
+	@Autowired
+	public OutboundMessageSender(ObjectProvider<Bot> bot,
+			@Value("${outbound.global-rate:30}") double globalRate,
+			@Value("${outbound.chat-rate:1}") double chatRate,
+			@Value("${outbound.chat-burst:3}") int chatBurst,
+			@Value("${outbound.max-pending:10000}") int maxPending,
+			@Value("${outbound.max-attempts:5}") int maxAttempts,
+			@Value("${outbound.sender-threads:8}") int senderThreads,
+			MeterRegistry meterRegistry) {
+		// Bot сам зависит от очереди, поэтому берём его лениво
+		this(method -> bot.getObject().execute(method),
+				globalRate, chatRate, chatBurst, maxPending, maxAttempts, senderThreads, meterRegistry);
+	}
+	
+	OutboundMessageSender(Transport transport, double globalRate, double chatRate, int chatBurst,
+			int maxPending, int maxAttempts, int senderThreads, MeterRegistry meterRegistry) {
+		this.transport = transport;
+		this.meterRegistry = meterRegistry;
+		this.globalBucket = new TokenBucket((int) Math.max(1, globalRate), globalRate);
+		this.chatRate = chatRate;
+		this.chatBurst = chatBurst;
+		this.maxPending = maxPending;
+		this.maxAttempts = maxAttempts;
+		// Простоявшая минуту корзина чата всё равно полна, хранить её незачем
+		this.chatBuckets = Caffeine.newBuilder()
+				.expireAfterAccess(Duration.ofMinutes(1))
+				.build();
+		
+		AtomicInteger counter = new AtomicInteger();
+		this.senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+			Thread thread = new Thread(runnable, "outbound-sender-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "outbound-scheduler");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.dispatcher = new Thread(this::dispatchLoop, "outbound-dispatcher");
+		this.dispatcher.setDaemon(true);
+		this.dispatcher.start();
+	}
+	
+	public void send(Long chatId, String text) {
+		send(chatId, new SendMessage(String.valueOf(chatId), text));
+	}
+	
+	// Сообщения с клавиатурой, правки и прочие вызовы идут в том же порядке, но не склеиваются
+	public void send(Long chatId, BotApiMethod<?> method) {
+		enqueue(chatId, new Outgoing(method, null));
+	}
+	
+	// Как send, но с ответом Bot API, например отправленным сообщением, чтобы потом его редактировать.
+	// При переполнении очереди или ошибке отправки future завершается исключением
+	@SuppressWarnings("unchecked")
+	public <T extends Serializable> CompletableFuture<T> submit(Long chatId, BotApiMethod<T> method) {
+		CompletableFuture<Object> result = new CompletableFuture<>();
+		enqueue(chatId, new Outgoing(method, result));
+		return (CompletableFuture<T>) (CompletableFuture<?>) result;
+	}
+	
+	private void enqueue(Long chatId, Outgoing outgoing) {
+		if (pending.incrementAndGet() > maxPending) {
+			pending.decrementAndGet();
+			dropped.incrementAndGet();
+			log.warn("Outbound queue is full, dropping message to chat {}", chatId);
+			if (outgoing.result() != null) {
+				outgoing.result().completeExceptionally(new RejectedExecutionException("Outbound queue is full"));
+			}
+			return;
+		}
+		
+		ChatOutbox[] toSchedule = new ChatOutbox[1];
+		outboxes.compute(chatId, (id, outbox) -> {
+			if (outbox == null) {
+				outbox = new ChatOutbox(id);
+			}
+			if (outbox.add(outgoing)) {
+				toSchedule[0] = outbox;
+			}
+			return outbox;
+		});
+		
+		if (toSchedule[0] != null) {
+			ready.add(toSchedule[0]);
+		}
+	}
+	
+	// Сообщения, ожидающие отправки
+	public int getPending() {
+		return pending.get();
+	}
+	
+	// Выполненные вызовы Bot API (склеенные сообщения считаются одним)
+	public long getSent() {
+		return sent.get();
+	}
+	
+	// Сообщения, отброшенные из-за переполнения очереди или ошибки отправки
+	public long getDropped() {
+		return dropped.get();
+	}
+	
+	// Повторы после 429
+	public long getRetried() {
+		return retried.get();
+	}
+	
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		dispatcher.interrupt();
+		scheduler.shutdownNow();
+		senders.shutdown();
+		if (!senders.awaitTermination(10, TimeUnit.SECONDS)) {
+			senders.shutdownNow();
+		}
+		if (pending.get() > 0) {
+			log.warn("{} outbound messages were not sent before shutdown", pending.get());
+		}
+	}
+	
+	private void dispatchLoop() {
+		try {
+			while (true) {
+				ChatOutbox outbox = ready.take();
+				
+				long blocked = outbox.blockedUntil - System.nanoTime();
+				if (blocked > 0) {
+					requeueLater(outbox, blocked);
+					continue;
+				}
+				long chatWait = chatBucket(outbox.chatId).tryAcquire();
+				if (chatWait > 0) {
+					requeueLater(outbox, chatWait);
+					continue;
+				}
+				// Общий лимит ждём прямо здесь: пока его нет, отправлять нельзя никому
+				long globalWait;
+				while ((globalWait = globalBucket.tryAcquire()) > 0) {
+					TimeUnit.NANOSECONDS.sleep(globalWait);
+				}
+				
+				Outgoing outgoing = outbox.nextBatch();
+				senders.execute(() -> deliver(outbox, outgoing));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private void deliver(ChatOutbox outbox, Outgoing outgoing) {
+		long started = System.nanoTime();
+		try {
+			Serializable response = transport.send(outgoing.method());
+			recordSend(outgoing, started, "success");
+			sent.incrementAndGet();
+			outbox.resetAttempts();
+			if (outgoing.result() != null) {
+				outgoing.result().complete(response);
+			}
+		} catch (TelegramApiRequestException e) {
+			recordSend(outgoing, started, "error");
+			Integer retryAfter = e.getParameters() != null ? e.getParameters().getRetryAfter() : null;
+			if (Integer.valueOf(TOO_MANY_REQUESTS).equals(e.getErrorCode()) && retryAfter != null
+					&& outbox.nextAttempt() < maxAttempts) {
+				retried.incrementAndGet();
+				outbox.blockedUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(retryAfter);
+				pending.incrementAndGet();
+				outbox.retry(outgoing);
+				log.warn("Telegram asked to retry chat {} after {}s", outbox.chatId, retryAfter);
+			} else {
+				drop(outbox, outgoing, e);
+			}
+		} catch (TelegramApiException | RuntimeException e) {
+			recordSend(outgoing, started, "error");
+			drop(outbox, outgoing, e);
+		} finally {
+			release(outbox);
+		}
+	}
+	
+	private void drop(ChatOutbox outbox, Outgoing outgoing, Exception e) {
+		dropped.incrementAndGet();
+		outbox.resetAttempts();
+		log.error("Failed sending message to chat {}", outbox.chatId, e);
+		if (outgoing.result() != null) {
+			outgoing.result().completeExceptionally(e);
+		}
+	}
+	
+	// Чат с оставшимися сообщениями снова встаёт в очередь, пустой - удаляется
+	private void release(ChatOutbox outbox) {
+		if (outbox.finishSend()) {
+			ready.add(outbox);
+		} else {
+			outboxes.computeIfPresent(outbox.chatId, (id, current) -> current.isIdle() ? null : current);
+		}
+	}
+	
+	private void requeueLater(ChatOutbox outbox, long delayNanos) {
+		scheduler.schedule(() -> ready.add(outbox), delayNanos, TimeUnit.NANOSECONDS);
+	}
+	
+	private TokenBucket chatBucket(Long chatId) {
+		return chatBuckets.get(chatId, id -> new TokenBucket(chatBurst, chatRate));
+	}
+	
+	// Склеивать можно только простой текст, ответ на который никто не ждёт
+	private static boolean isPlainText(Outgoing outgoing) {
+		return outgoing != null
+				&& outgoing.result() == null
+				&& outgoing.method() instanceof SendMessage message
+				&& message.getReplyMarkup() == null
+				&& message.getParseMode() == null;
+	}
+	
+	private static String textOf(Outgoing outgoing) {
+		return ((SendMessage) outgoing.method()).getText();
+	}
+	
+	// Время вызова Bot API без ожидания в очереди, с разбивкой по методу (sendmessage, editmessagetext...)
+	private void recordSend(Outgoing outgoing, long started, String outcome) {
+		meterRegistry.timer("bot.messages.send", "method", outgoing.method().getMethod(), "outcome", outcome)
+				.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+	}
+	
+	private class ChatOutbox {
+		
+		private final Long chatId;
+		private final Deque<Outgoing> messages = new ArrayDeque<>();
+		// Чат в очереди готовых, ждёт лимита или отправляется
+		private boolean scheduled;
+		private int attempts;
+		private volatile long blockedUntil;
+		
+		ChatOutbox(Long chatId) {
+			this.chatId = chatId;
+		}
+		
+		// true, если чат нужно поставить в очередь готовых
+		synchronized boolean add(Outgoing outgoing) {
+			messages.add(outgoing);
+			if (scheduled) {
+				return false;
+			}
+			scheduled = true;
+			return true;
+		}
+		
+		// Склеивает подряд идущие простые текстовые ответы, пока укладываемся в лимит длины
+		synchronized Outgoing nextBatch() {
+			Outgoing first = messages.poll();
+			int taken = 1;
+			StringBuilder batch = null;
+			if (isPlainText(first)) {
+				String text = textOf(first);
+				int length = text.length();
+				while (isPlainText(messages.peek())
+						&& length + SEPARATOR.length() + textOf(messages.peek()).length() <= MAX_MESSAGE_LENGTH) {
+					if (batch == null) {
+						batch = new StringBuilder(text);
+					}
+					batch.append(SEPARATOR).append(textOf(messages.poll()));
+					length = batch.length();
+					taken++;
+				}
+			}
+			pending.addAndGet(-taken);
+			return batch == null
+					? first
+					: new Outgoing(new SendMessage(String.valueOf(chatId), batch.toString()), null);
+		}
+		
+		synchronized void retry(Outgoing outgoing) {
+			messages.addFirst(outgoing);
+		}
+		
+		synchronized int nextAttempt() {
+			return ++attempts;
+		}
+		
+		synchronized void resetAttempts() {
+			attempts = 0;
+		}
+		
+		// true, если остались сообщения и чат снова нужно поставить в очередь
+		synchronized boolean finishSend() {
+			if (messages.isEmpty()) {
+				scheduled = false;
+				return false;
+			}
+			return true;
+		}
+		
+		synchronized boolean isIdle() {
+			return !scheduled && messages.isEmpty();
+		}
+	}
+}
@@ -0,0 +1,6 @@
+package receipt_scanner_bot;
+
+import java.util.List;
+
+// Позиции чека и его фискальные данные; qr == null, если в ответе их нет
+record ParsedReceipt(List<Product> products, ReceiptQr qr) {}
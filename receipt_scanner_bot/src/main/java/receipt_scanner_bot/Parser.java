@@ -1,47 +1,251 @@
 package receipt_scanner_bot;
 
-import java.math.BigDecimal;
+import java.io.IOException;
+import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Потоковый разбор ответа proverkacheka.
+ * Из всего документа нужны только data.json.dateTime, data.json.items и фискальные поля чека,
+ * остальные поддеревья (html, request и т.п.) пропускаются без построения объектов.
+ */
 @Component
 public class Parser {
+
+	private static final DateTimeFormatter API_DATE_FORMATTER =
+	        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+	// Формат даты в строке QR-кода
+	private static final DateTimeFormatter QR_DATE_FORMATTER =
+	        DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+	
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	// Позиция, прочитанная до поля dateTime; дату подставим в конце
+	private record PendingItem(String name, Quantity quantity, long price, long sum) {}
+	
+	private final Timer parseTimer;
+	private final DistributionSummary itemsPerReceipt;
+	private final Counter parseErrors;
+	
+	@Autowired
+	public Parser(MeterRegistry meterRegistry) {
+		this.parseTimer = meterRegistry.timer("receipt.parse");
+		this.itemsPerReceipt = DistributionSummary.builder("receipt.items")
+				.description("Позиций в одном чеке")
+				.register(meterRegistry);
+		this.parseErrors = meterRegistry.counter("receipt.parse.errors");
+	}
+	
+	Parser() {
+		this(new SimpleMeterRegistry());
+	}
+
 	List<Product> parse(String jsonToParse){
-		final DateTimeFormatter API_DATE_FORMATTER = 
-    	        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
-        List<Product> products = new ArrayList<>();
-        
-        JSONObject root = new JSONObject(jsonToParse);
-        JSONObject data = root.getJSONObject("data");
-        JSONObject json = data.getJSONObject("json");
-        JSONArray items = json.getJSONArray("items");
-        
-        String dateTimeStr = json.getString("dateTime");
-        LocalDateTime purchaseDate = LocalDateTime.parse(dateTimeStr, API_DATE_FORMATTER);
-        LocalDate date = purchaseDate.toLocalDate();
-        
-        for (int i = 0; i < items.length(); i++) {
-            JSONObject item = items.getJSONObject(i);
-            
-            String name = item.getString("name");
-            double quantity = item.getDouble("quantity");
-            double pricePerUnit = item.getDouble("price") / 100.0;
-            double totalPrice = item.getDouble("sum") / 100.0;
-                        
-            products.add(new Product(name,
-            		BigDecimal.valueOf(quantity),
-            		BigDecimal.valueOf(pricePerUnit),
-            		BigDecimal.valueOf(totalPrice), 
-            		date));
-        }
-        return products;
+		return parseReceipt(jsonToParse).products();
+	}
+	
+	// То же, что parse, плюс фискальный признак чека: нужен, когда ответ сохранён заранее, а QR-кода нет
+	ParsedReceipt parseReceipt(String jsonToParse) {
+		long started = System.nanoTime();
+		ParsedReceipt receipt;
+		try {
+			receipt = read(jsonToParse);
+		} catch (IllegalArgumentException e) {
+			parseErrors.increment();
+			throw e;
+		}
+		parseTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+		itemsPerReceipt.record(receipt.products().size());
+		return receipt;
 	}
 	
+	private ParsedReceipt read(String jsonToParse) {
+		try (JsonParser json = JSON_FACTORY.createParser(jsonToParse)) {
+			if (json.nextToken() != JsonToken.START_OBJECT) {
+				throw new IllegalArgumentException("Некорректный ответ сервера");
+			}
+
+			ParsedReceipt receipt = null;
+			while (json.nextToken() == JsonToken.FIELD_NAME) {
+				String field = json.currentName();
+				JsonToken value = json.nextToken();
+
+				if ("data".equals(field) && value == JsonToken.START_OBJECT) {
+					receipt = parseData(json);
+				} else if ("data".equals(field) && value == JsonToken.VALUE_STRING) {
+					// При ошибке proverkacheka кладёт в data текст сообщения
+					throw new IllegalArgumentException("Сервер вернул ошибку: " + json.getText());
+				} else {
+					json.skipChildren();
+				}
+			}
+
+			if (receipt == null) {
+				throw new IllegalArgumentException("Ответ сервера не содержит данных чека");
+			}
+			return receipt;
+
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Некорректный ответ сервера: " + e.getMessage(), e);
+		}
+	}
+
+	private ParsedReceipt parseData(JsonParser json) throws IOException {
+		ParsedReceipt receipt = null;
+		while (json.nextToken() == JsonToken.FIELD_NAME) {
+			String field = json.currentName();
+			JsonToken value = json.nextToken();
+
+			if ("json".equals(field) && value == JsonToken.START_OBJECT) {
+				receipt = readReceipt(json);
+			} else {
+				json.skipChildren();
+			}
+		}
+		return receipt;
+	}
+
+	private ParsedReceipt readReceipt(JsonParser json) throws IOException {
+		List<Product> products = new ArrayList<>();
+		List<PendingItem> pending = new ArrayList<>();
+		LocalDateTime dateTime = null;
+		LocalDate date = null;
+		String fn = null;
+		long fd = -1;
+		long fp = -1;
+		long totalSum = -1;
+		int operationType = 0;
+
+		while (json.nextToken() == JsonToken.FIELD_NAME) {
+			String field = json.currentName();
+			JsonToken value = json.nextToken();
+
+			if ("dateTime".equals(field) && value == JsonToken.VALUE_STRING) {
+				dateTime = parseDateTime(json.getText());
+				date = dateTime.toLocalDate();
+			} else if ("fiscalDriveNumber".equals(field) && value.isScalarValue()) {
+				fn = json.getText();
+			} else if ("fiscalDocumentNumber".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+				fd = json.getLongValue();
+			} else if ("fiscalSign".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+				fp = json.getLongValue();
+			} else if ("totalSum".equals(field) && value.isNumeric()) {
+				totalSum = readKopecks(json, value);
+			} else if ("operationType".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+				operationType = json.getIntValue();
+			} else if ("items".equals(field) && value == JsonToken.START_ARRAY) {
+				while (json.nextToken() == JsonToken.START_OBJECT) {
+					PendingItem item = parseItem(json);
+					if (date != null) {
+						products.add(toProduct(item, date));
+					} else {
+						pending.add(item);
+					}
+				}
+			} else {
+				json.skipChildren();
+			}
+		}
+
+		if (date == null) {
+			throw new IllegalArgumentException("В ответе сервера нет даты чека");
+		}
+		for (PendingItem item : pending) {
+			products.add(toProduct(item, date));
+		}
+		return new ParsedReceipt(products, toQr(dateTime, totalSum, fn, fd, fp, operationType));
+	}
+	
+	// Собираем строку QR-кода из фискальных полей и проверяем её тем же ReceiptQr.parse
+	private ReceiptQr toQr(LocalDateTime dateTime, long totalSum, String fn, long fd, long fp, int operationType) {
+		if (fn == null || fd < 0 || fp < 0 || totalSum < 0 || operationType == 0) {
+			return null;
+		}
+		String raw = "t=" + dateTime.format(QR_DATE_FORMATTER)
+				+ "&s=" + Money.ofKopecks(totalSum).toPlainString()
+				+ "&fn=" + fn + "&i=" + fd + "&fp=" + fp + "&n=" + operationType;
+		try {
+			return ReceiptQr.parse(raw);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	private PendingItem parseItem(JsonParser json) throws IOException {
+		String name = null;
+		Quantity quantity = null;
+		long price = -1;
+		long sum = -1;
+
+		while (json.nextToken() == JsonToken.FIELD_NAME) {
+			String field = json.currentName();
+			JsonToken value = json.nextToken();
+
+			switch (field) {
+				case "name" -> name = json.getText();
+				case "quantity" -> quantity = readQuantity(json, value);
+				case "price" -> price = readKopecks(json, value);
+				case "sum" -> sum = readKopecks(json, value);
+				default -> json.skipChildren();
+			}
+		}
+
+		if (name == null || quantity == null || price < 0 || sum < 0) {
+			throw new IllegalArgumentException("В ответе сервера неполная позиция чека: " + name);
+		}
+		return new PendingItem(name, quantity, price, sum);
+	}
+
+	// Суммы приходят в копейках целым числом, читаем их без перехода через double
+	private long readKopecks(JsonParser json, JsonToken value) throws IOException {
+		if (value == JsonToken.VALUE_NUMBER_INT) {
+			return json.getLongValue();
+		}
+		return json.getDecimalValue().setScale(0, RoundingMode.HALF_UP).longValueExact();
+	}
+
+	// Штучное количество обычно целое - его читаем без BigDecimal
+	private Quantity readQuantity(JsonParser json, JsonToken value) throws IOException {
+		if (value == JsonToken.VALUE_NUMBER_INT) {
+			return Quantity.ofUnits(json.getLongValue());
+		}
+		return Quantity.of(json.getDecimalValue());
+	}
+
+	private LocalDateTime parseDateTime(String dateTimeStr) {
+		try {
+			return LocalDateTime.parse(dateTimeStr, API_DATE_FORMATTER);
+		} catch (DateTimeParseException e) {
+			throw new IllegalArgumentException("Некорректная дата чека: " + dateTimeStr, e);
+		}
+	}
+
+	private Product toProduct(PendingItem item, LocalDate date) {
+		return new Product(item.name(),
+				item.quantity(),
+				Money.ofKopecks(item.price()),
+				Money.ofKopecks(item.sum()),
+				date);
+	}
+
 }
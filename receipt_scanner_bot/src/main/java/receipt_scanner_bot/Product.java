@@ -1,22 +1,23 @@
 package receipt_scanner_bot;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 
 public class Product {
 	
+	// Типичная длина строки позиции в ответе
+	static final int ESTIMATED_LENGTH = 80;
+	
 	private String name;
-    private BigDecimal quantity;
-    private BigDecimal pricePerUnit; 
-    private BigDecimal totalPrice; 
+    private Quantity quantity;
+    private Money pricePerUnit; 
+    private Money totalPrice; 
     private LocalDate date;
     private boolean isWeightProduct;
 
     public Product(String name,
-    		BigDecimal quantity,
-    		BigDecimal pricePerUnit,
-    		BigDecimal totalPrice,
+    		Quantity quantity,
+    		Money pricePerUnit,
+    		Money totalPrice,
     		LocalDate date) {
         this.name = name;
         this.quantity = quantity;
@@ -27,37 +28,35 @@ public class Product {
     }
 
     public String getName() { return name; }
-    public BigDecimal getQuantity() { return quantity; }
-    public BigDecimal getPricePerUnit() { return pricePerUnit; }
-    public BigDecimal getTotalPrice() { return totalPrice; }
+    public Quantity getQuantity() { return quantity; }
+    public Money getPricePerUnit() { return pricePerUnit; }
+    public Money getTotalPrice() { return totalPrice; }
     public LocalDate getDate() { return date; }
     public boolean getIsWeightProduct() { return isWeightProduct; }
 
     public boolean isWeightProduct() {
         // Проверяем есть ли дробная часть
-        return quantity.remainder(BigDecimal.ONE).compareTo(BigDecimal.ZERO) != 0;
+        return quantity.isFractional();
+    }
+    
+    // Название до 2 слов, штучное количество без дробной части
+    void appendTo(MessageWriter out) {
+        out.words(name, 2).text(": ");
+        if (isWeightProduct) {
+            out.quantity(quantity, 3).text(" кг.");
+        } else {
+            out.number(quantity.wholeUnits()).text(" шт.");
+        }
+        out.text(" х ").money(pricePerUnit)
+            .text(" руб = ").money(totalPrice)
+            .text(" руб, дата: ").date(date);
     }
     
     @Override
     public String toString() {
-    	DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd-MM-yyyy");
-        String formattedDate = date.format(formatter);
-        
-        // Ограничиваем название продукта до 2 слов
-        String limitedName = Utils.limitWords(name, 2);
-        String formattedQuantity = isWeightProduct ? "кг." : "шт.";
-        
-        String quantityValue = isWeightProduct() ? 
-        	    String.format("%.3f", quantity.doubleValue()) : 
-        	    String.valueOf(quantity.intValue());
-        
-        return String.format("%s: %s %s х %.2f руб = %.2f руб, дата: %s", 
-        		limitedName,
-        		quantityValue,
-        		formattedQuantity,
-        		pricePerUnit.doubleValue(),
-        		totalPrice.doubleValue(),
-        		formattedDate);
+        MessageWriter out = new MessageWriter(ESTIMATED_LENGTH);
+        appendTo(out);
+        return out.toString();
     }
 
 }
@@ -0,0 +1,135 @@
+package receipt_scanner_bot;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Интернирование названий продуктов: название -> id в product_names.
+ * Знакомые названия берутся из кэша без обращения к базе, новые добавляются INSERT IGNORE.
+ * В кэш id попадает только после коммита транзакции, иначе откат оставил бы в нём
+ * id строки, которой в базе нет.
+ */
+@Component
+public class ProductDictionary {
+	
+	private static final String INSERT_NAME =
+			"INSERT IGNORE INTO product_names (name, normalized_name) VALUES (?, ?)";
+	
+	// Блокирующее чтение видит строки, которые параллельная транзакция вставила после нашего снимка.
+	// Названия запрашиваются пачками по столько штук в одном IN (...)
+	private static final int SELECT_CHUNK = 500;
+	
+	// Только написания, которые есть в покупках этого чата; точное совпадение впереди
+	private static final String SELECT_ID_IN_CHAT =
+			"SELECT n.id FROM product_names n " +
+			"WHERE n.normalized_name = ? " +
+			"AND EXISTS (SELECT 1 FROM line_items l WHERE l.chat_id = ? AND l.product_id = n.id) " +
+			"ORDER BY CASE WHEN n.name = ? THEN 0 ELSE 1 END, n.id LIMIT 1";
+	
+	private final JdbcTemplate jdbcTemplate;
+	private final Cache<String, Integer> ids;
+	
+	public ProductDictionary(JdbcTemplate jdbcTemplate,
+			@Value("${product-dictionary.cache-size:100000}") long cacheSize) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.ids = Caffeine.newBuilder()
+				.maximumSize(cacheSize)
+				.build();
+	}
+	
+	// id для каждого названия, недостающие записи словаря создаются.
+	// Вызывается внутри транзакции записи чека
+	public Map<String, Integer> resolve(Collection<String> names) {
+		Map<String, Integer> resolved = new HashMap<>();
+		Set<String> missing = new LinkedHashSet<>();
+		for (String name : names) {
+			Integer id = ids.getIfPresent(name);
+			if (id != null) {
+				resolved.put(name, id);
+			} else {
+				missing.add(name);
+			}
+		}
+		if (missing.isEmpty()) {
+			return resolved;
+		}
+		
+		List<String> toInsert = new ArrayList<>(missing);
+		jdbcTemplate.batchUpdate(INSERT_NAME, toInsert, toInsert.size(), (ps, name) -> {
+			ps.setString(1, name);
+			ps.setString(2, normalize(name));
+		});
+		
+		Map<String, Integer> created = new HashMap<>();
+		for (int from = 0; from < toInsert.size(); from += SELECT_CHUNK) {
+			List<String> chunk = toInsert.subList(from, Math.min(from + SELECT_CHUNK, toInsert.size()));
+			String sql = "SELECT id, name FROM product_names WHERE name IN ("
+					+ String.join(", ", Collections.nCopies(chunk.size(), "?")) + ") FOR UPDATE";
+			jdbcTemplate.query(sql, rs -> {
+				created.put(rs.getString("name"), rs.getInt("id"));
+			}, chunk.toArray());
+		}
+		if (created.size() != toInsert.size()) {
+			throw new IllegalStateException("product_names: не найдено " + (toInsert.size() - created.size())
+					+ " из " + toInsert.size() + " названий после вставки");
+		}
+		resolved.putAll(created);
+		cacheAfterCommit(created);
+		return resolved;
+	}
+	
+	/**
+	 * Поиск без создания среди продуктов чата: точное совпадение, затем совпадение
+	 * без учёта регистра и крайних пробелов. Написание, которое покупали только в других чатах,
+	 * не подходит: по нему у чата нет истории цен.
+	 */
+	public Optional<Integer> findId(Long chatId, String name) {
+		List<Integer> found = jdbcTemplate.queryForList(SELECT_ID_IN_CHAT, Integer.class,
+				normalize(name), chatId, name);
+		return found.isEmpty() ? Optional.empty() : Optional.of(found.get(0));
+	}
+	
+	// Та же нормализация, что LOWER(TRIM(...)) в миграции V3: TRIM убирает только пробелы
+	static String normalize(String name) {
+		int start = 0;
+		int end = name.length();
+		while (start < end && name.charAt(start) == ' ') {
+			start++;
+		}
+		while (end > start && name.charAt(end - 1) == ' ') {
+			end--;
+		}
+		return name.substring(start, end).toLowerCase(Locale.ROOT);
+	}
+	
+	private void cacheAfterCommit(Map<String, Integer> entries) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			ids.putAll(entries);
+			return;
+		}
+		Map<String, Integer> pending = Collections.unmodifiableMap(entries);
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				ids.putAll(pending);
+			}
+		});
+	}
+}
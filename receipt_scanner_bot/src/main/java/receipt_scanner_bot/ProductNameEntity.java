@@ -0,0 +1,36 @@
+package receipt_scanner_bot;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+// Словарь названий продуктов, общий для всех чатов; таблицы фактов хранят только id.
+// Записи создаёт ProductDictionary, сущность нужна для JOIN в запросах
+@Entity
+@Table(name = "product_names",
+		uniqueConstraints = @UniqueConstraint(name = "uk_product_names_name", columnNames = "name"))
+public class ProductNameEntity {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+    
+    @Column(nullable = false)
+    private String name;
+    
+    @Column(name = "normalized_name", nullable = false)
+    private String normalizedName;
+    
+    public ProductNameEntity() {}
+    
+    public Integer getId() { return id; }
+    
+    public String getName() { return name; }
+    
+    public String getNormalizedName() { return normalizedName; }
+
+}
@@ -0,0 +1,50 @@
+package receipt_scanner_bot;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Нечёткий поиск по названиям продуктов чата.
+ * Индекс чата строится при первом поиске из findDistinctProductNamesByChatId
+ * и дополняется при загрузке чеков; число индексов в памяти ограничено.
+ */
+@Component
+public class ProductNameIndex {
+	
+	private final LineItemRepository lineItemRepository;
+	private final Cache<Long, TrigramIndex> indexes;
+	
+	public ProductNameIndex(LineItemRepository lineItemRepository,
+			@Value("${product-index.max-chats:1000}") long maxChats,
+			@Value("${product-index.expire-after-access:1h}") Duration expireAfterAccess) {
+		this.lineItemRepository = lineItemRepository;
+		this.indexes = Caffeine.newBuilder()
+				.maximumSize(maxChats)
+				.expireAfterAccess(expireAfterAccess)
+				.build();
+	}
+	
+	// Названия, похожие на запрос, от более похожих к менее
+	public List<String> search(Long chatId, String query, int limit) {
+		TrigramIndex index = indexes.get(chatId,
+				id -> new TrigramIndex(lineItemRepository.findDistinctProductNamesByChatId(id)));
+		return index.search(query, limit).stream()
+				.map(TrigramIndex.Match::name)
+				.toList();
+	}
+	
+	// Если индекс чата ещё не построен, новые названия попадут в него при построении
+	public void addNames(Long chatId, Collection<String> names) {
+		TrigramIndex index = indexes.getIfPresent(chatId);
+		if (index != null) {
+			index.addAll(names);
+		}
+	}
+}
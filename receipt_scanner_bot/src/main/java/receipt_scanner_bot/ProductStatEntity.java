@@ -1,54 +0,0 @@
-package receipt_scanner_bot;
-
-import java.math.BigDecimal;
-import java.time.LocalDate;
-
-import jakarta.persistence.Column;
-import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
-import jakarta.persistence.Id;
-import jakarta.persistence.Table;
-
-@Entity
-@Table(name = "product_stats")
-public class ProductStatEntity {
-    
-    @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private Long id;
-    
-    @Column(name = "chat_id", nullable = false) 
-    private Long chatId;
-    
-    @Column(name = "product_name", nullable = false)
-    private String productName;
-    
-    @Column(name = "unit_price", nullable = false, precision = 10, scale = 2)
-    private BigDecimal unitPrice;
-    
-    @Column(name = "stat_date", nullable = false)
-    private LocalDate statDate;
-
-    public ProductStatEntity() {}
-    
-    public ProductStatEntity(Long chatId, String productName, BigDecimal unitPrice, LocalDate statDate) {
-    	this.chatId = chatId;
-        this.productName = productName;
-        this.unitPrice = unitPrice;
-        this.statDate = statDate;
-    }
-    
-    public Long getId() { return id; }
-    public void setId(Long id) { this.id = id; }
-    
-    public String getProductName() { return productName; }
-    public void setProductName(String productName) { this.productName = productName; }
-    
-    public BigDecimal getUnitPrice() { return unitPrice; }
-    public void setUnitPrice(BigDecimal unitPrice) { this.unitPrice = unitPrice; }
-    
-    public LocalDate getStatDate() { return statDate; }
-    public void setStatDate(LocalDate statDate) { this.statDate = statDate; }
-
-}
\ No newline at end of file
@@ -0,0 +1,56 @@
+package receipt_scanner_bot;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+// Агрегат по продукту в рамках чата, обновляется при каждом сохранении чека
+@Entity
+@Table(name = "product_totals",
+		uniqueConstraints = @UniqueConstraint(name = "uk_product_totals_chat_product",
+				columnNames = {"chat_id", "product_id"}))
+public class ProductTotalEntity {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "chat_id", nullable = false)
+    private Long chatId;
+    
+    @Column(name = "product_id", nullable = false)
+    private Integer productId;
+    
+    @Column(name = "total_quantity", nullable = false, precision = 14, scale = 3)
+    private Quantity totalQuantity;
+    
+    @Column(name = "total_amount", nullable = false, precision = 14, scale = 2)
+    private Money totalAmount;
+    
+    @Column(name = "is_weight_product", nullable = false)
+    private boolean isWeightProduct;
+    
+    @Column(name = "purchase_count", nullable = false)
+    private int purchaseCount;
+    
+    public ProductTotalEntity() {}
+    
+    public Long getId() { return id; }
+    
+    public Long getChatId() { return chatId; }
+    
+    public Integer getProductId() { return productId; }
+    
+    public Quantity getTotalQuantity() { return totalQuantity; }
+    
+    public Money getTotalAmount() { return totalAmount; }
+    
+    public boolean isWeightProduct() { return isWeightProduct; }
+    
+    public int getPurchaseCount() { return purchaseCount; }
+
+}
@@ -0,0 +1,79 @@
+package receipt_scanner_bot;
+
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import receipt_scanner_bot.dto.ProductStatsDTO;
+
+@Repository
+public interface ProductTotalRepository extends JpaRepository<ProductTotalEntity, Long> {
+	
+	@Query("SELECT new receipt_scanner_bot.dto.ProductStatsDTO(" +
+			"n.name, t.totalQuantity, t.totalAmount, t.isWeightProduct) " +
+			"FROM ProductTotalEntity t JOIN ProductNameEntity n ON n.id = t.productId " +
+			"WHERE t.chatId = :chatId " +
+			"ORDER BY t.totalAmount DESC, n.name ASC")
+	List<ProductStatsDTO> findStatsByChatId(@Param("chatId") Long chatId);
+	
+	// Строка страницы /stats вместе с ключом (total_amount, product_id) для перехода по страницам
+	interface TotalRow {
+		Integer getProductId();
+		String getProductName();
+		Quantity getTotalQuantity();
+		Money getTotalAmount();
+		boolean isWeightProduct();
+	}
+	
+	// Страницы идут по индексу (chat_id, total_amount, product_id) без OFFSET:
+	// следующая начинается сразу после последней строки предыдущей, поэтому дальние страницы не дороже первой
+	@Query("SELECT t.productId AS productId, n.name AS productName, t.totalQuantity AS totalQuantity, " +
+			"t.totalAmount AS totalAmount, t.isWeightProduct AS weightProduct " +
+			"FROM ProductTotalEntity t JOIN ProductNameEntity n ON n.id = t.productId " +
+			"WHERE t.chatId = :chatId " +
+			"ORDER BY t.totalAmount DESC, t.productId DESC")
+	List<TotalRow> findFirstPage(@Param("chatId") Long chatId, Limit limit);
+	
+	@Query("SELECT t.productId AS productId, n.name AS productName, t.totalQuantity AS totalQuantity, " +
+			"t.totalAmount AS totalAmount, t.isWeightProduct AS weightProduct " +
+			"FROM ProductTotalEntity t JOIN ProductNameEntity n ON n.id = t.productId " +
+			"WHERE t.chatId = :chatId AND (t.totalAmount < :totalAmount " +
+			"OR (t.totalAmount = :totalAmount AND t.productId < :productId)) " +
+			"ORDER BY t.totalAmount DESC, t.productId DESC")
+	List<TotalRow> findPageAfter(@Param("chatId") Long chatId,
+			@Param("totalAmount") Money totalAmount,
+			@Param("productId") Integer productId,
+			Limit limit);
+	
+	// Предыдущая страница читается в обратном порядке, вызывающий её разворачивает
+	@Query("SELECT t.productId AS productId, n.name AS productName, t.totalQuantity AS totalQuantity, " +
+			"t.totalAmount AS totalAmount, t.isWeightProduct AS weightProduct " +
+			"FROM ProductTotalEntity t JOIN ProductNameEntity n ON n.id = t.productId " +
+			"WHERE t.chatId = :chatId AND (t.totalAmount > :totalAmount " +
+			"OR (t.totalAmount = :totalAmount AND t.productId > :productId)) " +
+			"ORDER BY t.totalAmount ASC, t.productId ASC")
+	List<TotalRow> findPageBefore(@Param("chatId") Long chatId,
+			@Param("totalAmount") Money totalAmount,
+			@Param("productId") Integer productId,
+			Limit limit);
+	
+	@Modifying
+	@Query("DELETE FROM ProductTotalEntity t WHERE t.chatId = :chatId")
+	int deleteByChatId(@Param("chatId") Long chatId);
+	
+	// Полный пересчёт агрегата чата по истории покупок
+	@Modifying
+	@Query(value = "INSERT INTO product_totals " +
+			"(chat_id, product_id, total_quantity, total_amount, is_weight_product, purchase_count) " +
+			"SELECT chat_id, product_id, SUM(quantity), SUM(total_price), " +
+			"MAX(CASE WHEN is_weight_product THEN 1 ELSE 0 END), COUNT(*) " +
+			"FROM line_items WHERE chat_id = :chatId " +
+			"GROUP BY chat_id, product_id",
+			nativeQuery = true)
+	int rebuildFromLineItems(@Param("chatId") Long chatId);
+}
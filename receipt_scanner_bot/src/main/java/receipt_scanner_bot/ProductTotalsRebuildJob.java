@@ -0,0 +1,44 @@
+package receipt_scanner_bot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Заполнение product_totals и календарных агрегатов по истории покупок при старте.
+// По умолчанию пересчитываются только чаты, у которых есть покупки, но нет product_totals;
+// stats.totals.rebuild-on-startup=true пересчитывает все чаты. Каждый чат - в своей транзакции.
+@Component
+@ConditionalOnProperty(name = "stats.totals.backfill-on-startup", havingValue = "true", matchIfMissing = true)
+public class ProductTotalsRebuildJob implements ApplicationRunner {
+	
+	private static Logger log = LoggerFactory.getLogger(ProductTotalsRebuildJob.class);
+	
+	private final DatabaseService databaseService;
+	private final boolean rebuildAll;
+	
+	public ProductTotalsRebuildJob(DatabaseService databaseService,
+			@Value("${stats.totals.rebuild-on-startup:false}") boolean rebuildAll) {
+		this.databaseService = databaseService;
+		this.rebuildAll = rebuildAll;
+	}
+
+	@Override
+	public void run(ApplicationArguments args) {
+		var chatIds = rebuildAll ? databaseService.findAllChatIds() : databaseService.findChatIdsWithoutTotals();
+		if (chatIds.isEmpty()) {
+			return;
+		}
+		log.info("Rebuilding product totals for {} chats", chatIds.size());
+		
+		int rows = 0;
+		for (Long chatId : chatIds) {
+			rows += databaseService.rebuildProductTotals(chatId);
+			rows += databaseService.rebuildCalendarTotals(chatId);
+		}
+		log.info("Product totals rebuilt: {} rows", rows);
+	}
+}
@@ -0,0 +1,56 @@
+package receipt_scanner_bot;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Количество в тысячных долях: граммы для весовых товаров, тысячные штуки для штучных.
+ * Три знака после запятой - столько же, сколько хранят колонки quantity в базе.
+ */
+public record Quantity(long millis) implements Comparable<Quantity> {
+
+	static final long SCALE_FACTOR = 1000;
+
+	public static final Quantity ZERO = new Quantity(0);
+
+	public static Quantity ofMillis(long millis) {
+		return millis == 0 ? ZERO : new Quantity(millis);
+	}
+
+	public static Quantity ofUnits(long units) {
+		return ofMillis(Math.multiplyExact(units, SCALE_FACTOR));
+	}
+
+	// Лишние знаки после третьего округляются HALF_UP, как при записи в DECIMAL(10, 3)
+	public static Quantity of(BigDecimal value) {
+		return ofMillis(value.setScale(3, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+	}
+
+	public Quantity plus(Quantity other) {
+		return ofMillis(Math.addExact(millis, other.millis));
+	}
+
+	// Есть дробная часть: признак весового товара
+	public boolean isFractional() {
+		return millis % SCALE_FACTOR != 0;
+	}
+
+	// Целая часть с отбрасыванием дробной, как BigDecimal.intValue()
+	public long wholeUnits() {
+		return millis / SCALE_FACTOR;
+	}
+
+	public BigDecimal toBigDecimal() {
+		return BigDecimal.valueOf(millis, 3);
+	}
+
+	@Override
+	public int compareTo(Quantity other) {
+		return Long.compare(millis, other.millis);
+	}
+
+	@Override
+	public String toString() {
+		return toBigDecimal().toPlainString();
+	}
+}
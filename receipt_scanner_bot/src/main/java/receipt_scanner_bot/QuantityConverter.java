@@ -0,0 +1,21 @@
+package receipt_scanner_bot;
+
+import java.math.BigDecimal;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+// Колонки DECIMAL(_, 3) <-> Quantity для всех сущностей
+@Converter(autoApply = true)
+public class QuantityConverter implements AttributeConverter<Quantity, BigDecimal> {
+
+	@Override
+	public BigDecimal convertToDatabaseColumn(Quantity quantity) {
+		return quantity == null ? null : quantity.toBigDecimal();
+	}
+
+	@Override
+	public Quantity convertToEntityAttribute(BigDecimal value) {
+		return value == null ? null : Quantity.of(value);
+	}
+}
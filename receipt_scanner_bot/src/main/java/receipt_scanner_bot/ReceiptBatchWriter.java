@@ -0,0 +1,174 @@
+package receipt_scanner_bot;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Пакетная запись позиций чека через JDBC.
+ * Сущности используют IDENTITY, из-за чего Hibernate не умеет батчить вставки,
+ * поэтому каждая таблица пишется одним batchUpdate, а с rewriteBatchedStatements
+ * драйвер MySQL превращает его в многострочный INSERT.
+ * Вызывается внутри транзакции DatabaseService, JdbcTemplate использует то же соединение.
+ * Названия продуктов заменяются на id из ProductDictionary до записи.
+ * Вместе с product_totals тем же способом пополняются календарные агрегаты по дням и месяцам.
+ */
+@Component
+public class ReceiptBatchWriter {
+	
+	// Одна строка на позицию: и для общей статистики, и для истории цен
+	private static final String INSERT_LINE_ITEM =
+			"INSERT INTO line_items " +
+			"(chat_id, product_id, quantity, unit_price, total_price, purchase_date, is_weight_product) " +
+			"VALUES (?, ?, ?, ?, ?, ?, ?)";
+	
+	// Инкрементальное обновление агрегата: новая строка или прибавка к существующей
+	private static final String UPSERT_PRODUCT_TOTAL =
+			"INSERT INTO product_totals " +
+			"(chat_id, product_id, total_quantity, total_amount, is_weight_product, purchase_count) " +
+			"VALUES (?, ?, ?, ?, ?, ?) " +
+			"ON DUPLICATE KEY UPDATE " +
+			"total_quantity = total_quantity + VALUES(total_quantity), " +
+			"total_amount = total_amount + VALUES(total_amount), " +
+			"is_weight_product = is_weight_product OR VALUES(is_weight_product), " +
+			"purchase_count = purchase_count + VALUES(purchase_count)";
+	
+	private static final String UPSERT_DAILY_TOTAL =
+			"INSERT INTO product_daily_totals " +
+			"(chat_id, purchase_date, product_id, total_quantity, total_amount, is_weight_product, purchase_count) " +
+			"VALUES (?, ?, ?, ?, ?, ?, ?) " +
+			"ON DUPLICATE KEY UPDATE " +
+			"total_quantity = total_quantity + VALUES(total_quantity), " +
+			"total_amount = total_amount + VALUES(total_amount), " +
+			"is_weight_product = is_weight_product OR VALUES(is_weight_product), " +
+			"purchase_count = purchase_count + VALUES(purchase_count)";
+	
+	private static final String UPSERT_MONTHLY_TOTAL =
+			"INSERT INTO product_monthly_totals " +
+			"(chat_id, purchase_month, product_id, total_quantity, total_amount, is_weight_product, purchase_count) " +
+			"VALUES (?, ?, ?, ?, ?, ?, ?) " +
+			"ON DUPLICATE KEY UPDATE " +
+			"total_quantity = total_quantity + VALUES(total_quantity), " +
+			"total_amount = total_amount + VALUES(total_amount), " +
+			"is_weight_product = is_weight_product OR VALUES(is_weight_product), " +
+			"purchase_count = purchase_count + VALUES(purchase_count)";
+	
+	private final JdbcTemplate jdbcTemplate;
+	private final ProductDictionary productDictionary;
+	private final int batchSize;
+	
+	public ReceiptBatchWriter(JdbcTemplate jdbcTemplate,
+			ProductDictionary productDictionary,
+			@Value("${receipt.write.batch-size:100}") int batchSize) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.productDictionary = productDictionary;
+		this.batchSize = batchSize;
+	}
+	
+	public void write(Long chatId, List<Product> products) {
+		if (products.isEmpty()) {
+			return;
+		}
+		
+		Set<String> names = products.stream().map(Product::getName).collect(Collectors.toSet());
+		Map<String, Integer> productIds = productDictionary.resolve(names);
+		
+		jdbcTemplate.batchUpdate(INSERT_LINE_ITEM, products, batchSize, (ps, product) -> {
+			ps.setLong(1, chatId);
+			ps.setInt(2, productIds.get(product.getName()));
+			ps.setBigDecimal(3, product.getQuantity().toBigDecimal());
+			ps.setBigDecimal(4, product.getPricePerUnit().toBigDecimal());
+			ps.setBigDecimal(5, product.getTotalPrice().toBigDecimal());
+			ps.setObject(6, product.getDate());
+			ps.setBoolean(7, product.getIsWeightProduct());
+		});
+		
+		// Порядок строк фиксирован (по ключу), чтобы параллельные загрузки
+		// одного чата брали блокировки агрегатов в одинаковом порядке
+		List<ProductTotalDelta> deltas = fold(products, productIds, product -> 0);
+		jdbcTemplate.batchUpdate(UPSERT_PRODUCT_TOTAL, deltas, batchSize, (ps, delta) -> {
+			ps.setLong(1, chatId);
+			ps.setInt(2, delta.productId);
+			ps.setBigDecimal(3, BigDecimal.valueOf(delta.millis, 3));
+			ps.setBigDecimal(4, BigDecimal.valueOf(delta.kopecks, 2));
+			ps.setBoolean(5, delta.weightProduct);
+			ps.setInt(6, delta.count);
+		});
+		
+		List<ProductTotalDelta> daily = fold(products, productIds, product -> (int) product.getDate().toEpochDay());
+		jdbcTemplate.batchUpdate(UPSERT_DAILY_TOTAL, daily, batchSize, (ps, delta) -> {
+			ps.setLong(1, chatId);
+			ps.setObject(2, LocalDate.ofEpochDay(delta.bucket));
+			setBucketTotals(ps, delta);
+		});
+		
+		List<ProductTotalDelta> monthly = fold(products, productIds,
+				product -> CalendarRollupRepository.monthKey(product.getDate()));
+		jdbcTemplate.batchUpdate(UPSERT_MONTHLY_TOTAL, monthly, batchSize, (ps, delta) -> {
+			ps.setLong(1, chatId);
+			ps.setInt(2, delta.bucket);
+			setBucketTotals(ps, delta);
+		});
+	}
+	
+	private void setBucketTotals(PreparedStatement ps, ProductTotalDelta delta) throws SQLException {
+		ps.setInt(3, delta.productId);
+		ps.setBigDecimal(4, BigDecimal.valueOf(delta.millis, 3));
+		ps.setBigDecimal(5, BigDecimal.valueOf(delta.kopecks, 2));
+		ps.setBoolean(6, delta.weightProduct);
+		ps.setInt(7, delta.count);
+	}
+	
+	// Сворачиваем позиции чека по (bucket, id продукта): одна upsert-строка на продукт в каждом дне или месяце.
+	// Строки отсортированы по ключу таблицы
+	private List<ProductTotalDelta> fold(List<Product> products, Map<String, Integer> productIds,
+			ToIntFunction<Product> bucketOf) {
+		Map<Long, ProductTotalDelta> deltas = new LinkedHashMap<>();
+		for (Product product : products) {
+			int bucket = bucketOf.applyAsInt(product);
+			int productId = productIds.get(product.getName());
+			deltas.computeIfAbsent(((long) bucket << 32) | (productId & 0xFFFFFFFFL),
+					key -> new ProductTotalDelta(bucket, productId))
+				.add(product);
+		}
+		List<ProductTotalDelta> sorted = new ArrayList<>(deltas.values());
+		sorted.sort((d1, d2) -> d1.bucket != d2.bucket
+				? Integer.compare(d1.bucket, d2.bucket)
+				: Integer.compare(d1.productId, d2.productId));
+		return sorted;
+	}
+	
+	// Суммы копятся в long: тысячные доли количества и копейки
+	private static class ProductTotalDelta {
+		private final int bucket;
+		private final int productId;
+		private long millis;
+		private long kopecks;
+		private boolean weightProduct;
+		private int count;
+		
+		ProductTotalDelta(int bucket, int productId) {
+			this.bucket = bucket;
+			this.productId = productId;
+		}
+		
+		void add(Product product) {
+			millis += product.getQuantity().millis();
+			kopecks += product.getTotalPrice().kopecks();
+			weightProduct |= product.getIsWeightProduct();
+			count++;
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package receipt_scanner_bot;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+// Загруженный чек; уникальный фискальный признак в рамках чата защищает от повторной загрузки
+@Entity
+@Table(name = "receipts",
+		uniqueConstraints = @UniqueConstraint(name = "uk_receipts_chat_fiscal_key",
+				columnNames = {"chat_id", "fn", "fd", "fp"}))
+public class ReceiptEntity {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "chat_id", nullable = false)
+    private Long chatId;
+    
+    @Column(nullable = false, length = 16)
+    private String fn;
+    
+    @Column(nullable = false)
+    private Long fd;
+    
+    @Column(nullable = false)
+    private Long fp;
+    
+    @Column(name = "receipt_date_time", nullable = false)
+    private LocalDateTime receiptDateTime;
+    
+    @Column(name = "total_sum", nullable = false, precision = 10, scale = 2)
+    private Money totalSum;
+    
+    @Column(name = "uploaded_at", nullable = false)
+    private LocalDateTime uploadedAt;
+    
+    public ReceiptEntity() {}
+    
+    public ReceiptEntity(Long chatId, ReceiptQr qr) {
+    	this.chatId = chatId;
+    	this.fn = qr.fn();
+    	this.fd = qr.fd();
+    	this.fp = qr.fp();
+    	this.receiptDateTime = qr.dateTime();
+    	this.totalSum = qr.sum();
+    	this.uploadedAt = LocalDateTime.now();
+    }
+    
+    public Long getId() { return id; }
+    
+    public Long getChatId() { return chatId; }
+    
+    public String getFn() { return fn; }
+    
+    public Long getFd() { return fd; }
+    
+    public Long getFp() { return fp; }
+    
+    public LocalDateTime getReceiptDateTime() { return receiptDateTime; }
+    
+    public Money getTotalSum() { return totalSum; }
+    
+    public LocalDateTime getUploadedAt() { return uploadedAt; }
+
+}
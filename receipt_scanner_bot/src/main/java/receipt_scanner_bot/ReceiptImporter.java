@@ -0,0 +1,434 @@
+package receipt_scanner_bot;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.Message;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Массовый импорт чеков (/import) конвейером: загрузка из proverkacheka -> разбор -> запись пачками.
+ * Загрузка идёт параллельно, но не больше import.fetch-parallelism запросов одновременно
+ * и не чаще import.fetch-rate в секунду (общий лимит для всех импортов).
+ * Между разбором и записью ограниченная очередь: если запись не успевает, разбор ждёт,
+ * а за ним и загрузка. Ход импорта показывается в одном сообщении, которое редактируется.
+ */
+@Component
+public class ReceiptImporter {
+	
+	private static Logger log = LoggerFactory.getLogger(ReceiptImporter.class);
+	
+	record ImportResult(int total, int saved, int duplicates, int failed) {}
+	
+	// Конец потока разобранных чеков для записывающего потока
+	private static final ParsedReceipt END = new ParsedReceipt(List.of(), null);
+	
+	// Сколько ждать следующий чек, прежде чем записать неполную пачку
+	private static final long WRITE_LINGER_MILLIS = 200;
+	
+	// Как часто разбор, ожидающий места в очереди, проверяет, жив ли записывающий поток
+	private static final long QUEUE_OFFER_MILLIS = 500;
+	
+	private final Client client;
+	private final Parser parser;
+	private final DatabaseService databaseService;
+	private final ReceiptRegistry receiptRegistry;
+	private final StatsCache statsCache;
+	private final ProductNameIndex productNameIndex;
+	private final OutboundMessageSender outboundMessageSender;
+	private final StatsFormatter statsFormatter;
+	
+	private final int fetchParallelism;
+	private final int writeBatchSize;
+	private final int queueCapacity;
+	private final int maxItems;
+	private final Duration progressInterval;
+	private final TokenBucket fetchBucket;
+	
+	private final ExecutorService jobs;
+	private final ScheduledExecutorService progressTicker;
+	private final Set<Long> runningChats = ConcurrentHashMap.newKeySet();
+	
+	public ReceiptImporter(Client client,
+			Parser parser,
+			DatabaseService databaseService,
+			ReceiptRegistry receiptRegistry,
+			StatsCache statsCache,
+			ProductNameIndex productNameIndex,
+			OutboundMessageSender outboundMessageSender,
+			StatsFormatter statsFormatter,
+			@Value("${import.fetch-parallelism:4}") int fetchParallelism,
+			@Value("${import.fetch-rate:5}") double fetchRate,
+			@Value("${import.write-batch-size:20}") int writeBatchSize,
+			@Value("${import.queue-capacity:50}") int queueCapacity,
+			@Value("${import.max-items:1000}") int maxItems,
+			@Value("${import.max-jobs:2}") int maxJobs,
+			@Value("${import.progress-interval:2s}") Duration progressInterval) {
+		this.client = client;
+		this.parser = parser;
+		this.databaseService = databaseService;
+		this.receiptRegistry = receiptRegistry;
+		this.statsCache = statsCache;
+		this.productNameIndex = productNameIndex;
+		this.outboundMessageSender = outboundMessageSender;
+		this.statsFormatter = statsFormatter;
+		this.fetchParallelism = fetchParallelism;
+		this.writeBatchSize = writeBatchSize;
+		this.queueCapacity = queueCapacity;
+		this.maxItems = maxItems;
+		this.progressInterval = progressInterval;
+		this.fetchBucket = new TokenBucket((int) Math.max(1, fetchRate), fetchRate);
+		
+		AtomicInteger counter = new AtomicInteger();
+		this.jobs = Executors.newFixedThreadPool(maxJobs, runnable -> {
+			Thread thread = new Thread(runnable, "import-job-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.progressTicker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "import-progress");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	
+	public int getMaxItems() {
+		return maxItems;
+	}
+	
+	// Пусто, если в этом чате импорт уже идёт
+	public Optional<CompletableFuture<ImportResult>> start(Long chatId, List<ImportDocument.Source> sources) {
+		if (!runningChats.add(chatId)) {
+			return Optional.empty();
+		}
+		CompletableFuture<ImportResult> result = CompletableFuture
+				.supplyAsync(() -> new ImportJob(chatId, sources).run(), jobs)
+				.whenComplete((done, error) -> {
+					runningChats.remove(chatId);
+					if (error != null) {
+						log.error("Import failed for chat {}", chatId, error);
+					}
+				});
+		return Optional.of(result);
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		progressTicker.shutdownNow();
+		jobs.shutdownNow();
+	}
+	
+	private class ImportJob {
+		
+		private final Long chatId;
+		private final List<ImportDocument.Source> sources;
+		private final BlockingQueue<ParsedReceipt> parsed = new ArrayBlockingQueue<>(queueCapacity);
+		private final Semaphore inFlight = new Semaphore(fetchParallelism);
+		private final ExecutorService workers;
+		
+		private final AtomicInteger processed = new AtomicInteger();
+		private final AtomicInteger saved = new AtomicInteger();
+		private final AtomicInteger duplicates = new AtomicInteger();
+		private final AtomicInteger failed = new AtomicInteger();
+		
+		private CompletableFuture<Message> progressMessage;
+		private volatile Integer progressMessageId;
+		private final AtomicBoolean editInFlight = new AtomicBoolean();
+		// Записывающий поток завершился: очередь больше никто не разбирает
+		private volatile boolean writerStopped;
+		private int reportedProcessed = -1;
+		
+		ImportJob(Long chatId, List<ImportDocument.Source> sources) {
+			this.chatId = chatId;
+			this.sources = sources;
+			// Потоки разбора (не больше, чем загрузок одновременно) и один записывающий
+			AtomicInteger counter = new AtomicInteger();
+			this.workers = Executors.newFixedThreadPool(fetchParallelism + 1, runnable -> {
+				Thread thread = new Thread(runnable, "import-" + chatId + "-" + counter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		
+		ImportResult run() {
+			progressMessage = outboundMessageSender.submit(chatId, new SendMessage(String.valueOf(chatId), progressText()));
+			progressMessage.thenAccept(message -> progressMessageId = message.getMessageId());
+			ScheduledFuture<?> ticker = progressTicker.scheduleWithFixedDelay(this::reportProgress,
+					progressInterval.toMillis(), progressInterval.toMillis(), TimeUnit.MILLISECONDS);
+			Future<?> writer = workers.submit(this::writeLoop);
+			
+			try {
+				for (ImportDocument.Source source : sources) {
+					if (writerStopped) {
+						// Сохранять некуда: оставшиеся чеки не загружаем
+						fail(new IllegalStateException("Запись импорта остановлена"));
+					} else {
+						feed(source);
+					}
+				}
+				// Все разрешения вернулись - все загрузки завершены и их чеки в очереди
+				inFlight.acquire(fetchParallelism);
+				enqueue(END);
+				writer.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				log.error("Import writer failed for chat {}", chatId, e.getCause());
+			} finally {
+				ticker.cancel(false);
+				workers.shutdownNow();
+			}
+			
+			ImportResult result = new ImportResult(sources.size(), saved.get(), duplicates.get(),
+					sources.size() - saved.get() - duplicates.get());
+			finishProgress(result);
+			return result;
+		}
+		
+		private void feed(ImportDocument.Source source) throws InterruptedException {
+			if (source.response() != null) {
+				inFlight.acquire();
+				workers.execute(() -> {
+					try {
+						accept(parser.parseReceipt(source.response()), true);
+					} catch (RuntimeException e) {
+						// Любой сбой на чек засчитывается, иначе импорт не дойдёт до итога
+						fail(e);
+					} finally {
+						inFlight.release();
+					}
+				});
+				return;
+			}
+			
+			ReceiptQr qr;
+			try {
+				qr = ReceiptQr.parse(source.qr());
+			} catch (IllegalArgumentException e) {
+				fail(e);
+				return;
+			}
+			// Уже загруженные чеки не тратят лимит запросов к proverkacheka
+			if (receiptRegistry.isKnown(chatId, qr)) {
+				duplicates.incrementAndGet();
+				processed.incrementAndGet();
+				return;
+			}
+			
+			long wait;
+			while ((wait = fetchBucket.tryAcquire()) > 0) {
+				TimeUnit.NANOSECONDS.sleep(wait);
+			}
+			inFlight.acquire();
+			client.getReceiptDataAsync(qr.raw()).whenCompleteAsync((body, error) -> {
+				try {
+					if (error != null) {
+						fail(error);
+					} else {
+						// Ключ берём из QR-кода: по нему проверялся дубликат
+						accept(new ParsedReceipt(parser.parse(body), qr), false);
+					}
+				} catch (RuntimeException e) {
+					fail(e);
+				} finally {
+					inFlight.release();
+				}
+			}, workers);
+		}
+		
+		private void accept(ParsedReceipt receipt, boolean checkKnown) {
+			if (receipt.qr() == null) {
+				fail(new IllegalArgumentException("В ответе сервера нет фискальных данных чека"));
+				return;
+			}
+			if (checkKnown && receiptRegistry.isKnown(chatId, receipt.qr())) {
+				duplicates.incrementAndGet();
+				processed.incrementAndGet();
+				return;
+			}
+			try {
+				// Очередь ограничена: если запись отстаёт, разбор и загрузка ждут здесь
+				if (!enqueue(receipt)) {
+					fail(new IllegalStateException("Запись импорта остановлена"));
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				fail(e);
+			}
+		}
+		
+		// false, если записывающий поток завершился и места в очереди уже не будет
+		private boolean enqueue(ParsedReceipt receipt) throws InterruptedException {
+			while (!parsed.offer(receipt, QUEUE_OFFER_MILLIS, TimeUnit.MILLISECONDS)) {
+				if (writerStopped) {
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		private void fail(Throwable error) {
+			failed.incrementAndGet();
+			processed.incrementAndGet();
+			log.warn("Import item failed for chat {}: {}", chatId, error.getMessage());
+		}
+		
+		private void writeLoop() {
+			List<ParsedReceipt> batch = new ArrayList<>(writeBatchSize);
+			Set<ReceiptQr.FiscalKey> batchKeys = new HashSet<>();
+			try {
+				while (true) {
+					ParsedReceipt receipt = batch.isEmpty()
+							? parsed.take()
+							: parsed.poll(WRITE_LINGER_MILLIS, TimeUnit.MILLISECONDS);
+					if (receipt == null) {
+						writeBatch(batch, batchKeys);
+						continue;
+					}
+					if (receipt == END) {
+						writeBatch(batch, batchKeys);
+						return;
+					}
+					// Один и тот же чек дважды в документе
+					if (!batchKeys.add(receipt.qr().fiscalKey())) {
+						duplicates.incrementAndGet();
+						processed.incrementAndGet();
+						continue;
+					}
+					batch.add(receipt);
+					if (batch.size() >= writeBatchSize) {
+						writeBatch(batch, batchKeys);
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				writerStopped = true;
+			}
+		}
+		
+		// Сбой одной пачки не останавливает запись: остальные пачки пишутся дальше,
+		// а несохранённые чеки попадут в итог как ошибочные (total - saved - duplicates)
+		private void writeBatch(List<ParsedReceipt> batch, Set<ReceiptQr.FiscalKey> batchKeys) {
+			try {
+				flush(batch);
+			} catch (RuntimeException error) {
+				log.error("Failed writing import batch for chat {}", chatId, error);
+			} finally {
+				batch.clear();
+				batchKeys.clear();
+			}
+		}
+		
+		private void flush(List<ParsedReceipt> batch) {
+			if (batch.isEmpty()) {
+				return;
+			}
+			
+			List<ParsedReceipt> stored = new ArrayList<>(batch.size());
+			try {
+				databaseService.saveReceipts(chatId, batch);
+				stored.addAll(batch);
+			} catch (DataIntegrityViolationException e) {
+				// Какой-то из чеков успели сохранить параллельно: пишем пачку по одному
+				for (ParsedReceipt receipt : batch) {
+					try {
+						databaseService.saveReceipt(chatId, receipt.qr(), receipt.products());
+						stored.add(receipt);
+					} catch (DataIntegrityViolationException duplicate) {
+						duplicates.incrementAndGet();
+						receiptRegistry.remember(chatId, receipt.qr());
+					} catch (RuntimeException error) {
+						failed.incrementAndGet();
+						log.error("Failed saving imported receipt for chat {}", chatId, error);
+					}
+				}
+			} catch (RuntimeException error) {
+				failed.addAndGet(batch.size());
+				log.error("Failed saving imported receipts for chat {}", chatId, error);
+			}
+			
+			saved.addAndGet(stored.size());
+			processed.addAndGet(batch.size());
+			if (stored.isEmpty()) {
+				return;
+			}
+			
+			// Чеки уже в базе: сбой кэшей не делает их ошибочными
+			try {
+				statsCache.invalidateChat(chatId);
+				List<String> names = new ArrayList<>();
+				for (ParsedReceipt receipt : stored) {
+					receiptRegistry.remember(chatId, receipt.qr());
+					receipt.products().forEach(product -> names.add(product.getName()));
+				}
+				productNameIndex.addNames(chatId, names);
+			} catch (RuntimeException error) {
+				log.error("Failed updating caches after import for chat {}", chatId, error);
+			}
+		}
+		
+		// Правка не чаще progressInterval и только одна в очереди, чтобы не занимать лимит чата
+		private void reportProgress() {
+			int current = processed.get();
+			if (progressMessageId == null || current == reportedProcessed || !editInFlight.compareAndSet(false, true)) {
+				return;
+			}
+			reportedProcessed = current;
+			CompletableFuture<Serializable> edit = outboundMessageSender.submit(chatId, EditMessageText.builder()
+					.chatId(chatId)
+					.messageId(progressMessageId)
+					.text(progressText())
+					.build());
+			edit.whenComplete((response, error) -> editInFlight.set(false));
+		}
+		
+		private void finishProgress(ImportResult result) {
+			String text = statsFormatter.formatImportFinished(result);
+			// Короткий импорт может закончиться раньше, чем придёт ответ на первое сообщение
+			progressMessage.whenComplete((message, error) -> {
+				if (message != null) {
+					outboundMessageSender.send(chatId, EditMessageText.builder()
+							.chatId(chatId)
+							.messageId(message.getMessageId())
+							.text(text)
+							.build());
+				} else {
+					outboundMessageSender.send(chatId, text);
+				}
+			});
+		}
+		
+		private String progressText() {
+			return statsFormatter.formatImportProgress(processed.get(), sources.size(),
+					saved.get(), duplicates.get(), failed.get());
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package receipt_scanner_bot;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Разобранная строка QR-кода кассового чека: t=20240101T1200&s=123.45&fn=...&i=...&fp=...&n=1
+ * Проверяется локально, до обращения к proverkacheka.
+ */
+public record ReceiptQr(
+		String raw,
+		LocalDateTime dateTime,
+		Money sum,
+		String fn,
+		long fd,
+		long fp,
+		int operationType
+	) {
+	
+	// Фискальный признак чека: номер ФН, номер документа и фискальный признак документа
+	public record FiscalKey(String fn, long fd, long fp) {}
+	
+	private static final DateTimeFormatter SHORT_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmm");
+	private static final DateTimeFormatter FULL_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+	
+	private static final Pattern TIME = Pattern.compile("\\d{8}T\\d{4}(\\d{2})?");
+	private static final Pattern SUM = Pattern.compile("\\d{1,8}(\\.\\d{1,2})?");
+	private static final Pattern FN = Pattern.compile("\\d{16}");
+	private static final Pattern NUMBER = Pattern.compile("\\d{1,10}");
+	private static final Pattern OPERATION = Pattern.compile("[1-4]");
+	
+	public FiscalKey fiscalKey() {
+		return new FiscalKey(fn, fd, fp);
+	}
+	
+	public static ReceiptQr parse(String text) {
+		if (text == null || text.isBlank()) {
+			throw new IllegalArgumentException("Пустая строка QR-кода");
+		}
+		String raw = text.strip();
+		
+		Map<String, String> params = new HashMap<>();
+		for (String pair : raw.split("&")) {
+			int eq = pair.indexOf('=');
+			if (eq <= 0) {
+				throw new IllegalArgumentException("Неверный формат QR-кода: '" + pair + "'");
+			}
+			if (params.put(pair.substring(0, eq), pair.substring(eq + 1)) != null) {
+				throw new IllegalArgumentException("Неверный формат QR-кода: параметр "
+						+ pair.substring(0, eq) + " указан дважды");
+			}
+		}
+		
+		String t = require(params, "t", TIME);
+		String s = require(params, "s", SUM);
+		String fn = require(params, "fn", FN);
+		String i = require(params, "i", NUMBER);
+		String fp = require(params, "fp", NUMBER);
+		String n = require(params, "n", OPERATION);
+		
+		LocalDateTime dateTime;
+		try {
+			dateTime = LocalDateTime.parse(t, t.length() == 13 ? SHORT_TIME : FULL_TIME);
+		} catch (DateTimeParseException e) {
+			throw new IllegalArgumentException("Неверный формат QR-кода: некорректная дата " + t);
+		}
+		
+		return new ReceiptQr(raw,
+				dateTime,
+				Money.parse(s),
+				fn,
+				Long.parseLong(i),
+				Long.parseLong(fp),
+				Integer.parseInt(n));
+	}
+	
+	private static String require(Map<String, String> params, String name, Pattern format) {
+		String value = params.get(name);
+		if (value == null) {
+			throw new IllegalArgumentException("Неверный формат QR-кода: отсутствует параметр " + name);
+		}
+		if (!format.matcher(value).matches()) {
+			throw new IllegalArgumentException("Неверный формат QR-кода: некорректное значение " + name + "=" + value);
+		}
+		return value;
+	}
+}
@@ -0,0 +1,48 @@
+package receipt_scanner_bot;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Знает, какие чеки уже загружены в чат.
+ * Недавние фискальные признаки держатся в ограниченном LRU-кэше, промах проверяется по таблице receipts.
+ */
+@Component
+public class ReceiptRegistry {
+	
+	private record Key(Long chatId, ReceiptQr.FiscalKey fiscalKey) {}
+	
+	private final ReceiptRepository receiptRepository;
+	private final Map<Key, Boolean> knownReceipts;
+	
+	public ReceiptRegistry(ReceiptRepository receiptRepository,
+			@Value("${receipt.dedup.cache-size:10000}") int cacheSize) {
+		this.receiptRepository = receiptRepository;
+		this.knownReceipts = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Boolean> eldest) {
+				return size() > cacheSize;
+			}
+		});
+	}
+	
+	public boolean isKnown(Long chatId, ReceiptQr qr) {
+		var key = new Key(chatId, qr.fiscalKey());
+		if (knownReceipts.get(key) != null) {
+			return true;
+		}
+		boolean exists = receiptRepository.existsByChatIdAndFnAndFdAndFp(chatId, qr.fn(), qr.fd(), qr.fp());
+		if (exists) {
+			knownReceipts.put(key, Boolean.TRUE);
+		}
+		return exists;
+	}
+	
+	public void remember(Long chatId, ReceiptQr qr) {
+		knownReceipts.put(new Key(chatId, qr.fiscalKey()), Boolean.TRUE);
+	}
+}
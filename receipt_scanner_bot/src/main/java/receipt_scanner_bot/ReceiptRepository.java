@@ -0,0 +1,10 @@
+package receipt_scanner_bot;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ReceiptRepository extends JpaRepository<ReceiptEntity, Long> {
+	
+	boolean existsByChatIdAndFnAndFdAndFp(Long chatId, String fn, Long fd, Long fp);
+}
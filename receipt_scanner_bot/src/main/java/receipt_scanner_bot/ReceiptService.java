@@ -2,7 +2,14 @@ package receipt_scanner_bot;
 
 interface ReceiptService {
 
-	String getStatsForAllProducts(Long chatId);
+	// Страница /stats: первая при request == null, иначе та, на которую указывает кнопка
+	StatsPage getStatsPage(Long chatId, StatsCallback request);
+	// Статистика за период из текста пользователя: "неделя", "месяц", "03.2024", "01.03.2024-15.03.2024"
+	String getStatsForPeriod(Long chatId, String period);
+	// Траты по последним месяцам с изменением к предыдущему
+	String getMonthlySpending(Long chatId);
 	String getStatsForOneProduct(Long chatId, String productname);
 	String uploadReceipt(Long chatId, String checkqrcode);
+	// Запускает фоновый импорт документа со списком чеков и возвращает ответ на сам запрос
+	String importReceipts(Long chatId, String document);
 }
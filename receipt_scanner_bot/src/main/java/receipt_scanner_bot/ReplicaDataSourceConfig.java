@@ -0,0 +1,76 @@
+package receipt_scanner_bot;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Чтение отчётов с реплик MySQL: при datasource.routing=replicas основной пул строится из
+ * spring.datasource.*, а пулы реплик - из datasource.replica.urls с теми же учётными данными,
+ * если свои не заданы. JPA, JdbcTemplate и Flyway получают общий маршрутизирующий DataSource.
+ */
+@Configuration
+@ConditionalOnProperty(name = "datasource.routing", havingValue = "replicas")
+public class ReplicaDataSourceConfig {
+
+	@Bean
+	@ConfigurationProperties("spring.datasource.hikari")
+	public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+		HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+		dataSource.setPoolName("primary");
+		return dataSource;
+	}
+
+	@Bean
+	public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+			DataSourceProperties properties,
+			@Value("${datasource.replica.urls}") List<String> urls,
+			@Value("${datasource.replica.username:${spring.datasource.username:}}") String username,
+			@Value("${datasource.replica.password:${spring.datasource.password:}}") String password,
+			@Value("${datasource.replica.pool-size:10}") int poolSize,
+			@Value("${datasource.replica.connection-timeout:2s}") Duration connectionTimeout,
+			@Value("${datasource.replica.validation-timeout:2s}") Duration validationTimeout,
+			MeterRegistry meterRegistry) {
+		List<DataSource> replicas = new ArrayList<>(urls.size());
+		for (int i = 0; i < urls.size(); i++) {
+			HikariDataSource replica = properties.initializeDataSourceBuilder().type(HikariDataSource.class)
+					.url(urls.get(i).trim())
+					.username(username)
+					.password(password)
+					.build();
+			replica.setPoolName("replica-" + i);
+			replica.setMaximumPoolSize(poolSize);
+			replica.setReadOnly(true);
+			// Недоступная реплика не должна держать запрос дольше этого: дальше чтение идёт на основную базу
+			replica.setConnectionTimeout(connectionTimeout.toMillis());
+			// hikaricp_* по пулам реплик, как у основного пула: видно, что отчёты ушли с основной базы
+			replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+			replicas.add(replica);
+		}
+		return new ReplicaRoutingDataSource(primaryDataSource, replicas,
+				(int) Math.max(1, validationTimeout.toSeconds()), meterRegistry);
+	}
+
+	// Соединение берётся только при первом запросе, когда признак readOnly транзакции уже известен
+	@Bean
+	@Primary
+	public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+		return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+	}
+}
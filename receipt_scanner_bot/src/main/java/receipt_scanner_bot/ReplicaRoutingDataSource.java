@@ -0,0 +1,176 @@
+package receipt_scanner_bot;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Выбор пула по транзакции: readOnly-транзакции уходят на реплики по кругу, всё остальное
+ * (запись, Flyway, запросы без транзакции) - на основную базу.
+ * Решение принимается при получении соединения, поэтому снаружи нужен LazyConnectionDataSourceProxy:
+ * JpaTransactionManager берёт соединение раньше, чем выставляет признак readOnly.
+ * Реплика, не прошедшая проверку или не отдавшая соединение, исключается до следующей удачной
+ * проверки; без живых реплик чтение идёт на основную базу.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+	private static Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+	static final String PRIMARY = "primary";
+
+	// Чтение сразу после записи: реплика может ещё не получить только что записанные строки
+	private static final ThreadLocal<Boolean> FORCE_PRIMARY = new ThreadLocal<>();
+
+	private static final class Replica {
+		final String name;
+		final DataSource dataSource;
+		// До первой проверки реплика считается недоступной
+		volatile boolean healthy;
+
+		Replica(String name, DataSource dataSource) {
+			this.name = name;
+			this.dataSource = dataSource;
+		}
+	}
+
+	private final DataSource primary;
+	private final List<Replica> replicas;
+	private final int validationTimeoutSeconds;
+	private final AtomicInteger next = new AtomicInteger();
+	private final Counter replicaReads;
+	private final Counter primaryReads;
+
+	public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas,
+			int validationTimeoutSeconds, MeterRegistry meterRegistry) {
+		this.primary = primary;
+		this.replicas = new ArrayList<>(replicas.size());
+		Map<Object, Object> targets = new HashMap<>();
+		targets.put(PRIMARY, primary);
+		for (int i = 0; i < replicas.size(); i++) {
+			Replica replica = new Replica("replica-" + i, replicas.get(i));
+			this.replicas.add(replica);
+			targets.put(replica.name, replica.dataSource);
+		}
+		this.validationTimeoutSeconds = validationTimeoutSeconds;
+		setTargetDataSources(targets);
+		setDefaultTargetDataSource(primary);
+		setLenientFallback(false);
+		afterPropertiesSet();
+
+		this.replicaReads = meterRegistry.counter("db.reads", "target", "replica");
+		this.primaryReads = meterRegistry.counter("db.reads", "target", "primary");
+		meterRegistry.gauge("db.replicas.healthy", this, ReplicaRoutingDataSource::healthyReplicas);
+	}
+
+	// Транзакции внутри work читают основную базу, даже если они readOnly
+	public static <T> T onPrimary(Supplier<T> work) {
+		Boolean previous = FORCE_PRIMARY.get();
+		FORCE_PRIMARY.set(Boolean.TRUE);
+		try {
+			return work.get();
+		} finally {
+			if (previous == null) {
+				FORCE_PRIMARY.remove();
+			}
+		}
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			return PRIMARY;
+		}
+		if (FORCE_PRIMARY.get() == null) {
+			int start = Math.floorMod(next.getAndIncrement(), Math.max(1, replicas.size()));
+			for (int i = 0; i < replicas.size(); i++) {
+				Replica replica = replicas.get((start + i) % replicas.size());
+				if (replica.healthy) {
+					replicaReads.increment();
+					return replica.name;
+				}
+			}
+		}
+		primaryReads.increment();
+		return PRIMARY;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		Object key = determineCurrentLookupKey();
+		DataSource target = getResolvedDataSources().get(key);
+		if (PRIMARY.equals(key)) {
+			return target.getConnection();
+		}
+		try {
+			return target.getConnection();
+		} catch (SQLException e) {
+			// Запрос не ждёт следующей проверки: реплика выключается сразу, чтение уходит на основную базу
+			markDown(key, e);
+			primaryReads.increment();
+			return primary.getConnection();
+		}
+	}
+
+	// Проверка Connection.isValid по каждой реплике; переходы между состояниями пишутся в лог
+	@Scheduled(fixedDelayString = "${datasource.replica.health-check-interval:PT10S}")
+	public void checkHealth() {
+		for (Replica replica : replicas) {
+			boolean valid;
+			try (Connection connection = replica.dataSource.getConnection()) {
+				valid = connection.isValid(validationTimeoutSeconds);
+			} catch (SQLException e) {
+				valid = false;
+			}
+			if (valid != replica.healthy) {
+				log.info("Read replica {} is {}", replica.name, valid ? "up" : "down");
+			}
+			replica.healthy = valid;
+		}
+	}
+
+	public int healthyReplicas() {
+		int count = 0;
+		for (Replica replica : replicas) {
+			if (replica.healthy) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private void markDown(Object key, SQLException e) {
+		for (Replica replica : replicas) {
+			if (replica.name.equals(key) && replica.healthy) {
+				replica.healthy = false;
+				log.warn("Read replica {} is down, reading from primary", key, e);
+			}
+		}
+	}
+
+	// Пулы реплик создаёт конфигурация, но бинами они не являются: закрываем их сами
+	@Override
+	public void destroy() throws Exception {
+		for (Replica replica : replicas) {
+			if (replica.dataSource instanceof AutoCloseable closeable) {
+				closeable.close();
+			}
+		}
+	}
+}
@@ -1,62 +1,179 @@
 package receipt_scanner_bot;
 
 import java.io.IOException;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.List;
 import java.util.Optional;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import receipt_scanner_bot.dto.ProductDetailStatsDTO;
-import receipt_scanner_bot.dto.ProductStatsDTO;
+import receipt_scanner_bot.dto.StatsPageDTO;
 
 @Service
 public class ServiceImpl implements ReceiptService {
+	
+	private static Logger log = LoggerFactory.getLogger(ServiceImpl.class);
+	
+	private static final int SIMILAR_PRODUCTS_LIMIT = 4;
+	private static final String DUPLICATE_RECEIPT = "⚠️ Этот чек уже был загружен ранее, повторно он не сохраняется.";
     
     private final Client client;
     private final Parser parser;
     private final DatabaseService databaseService;
     private final StatsFormatter statsFormatter;
+    private final ReceiptRegistry receiptRegistry;
+    private final StatsCache statsCache;
+    private final ProductNameIndex productNameIndex;
+    private final ReceiptImporter receiptImporter;
+    private final int statsPageSize;
+    private final int statsMonths;
     
-    public ServiceImpl(Client client, Parser parser, DatabaseService databaseService, StatsFormatter statsFormatter) {
+    public ServiceImpl(Client client,
+    		Parser parser,
+    		DatabaseService databaseService,
+    		StatsFormatter statsFormatter,
+    		ReceiptRegistry receiptRegistry,
+    		StatsCache statsCache,
+    		ProductNameIndex productNameIndex,
+    		ReceiptImporter receiptImporter,
+    		@Value("${stats.page-size:10}") int statsPageSize,
+    		@Value("${stats.months:6}") int statsMonths) {
         this.client = client;
         this.parser = parser;
         this.databaseService = databaseService;
         this.statsFormatter = statsFormatter;
+        this.receiptRegistry = receiptRegistry;
+        this.statsCache = statsCache;
+        this.productNameIndex = productNameIndex;
+        this.receiptImporter = receiptImporter;
+        this.statsPageSize = statsPageSize;
+        this.statsMonths = statsMonths;
     }
     
     @Override
-    public String getStatsForAllProducts(Long chatId) {
-    	List<ProductStatsDTO> stats = databaseService.getStatsForAllProducts(chatId);
-        return statsFormatter.formatAllProductsStats(stats);
+    public StatsPage getStatsPage(Long chatId, StatsCallback request) {
+    	String key = request == null ? "stats" : request.encode();
+    	return statsCache.get(chatId, key, () -> {
+    		StatsPageDTO page;
+    		if (request == null) {
+    			page = databaseService.getStatsPage(chatId, statsPageSize);
+    		} else if (request.forward()) {
+    			page = databaseService.getStatsPageAfter(chatId, request.cursor(), request.page(), statsPageSize);
+    		} else {
+    			page = databaseService.getStatsPageBefore(chatId, request.cursor(), request.page(), statsPageSize);
+    		}
+    		return new StatsPage(statsFormatter.formatStatsPage(page),
+    				page.previous() != null ? StatsCallback.previous(page).encode() : null,
+    				page.next() != null ? StatsCallback.next(page).encode() : null);
+    	});
+    }
+    
+    // Ключ кэша - уже разобранные даты: "неделя" сегодня и завтра - разные периоды
+    @Override
+    public String getStatsForPeriod(Long chatId, String period) {
+    	Optional<StatsPeriod> parsed = StatsPeriod.parse(period, LocalDate.now());
+    	if (parsed.isEmpty()) {
+    		return "❌ Не удалось разобрать период '" + period + "'.\n\n" +
+    				"💡 Напишите: неделя, месяц, прошлый месяц, 03.2024, 01.03.2024 или 01.03.2024-15.03.2024.";
+    	}
+    	LocalDate from = parsed.get().from();
+    	LocalDate to = parsed.get().to();
+    	return statsCache.get(chatId, "period:" + from + ":" + to, () -> statsFormatter.formatPeriodStats(
+    			databaseService.getStatsForPeriod(chatId, from, to, statsPageSize)));
+    }
+    
+    @Override
+    public String getMonthlySpending(Long chatId) {
+    	YearMonth to = YearMonth.now();
+    	YearMonth from = to.minusMonths(statsMonths - 1);
+    	return statsCache.get(chatId, "months:" + from + ":" + to, () -> statsFormatter.formatMonthlySpending(
+    			databaseService.getMonthlySpending(chatId, from, to)));
     }
     
     @Override
     public String getStatsForOneProduct(Long chatId, String productName) {
-    	Optional<ProductDetailStatsDTO> stats = databaseService.getStatsForProduct(chatId, productName);
-        return stats.map(statsFormatter::formatProductDetailStats)
-                   .orElse("❌ Продукт '" + productName + "' не найден в базе данных.\n\n" +
-                          "💡 Попробуйте поискать похожие названия или проверьте правильность написания.");
+    	return statsCache.get(chatId, "product:" + productName, () -> {
+    		Optional<ProductDetailStatsDTO> stats = databaseService.getStatsForProduct(chatId, productName);
+    		if (stats.isPresent()) {
+    			return statsFormatter.formatProductDetailStats(stats.get());
+    		}
+    		
+    		// Точного совпадения нет: берём самое похожее название, остальные предлагаем списком
+    		List<String> candidates = productNameIndex.search(chatId, productName, SIMILAR_PRODUCTS_LIMIT + 1);
+    		if (candidates.isEmpty()) {
+    			return "❌ Продукт '" + productName + "' не найден в базе данных.\n\n" +
+    					"💡 Попробуйте поискать похожие названия или проверьте правильность написания.";
+    		}
+    		return databaseService.getStatsForProduct(chatId, candidates.get(0))
+    				.map(found -> statsFormatter.formatProductDetailStats(found)
+    						+ statsFormatter.formatSimilarProducts(candidates.subList(1, candidates.size())))
+    				.orElse("❌ Продукт '" + productName + "' не найден в базе данных.");
+    	});
     }
     
     @Override
     public String uploadReceipt(Long chatId, String checkqrcode) {
     	
+    	ReceiptQr qr;
+    	try {
+    		qr = ReceiptQr.parse(checkqrcode);
+    	} catch (IllegalArgumentException e) {
+    		return "❌ " + e.getMessage();
+    	}
+    	
+    	if (receiptRegistry.isKnown(chatId, qr)) {
+    		return DUPLICATE_RECEIPT;
+    	}
+    	
     	try {
-    		System.out.println("Вошли в метод аплоуд");
-            String responsexml = client.getReceiptData(checkqrcode);
-            System.out.println("Строка ответа с сервера" + responsexml);
+            String responsexml = client.getReceiptData(qr.raw());
             List<Product> products = parser.parse(responsexml);
-            for(Product p : products) {
-            	System.out.println(p.toString());
-            }
-            System.out.println("Конвертация выполнена");
-            databaseService.saveProducts(chatId, products);
-            System.out.println("Продукты сохранены");
+            databaseService.saveReceipt(chatId, qr, products);
+            // Транзакция уже закоммичена, ответы со старой статистикой больше не нужны
+            statsCache.invalidateChat(chatId);
+            productNameIndex.addNames(chatId, products.stream().map(Product::getName).toList());
+            receiptRegistry.remember(chatId, qr);
+            log.debug("Saved receipt with {} items for chat {}", products.size(), chatId);
             return statsFormatter.formatProducts(products);
             
         } catch (IOException e) {
             return "❌ Ошибка при обработке чека: " + e.getMessage();
+        } catch (DataIntegrityViolationException e) {
+        	// Тот же чек успели сохранить параллельно
+        	receiptRegistry.remember(chatId, qr);
+        	return DUPLICATE_RECEIPT;
         }
     }
     
+    @Override
+    public String importReceipts(Long chatId, String document) {
+    	
+    	List<ImportDocument.Source> sources;
+    	try {
+    		sources = ImportDocument.parse(document);
+    	} catch (IllegalArgumentException e) {
+    		return "❌ " + e.getMessage();
+    	}
+    	
+    	if (sources.isEmpty()) {
+    		return "❌ В документе не найдено ни одного чека.";
+    	}
+    	if (sources.size() > receiptImporter.getMaxItems()) {
+    		return "❌ Слишком много чеков: " + sources.size() + ". За один раз можно загрузить не больше "
+    				+ receiptImporter.getMaxItems() + ".";
+    	}
+    	
+    	// Ход и итог импорт показывает сам, в отдельном сообщении
+    	if (receiptImporter.start(chatId, sources).isEmpty()) {
+    		return "⚠️ Предыдущий импорт ещё не закончился, дождитесь его завершения.";
+    	}
+    	return "📥 Принято чеков: " + sources.size() + ". Начинаю импорт.";
+    }
+    
 }
@@ -0,0 +1,18 @@
+package receipt_scanner_bot;
+
+import java.util.Optional;
+
+/**
+ * Хранилище состояния диалога по чату.
+ * Состояние живёт ограниченное время (session.ttl): брошенный /receipt_upload не висит вечно.
+ * Реализация выбирается свойством session.store: memory (по умолчанию) или jdbc,
+ * чтобы несколько экземпляров бота видели общее состояние.
+ */
+public interface SessionStore {
+
+	Optional<UserState> get(Long chatId);
+
+	void put(Long chatId, UserState state);
+
+	void remove(Long chatId);
+}
@@ -0,0 +1,91 @@
+package receipt_scanner_bot;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * Кэш готовых ответов на запросы статистики, ключ - чат и запрос.
+ * Данные чата меняются только при загрузке чека, поэтому после неё кэш чата сбрасывается целиком,
+ * TTL лишь ограничивает время жизни записей, которые никто не сбросил.
+ * Пока не прошло datasource.replica.read-your-writes после записи, ответы чата считаются
+ * по основной базе: реплика может ещё не получить новый чек, а устаревший ответ остался бы в кэше.
+ * Запись помнит поколение чата, при котором начался её расчёт. Сброс увеличивает поколение,
+ * поэтому ответ, посчитанный до коммита и положенный в кэш уже после сброса
+ * (импорт сбрасывает кэш из своего потока, пока /stats считается в потоке чата), не отдаётся повторно.
+ */
+@Component
+public class StatsCache {
+	
+	private record Key(Long chatId, String query) {}
+	
+	private record Entry(long generation, Object value) {}
+	
+	private final Cache<Key, Entry> cache;
+	private final Cache<Long, Boolean> recentWrites;
+	// Одно число на чат, который хоть раз записывал чеки
+	private final Map<Long, Long> generations = new ConcurrentHashMap<>();
+	
+	public StatsCache(@Value("${stats.cache.max-size:10000}") long maxSize,
+			@Value("${stats.cache.ttl:30m}") Duration ttl,
+			@Value("${datasource.replica.read-your-writes:10s}") Duration readYourWrites) {
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterWrite(ttl)
+				.recordStats()
+				.build();
+		this.recentWrites = Caffeine.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterWrite(readYourWrites)
+				.build();
+	}
+	
+	@SuppressWarnings("unchecked")
+	public <T> T get(Long chatId, String query, Supplier<T> loader) {
+		Key key = new Key(chatId, query);
+		Entry entry = cache.get(key, k -> load(chatId, loader));
+		if (entry.generation() != generation(chatId)) {
+			// Посчитано до сброса, который случился во время расчёта. Повторный ответ тоже
+			// помнит своё поколение, так что новый сброс во время него заметит следующий запрос
+			cache.asMap().remove(key, entry);
+			entry = cache.get(key, k -> load(chatId, loader));
+		}
+		return (T) entry.value();
+	}
+	
+	private Entry load(Long chatId, Supplier<?> loader) {
+		long generation = generation(chatId);
+		if (recentWrites.getIfPresent(chatId) != null) {
+			return new Entry(generation, ReplicaRoutingDataSource.onPrimary(loader));
+		}
+		return new Entry(generation, loader.get());
+	}
+	
+	private long generation(Long chatId) {
+		return generations.getOrDefault(chatId, 0L);
+	}
+	
+	// Вызывается после коммита записи чата
+	public void invalidateChat(Long chatId) {
+		generations.merge(chatId, 1L, Long::sum);
+		recentWrites.put(chatId, Boolean.TRUE);
+		cache.asMap().keySet().removeIf(key -> key.chatId().equals(chatId));
+	}
+	
+	// Попадания, промахи и вытеснения
+	public CacheStats stats() {
+		return cache.stats();
+	}
+	
+	public long size() {
+		return cache.estimatedSize();
+	}
+}
@@ -0,0 +1,46 @@
+package receipt_scanner_bot;
+
+import java.util.Optional;
+
+import receipt_scanner_bot.dto.StatsPageDTO;
+
+/**
+ * Данные кнопки перехода по страницам /stats: направление, номер целевой страницы и ключ
+ * граничной строки. Формат "stats:n:2:1234.50:17" укладывается в лимит Telegram в 64 байта
+ * для callback_data, поэтому в ключе id продукта, а не название.
+ */
+record StatsCallback(boolean forward, int page, StatsPageDTO.Cursor cursor) {
+	
+	static final String PREFIX = "stats:";
+	
+	static StatsCallback next(StatsPageDTO page) {
+		return new StatsCallback(true, page.page() + 1, page.next());
+	}
+	
+	static StatsCallback previous(StatsPageDTO page) {
+		return new StatsCallback(false, page.page() - 1, page.previous());
+	}
+	
+	String encode() {
+		return PREFIX + (forward ? "n" : "p") + ":" + page + ":"
+				+ cursor.totalAmount().toPlainString() + ":" + cursor.productId();
+	}
+	
+	// Чужие и испорченные данные кнопок не разбираются
+	static Optional<StatsCallback> parse(String data) {
+		if (data == null || !data.startsWith(PREFIX)) {
+			return Optional.empty();
+		}
+		String[] parts = data.substring(PREFIX.length()).split(":");
+		if (parts.length != 4 || !(parts[0].equals("n") || parts[0].equals("p"))) {
+			return Optional.empty();
+		}
+		try {
+			int page = Integer.parseInt(parts[1]);
+			var cursor = new StatsPageDTO.Cursor(Money.parse(parts[2]), Integer.parseInt(parts[3]));
+			return page < 1 ? Optional.empty() : Optional.of(new StatsCallback(parts[0].equals("n"), page, cursor));
+		} catch (NumberFormatException e) {
+			return Optional.empty();
+		}
+	}
+}
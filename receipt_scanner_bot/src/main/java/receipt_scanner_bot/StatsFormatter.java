@@ -4,85 +4,226 @@ import java.util.List;
 
 import org.springframework.stereotype.Component;
 
+import receipt_scanner_bot.dto.MonthlySpendingDTO;
+import receipt_scanner_bot.dto.PeriodStatsDTO;
 import receipt_scanner_bot.dto.PriceHistoryDTO;
 import receipt_scanner_bot.dto.ProductDetailStatsDTO;
 import receipt_scanner_bot.dto.ProductStatsDTO;
+import receipt_scanner_bot.dto.StatsPageDTO;
+import receipt_scanner_bot.dto.TrendDTO;
 
 @Component
 public class StatsFormatter {
 	
+	// %n в прежних шаблонах /import
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+	
+	// Тексты собираются через MessageWriter: без String.format, в заранее оценённый буфер потока
 	public String formatAllProductsStats(List<ProductStatsDTO> stats) {
         if (stats.isEmpty()) {
             return "📊 База данных пуста. Добавьте сначала несколько чеков.";
         }
         
-        StringBuilder result = new StringBuilder();
-        result.append("📊 ОБЩАЯ СТАТИСТИКА ПО ВСЕМ ПРОДУКТАМ:\n\n");
+        MessageWriter result = MessageWriter.reuse(estimateProducts(stats));
+        result.text("📊 ОБЩАЯ СТАТИСТИКА ПО ВСЕМ ПРОДУКТАМ:\n\n");
         
         int rank = 1;
         for (ProductStatsDTO stat : stats) {
-        	String quantityText;
-            if (stat.isWeightProduct()) {
-                // Для весовых: "1.250 кг" 
-                quantityText = String.format("%.3f кг", stat.totalQuantity().doubleValue());
-            } else {
-                // Для штучных: "5 шт."
-                quantityText = String.format("%.0f шт.", stat.totalQuantity().doubleValue());
-            }
-            result.append(String.format("%d.  →  %.2f ₽    (%s)\n", 
-                rank, stat.totalAmount().doubleValue(), quantityText));
-            result.append(String.format("   %s\n\n", stat.productName()));
+            appendProduct(result, rank, stat);
             rank++;
         }
         
-        return result.toString();
+        return result.release();
+    }
+	
+	// Одна страница /stats; нумерация продолжается с предыдущих страниц
+	public String formatStatsPage(StatsPageDTO page) {
+        if (page.items().isEmpty()) {
+            return page.page() == 1
+            		? "📊 База данных пуста. Добавьте сначала несколько чеков."
+            		: "📊 На этой странице больше нет продуктов.";
+        }
+        
+        MessageWriter result = MessageWriter.reuse(estimateProducts(page.items()));
+        result.text("📊 ОБЩАЯ СТАТИСТИКА ПО ВСЕМ ПРОДУКТАМ (стр. ").number(page.page()).text("):\n\n");
+        
+        int rank = (page.page() - 1) * page.pageSize() + 1;
+        for (ProductStatsDTO stat : page.items()) {
+            appendProduct(result, rank, stat);
+            rank++;
+        }
+        
+        return result.release();
+    }
+	
+    // "%d.  →  %.2f ₽    (%s)\n   %s\n\n"
+    private void appendProduct(MessageWriter result, int rank, ProductStatsDTO stat) {
+        result.number(rank).text(".  →  ").money(stat.totalAmount()).text(" ₽    (");
+        if (stat.isWeightProduct()) {
+            // Для весовых: "1.250 кг" 
+            result.quantity(stat.totalQuantity(), 3).text(" кг");
+        } else {
+            // Для штучных: "5 шт."
+            result.quantity(stat.totalQuantity(), 0).text(" шт.");
+        }
+        result.text(")\n   ").text(stat.productName()).text("\n\n");
+    }
+    
+    private int estimateProducts(List<ProductStatsDTO> stats) {
+        int length = 64;
+        for (ProductStatsDTO stat : stats) {
+            length += 48 + (stat.productName() != null ? stat.productName().length() : 4);
+        }
+        return length;
+    }
+    
+    // /period: первые продукты по сумме и итог за весь период
+    public String formatPeriodStats(PeriodStatsDTO stats) {
+        if (stats.items().isEmpty()) {
+            return MessageWriter.reuse(96).text("📊 С ")
+            		.date(stats.from(), '.').text(" по ").date(stats.to(), '.').text(" покупок нет.")
+            		.release();
+        }
+        
+        MessageWriter result = MessageWriter.reuse(estimateProducts(stats.items()) + 128);
+        result.text("📊 СТАТИСТИКА С ").date(stats.from(), '.').text(" ПО ").date(stats.to(), '.').text(":\n\n");
+        
+        int rank = 1;
+        for (ProductStatsDTO stat : stats.items()) {
+            appendProduct(result, rank, stat);
+            rank++;
+        }
+        
+        int rest = stats.productCount() - stats.items().size();
+        if (rest > 0) {
+            result.text("…и ещё продуктов: ").number(rest).text("\n\n");
+        }
+        result.text("💰 Итого: ").money(stats.totalAmount()).text(" ₽\n");
+        result.text("   • Продуктов: ").number(stats.productCount()).text('\n');
+        result.text("   • Покупок: ").number(stats.purchaseCount());
+        return result.release();
+    }
+    
+    // /months: траты по месяцам и изменение к предыдущему месяцу
+    public String formatMonthlySpending(List<MonthlySpendingDTO> months) {
+        if (months.stream().allMatch(month -> month.purchaseCount() == 0)) {
+            return "📅 За последние месяцы покупок нет.";
+        }
+        
+        MessageWriter result = MessageWriter.reuse(64 + months.size() * 64);
+        result.text("📅 ТРАТЫ ПО МЕСЯЦАМ:\n\n");
+        for (MonthlySpendingDTO month : months) {
+            result.text("   • ").month(month.month()).text(": ").money(month.totalAmount()).text(" ₽ ");
+            appendChange(result, month.change(), month.changeBasisPoints());
+            result.text('\n');
+        }
+        return result.release();
     }
     
     public String formatProductDetailStats(ProductDetailStatsDTO stats) {
-        StringBuilder result = new StringBuilder();
-        result.append(String.format("📊 СТАТИСТИКА: %s\n\n", stats.productName().toUpperCase()));
+        MessageWriter result = MessageWriter.reuse(448 + stats.productName().length());
+        result.text("📊 СТАТИСТИКА: ").text(stats.productName().toUpperCase()).text("\n\n");
         
         // Диапазон цен
-        result.append("💰 Диапазон цен: ");
-        result.append(String.format("%.2f - %.2f руб.\n", 
-            stats.minPrice().doubleValue(), stats.maxPrice().doubleValue()));
-        result.append(String.format("   • Средняя: %.2f руб.\n", stats.averagePrice().doubleValue()));
-        result.append(String.format("   • Разброс: %.2f руб.\n\n", stats.priceSpread().doubleValue()));
+        result.text("💰 Диапазон цен: ")
+            .money(stats.minPrice()).text(" - ").money(stats.maxPrice()).text(" руб.\n");
+        result.text("   • Средняя: ").money(stats.averagePrice()).text(" руб.\n");
+        result.text("   • Разброс: ").money(stats.priceSpread()).text(" руб.\n\n");
         
         // Общая информация
-        result.append(" Общий тренд:\n");
-        result.append(stats.trend() + "\n");
-        result.append(String.format("   • Количество записей: %d\n", stats.recordCount()));
-        result.append(String.format("   • Период наблюдений: %s - %s\n\n", 
-            stats.firstDate(), stats.lastDate()));
+        result.text(" Общий тренд:\n");
+        appendTrend(result, stats.trend());
+        result.text('\n');
+        result.text("   • Количество записей: ").number(stats.recordCount()).text('\n');
+        result.text("   • Период наблюдений: ")
+            .isoDate(stats.firstDate()).text(" - ").isoDate(stats.lastDate()).text("\n\n");
         
         // Последние цены
-        result.append("🔄 Последние изменения цен:\n");
+        result.text("🔄 Последние изменения цен:\n");
         int displayCount = Math.min(stats.priceHistory().size(), 5);
         List<PriceHistoryDTO> recentPrices = stats.priceHistory().subList(
             stats.priceHistory().size() - displayCount, stats.priceHistory().size());
         
         for (PriceHistoryDTO price : recentPrices) {
-            result.append(String.format("   • %s: %.2f руб. %s\n", 
-                price.date(), price.price(), price.change()));
+            result.text("   • ").isoDate(price.date()).text(": ")
+                .money(price.price()).text(" руб. ");
+            appendChange(result, price.change(), price.changeBasisPoints());
+            result.text('\n');
+        }
+        
+        return result.release();
+    }
+    
+    // "📈 Рост +%.2f руб. (+%.1f%%) за %d дней" и "📉 Снижение %.2f руб. (%.1f%%) за %d дней"
+    private void appendTrend(MessageWriter result, TrendDTO trend) {
+        switch (trend.direction()) {
+            case "UP" -> result.text("📈 Рост +").money(trend.changeAmount()).text(" руб. (+")
+            		.percent(trend.changeBasisPoints()).text("%) за ").number(trend.daysBetween()).text(" дней");
+            case "DOWN" -> result.text("📉 Снижение ").money(trend.changeAmount()).text(" руб. (")
+            		.percent(trend.changeBasisPoints()).text("%) за ").number(trend.daysBetween()).text(" дней");
+            default -> result.text("➡️ Цена стабильна");
+        }
+    }
+    
+    // "( ↑ +%.1f%%)", "( ↓ %.1f%%)" и "(→ 0%)"; без предыдущего значения - ничего
+    private void appendChange(MessageWriter result, Money change, long basisPoints) {
+        if (change == null) {
+            return;
+        }
+        if (change.signum() > 0) {
+            result.text("( ↑ +").percent(basisPoints).text("%)");
+        } else if (change.signum() < 0) {
+            result.text("( ↓ ").percent(basisPoints).text("%)");
+        } else {
+            result.text("(→ 0%)");
+        }
+    }
+	
+    // Ход /import: "⏳ Импорт чеков: %d из %d%n💾 сохранено: %d, ⚠️ уже были загружены: %d, ❌ с ошибками: %d"
+    public String formatImportProgress(int processed, int total, int saved, int duplicates, int failed) {
+        return appendImportCounts(MessageWriter.reuse(160).text("⏳ Импорт чеков: "),
+        		processed, total, saved, duplicates, failed).release();
+    }
+    
+    public String formatImportFinished(ReceiptImporter.ImportResult result) {
+        return appendImportCounts(MessageWriter.reuse(160).text("✅ Импорт завершён: "),
+        		result.total(), result.total(), result.saved(), result.duplicates(), result.failed()).release();
+    }
+    
+    private MessageWriter appendImportCounts(MessageWriter result, int processed, int total,
+    		int saved, int duplicates, int failed) {
+        return result.number(processed).text(" из ").number(total).text(LINE_SEPARATOR)
+        		.text("💾 сохранено: ").number(saved)
+        		.text(", ⚠️ уже были загружены: ").number(duplicates)
+        		.text(", ❌ с ошибками: ").number(failed);
+    }
+	
+    public String formatSimilarProducts(List<String> names) {
+        if (names.isEmpty()) {
+            return "";
         }
         
+        StringBuilder result = new StringBuilder();
+        result.append("\n🔎 Похожие продукты:\n");
+        for (String name : names) {
+            result.append("   • ").append(name).append("\n");
+        }
         return result.toString();
     }
 	
     public String formatProducts(List<Product> products) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("✅ Чек успешно обработан и сохранен!\n\n");
-        sb.append("📦 Купленные продукты:\n");
+        MessageWriter sb = MessageWriter.reuse(128 + products.size() * Product.ESTIMATED_LENGTH);
+        sb.text("✅ Чек успешно обработан и сохранен!\n\n");
+        sb.text("📦 Купленные продукты:\n");
         
         for (Product p : products) {
-            sb.append("• ");
-            sb.append(p.toString());
-            sb.append("\n");
+            sb.text("• ");
+            p.appendTo(sb);
+            sb.text('\n');
         }
         
-        sb.append("\n💾 Данные сохранены в базу для статистики.");
-        return sb.toString();
+        sb.text("\n💾 Данные сохранены в базу для статистики.");
+        return sb.release();
     }
     
 }
@@ -0,0 +1,4 @@
+package receipt_scanner_bot;
+
+// Готовая к отправке страница /stats: текст и данные кнопок (null - кнопки нет)
+record StatsPage(String text, String previousCallback, String nextCallback) {}
@@ -0,0 +1,73 @@
+package receipt_scanner_bot;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Период для /period, обе границы включительно. Понимает "неделя" (с понедельника по сегодня),
+ * "месяц" (с первого числа по сегодня), "прошлый месяц", месяц "03.2024",
+ * день "01.03.2024" и диапазон "01.03.2024-15.03.2024".
+ */
+record StatsPeriod(LocalDate from, LocalDate to) {
+
+	private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("dd.MM.uuuu")
+			.withResolverStyle(ResolverStyle.STRICT);
+	private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("MM.uuuu")
+			.withResolverStyle(ResolverStyle.STRICT);
+
+	// Непонятный текст и диапазон с началом позже конца не разбираются
+	static Optional<StatsPeriod> parse(String text, LocalDate today) {
+		if (text == null) {
+			return Optional.empty();
+		}
+		String value = text.trim().toLowerCase(Locale.ROOT);
+		switch (value) {
+			case "неделя", "week" -> {
+				return Optional.of(new StatsPeriod(today.with(DayOfWeek.MONDAY), today));
+			}
+			case "месяц", "month" -> {
+				return Optional.of(new StatsPeriod(today.withDayOfMonth(1), today));
+			}
+			case "прошлый месяц", "last month" -> {
+				YearMonth previous = YearMonth.from(today).minusMonths(1);
+				return Optional.of(new StatsPeriod(previous.atDay(1), previous.atEndOfMonth()));
+			}
+			default -> {
+				return parseDates(value);
+			}
+		}
+	}
+
+	private static Optional<StatsPeriod> parseDates(String value) {
+		try {
+			int dash = value.indexOf('-');
+			if (dash >= 0) {
+				LocalDate from = day(value.substring(0, dash).trim());
+				LocalDate to = day(value.substring(dash + 1).trim());
+				return from.isAfter(to) ? Optional.empty() : Optional.of(new StatsPeriod(from, to));
+			}
+			if (value.length() == 7) {
+				YearMonth month = YearMonth.parse(value, MONTH);
+				return Optional.of(new StatsPeriod(month.atDay(1), month.atEndOfMonth()));
+			}
+			LocalDate day = day(value);
+			return Optional.of(new StatsPeriod(day, day));
+		} catch (DateTimeParseException e) {
+			return Optional.empty();
+		}
+	}
+
+	// Ровно dd.MM.yyyy: uuuu без проверки длины принял бы и пятизначный год
+	private static LocalDate day(String value) {
+		if (value.length() != 10) {
+			throw new DateTimeParseException("Expected dd.MM.yyyy", value, 0);
+		}
+		return LocalDate.parse(value, DAY);
+	}
+}
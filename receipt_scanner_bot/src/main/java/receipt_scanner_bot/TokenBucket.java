@@ -0,0 +1,41 @@
+package receipt_scanner_bot;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Ограничитель частоты: до capacity операций подряд, затем ratePerSecond в секунду.
+ * tryAcquire не блокирует, а возвращает, сколько ждать до следующего токена.
+ */
+class TokenBucket {
+
+	private final double capacity;
+	private final double tokensPerNano;
+	private final LongSupplier clock;
+
+	private double tokens;
+	private long refilledAt;
+
+	TokenBucket(int capacity, double ratePerSecond) {
+		this(capacity, ratePerSecond, System::nanoTime);
+	}
+
+	TokenBucket(int capacity, double ratePerSecond, LongSupplier clock) {
+		this.capacity = capacity;
+		this.tokensPerNano = ratePerSecond / 1_000_000_000d;
+		this.clock = clock;
+		this.tokens = capacity;
+		this.refilledAt = clock.getAsLong();
+	}
+
+	// 0, если токен взят, иначе наносекунды до появления токена
+	synchronized long tryAcquire() {
+		long now = clock.getAsLong();
+		tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+		refilledAt = now;
+		if (tokens >= 1) {
+			tokens -= 1;
+			return 0;
+		}
+		return Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNano));
+	}
+}
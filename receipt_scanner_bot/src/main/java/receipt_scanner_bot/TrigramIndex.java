@@ -0,0 +1,150 @@
+package receipt_scanner_bot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Триграммный индекс названий продуктов одного чата для нечёткого поиска.
+ * Названия нормализуются (регистр, ё, знаки препинания), каждое слово дополняется пробелами,
+ * как в pg_trgm: "  м", " мо", "мол", ..., "ко ".
+ * Кандидаты ранжируются по доле триграмм запроса, найденных в названии,
+ * при равенстве выше название с меньшим числом триграмм (более короткое).
+ * Потокобезопасен: чтение и добавление синхронизированы.
+ */
+class TrigramIndex {
+
+	record Match(String name, double score) {}
+
+	// Доля триграмм запроса, ниже которой название не считается похожим
+	private static final double MIN_SCORE = 0.5;
+
+	private final List<String> names = new ArrayList<>();
+	private final List<Integer> trigramCounts = new ArrayList<>();
+	private final Set<String> known = new HashSet<>();
+	private final Map<Long, IntList> postings = new HashMap<>();
+
+	TrigramIndex(Collection<String> names) {
+		addAll(names);
+	}
+
+	synchronized void addAll(Collection<String> newNames) {
+		for (String name : newNames) {
+			if (!known.add(name)) {
+				continue;
+			}
+			int id = names.size();
+			long[] trigrams = trigrams(name);
+			names.add(name);
+			trigramCounts.add(trigrams.length);
+			for (long trigram : trigrams) {
+				postings.computeIfAbsent(trigram, t -> new IntList()).add(id);
+			}
+		}
+	}
+
+	synchronized List<Match> search(String query, int limit) {
+		long[] queryTrigrams = trigrams(query);
+		if (queryTrigrams.length == 0 || names.isEmpty()) {
+			return List.of();
+		}
+
+		int[] shared = new int[names.size()];
+		for (long trigram : queryTrigrams) {
+			IntList ids = postings.get(trigram);
+			if (ids != null) {
+				for (int i = 0; i < ids.size; i++) {
+					shared[ids.values[i]]++;
+				}
+			}
+		}
+
+		List<Integer> candidates = new ArrayList<>();
+		for (int id = 0; id < shared.length; id++) {
+			if ((double) shared[id] / queryTrigrams.length >= MIN_SCORE) {
+				candidates.add(id);
+			}
+		}
+
+		candidates.sort((id1, id2) -> {
+			int byShared = Integer.compare(shared[id2], shared[id1]);
+			return byShared != 0 ? byShared : Integer.compare(trigramCounts.get(id1), trigramCounts.get(id2));
+		});
+
+		List<Match> matches = new ArrayList<>(Math.min(limit, candidates.size()));
+		for (int i = 0; i < candidates.size() && i < limit; i++) {
+			int id = candidates.get(i);
+			matches.add(new Match(names.get(id), (double) shared[id] / queryTrigrams.length));
+		}
+		return matches;
+	}
+
+	synchronized int size() {
+		return names.size();
+	}
+
+	static String normalize(String text) {
+		StringBuilder sb = new StringBuilder(text.length());
+		boolean space = true;
+		for (int i = 0; i < text.length(); i++) {
+			char c = Character.toLowerCase(text.charAt(i));
+			if (c == 'ё') {
+				c = 'е';
+			}
+			if (Character.isLetterOrDigit(c)) {
+				sb.append(c);
+				space = false;
+			} else if (!space) {
+				sb.append(' ');
+				space = true;
+			}
+		}
+		int length = sb.length();
+		if (length > 0 && sb.charAt(length - 1) == ' ') {
+			sb.setLength(length - 1);
+		}
+		return sb.toString();
+	}
+
+	// Уникальные триграммы строки, каждая упакована в long по 16 бит на символ
+	static long[] trigrams(String text) {
+		String normalized = normalize(text);
+		if (normalized.isEmpty()) {
+			return new long[0];
+		}
+
+		Set<Long> result = new HashSet<>();
+		for (String word : normalized.split(" ")) {
+			String padded = "  " + word + " ";
+			for (int i = 0; i + 3 <= padded.length(); i++) {
+				result.add(((long) padded.charAt(i) << 32)
+						| ((long) padded.charAt(i + 1) << 16)
+						| padded.charAt(i + 2));
+			}
+		}
+
+		long[] trigrams = new long[result.size()];
+		int i = 0;
+		for (Long trigram : result) {
+			trigrams[i++] = trigram;
+		}
+		return trigrams;
+	}
+
+	private static class IntList {
+		private int[] values = new int[4];
+		private int size;
+
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package receipt_scanner_bot;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Выполняет обработку апдейтов в пуле потоков.
+ * Апдейты разных чатов обрабатываются параллельно, апдейты одного чата - строго по порядку,
+ * чтобы переходы состояний в UserSessionService не перемешивались.
+ */
+@Component
+public class UpdateDispatcher {
+
+	private static Logger log = LoggerFactory.getLogger(UpdateDispatcher.class);
+
+	private final ExecutorService executor;
+	private final Map<Long, ChatLane> lanes = new ConcurrentHashMap<>();
+
+	private final AtomicInteger queued = new AtomicInteger();
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	public UpdateDispatcher(@Value("${bot.dispatcher.threads:0}") int threads) {
+		int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors() * 4;
+		AtomicInteger counter = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(poolSize, poolSize,
+				60L, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(),
+				runnable -> {
+					Thread thread = new Thread(runnable, "update-worker-" + counter.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+	}
+
+	public void dispatch(Long chatId, Runnable task) {
+		queued.incrementAndGet();
+
+		// Очередь чата создаётся и удаляется под блокировкой ключа в compute,
+		// поэтому задача не может попасть в уже завершившуюся очередь
+		ChatLane[] toSchedule = new ChatLane[1];
+		lanes.compute(chatId, (id, lane) -> {
+			if (lane == null) {
+				lane = new ChatLane(id);
+				toSchedule[0] = lane;
+			}
+			lane.tasks.add(task);
+			return lane;
+		});
+
+		if (toSchedule[0] != null) {
+			executor.execute(toSchedule[0]);
+		}
+	}
+
+	// Количество апдейтов, ожидающих обработки
+	public int getQueueDepth() {
+		return queued.get();
+	}
+
+	// Количество апдейтов, обрабатываемых прямо сейчас
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	// Количество чатов, у которых есть необработанные апдейты
+	public int getActiveChats() {
+		return lanes.size();
+	}
+
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		executor.shutdown();
+		if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+			executor.shutdownNow();
+		}
+	}
+
+	private class ChatLane implements Runnable {
+
+		private final Long chatId;
+		private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+		ChatLane(Long chatId) {
+			this.chatId = chatId;
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				Runnable task = tasks.poll();
+				if (task == null) {
+					// Удаляем очередь, только если в неё ничего не добавили за это время
+					ChatLane current = lanes.compute(chatId, (id, lane) -> lane.tasks.isEmpty() ? null : lane);
+					if (current == null) {
+						return;
+					}
+					continue;
+				}
+
+				queued.decrementAndGet();
+				inFlight.incrementAndGet();
+				try {
+					task.run();
+				} catch (Throwable e) {
+					// В том числе Error: иначе очередь чата осталась бы в lanes без потока,
+					// и следующие апдейты чата копились бы в ней без обработки
+					log.error("Failed processing update for chat {}", chatId, e);
+				} finally {
+					inFlight.decrementAndGet();
+				}
+			}
+		}
+	}
+}
@@ -2,24 +2,25 @@ package receipt_scanner_bot;
 
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
+// Состояние диалога чата; где оно хранится, решает SessionStore
 @Service
 public class UserSessionService {
     
-    private final Map<Long, UserState> userStates = new ConcurrentHashMap<>();
+    private final SessionStore sessionStore;
+    
+    public UserSessionService(SessionStore sessionStore) {
+        this.sessionStore = sessionStore;
+    }
     
     public void setUserState(Long chatId, UserState state) {
-        userStates.put(chatId, state);
+        sessionStore.put(chatId, state);
     }
     
     public UserState getUserState(Long chatId) {
-        return userStates.getOrDefault(chatId, UserState.DEFAULT);
+        return sessionStore.get(chatId).orElse(UserState.DEFAULT);
     }
     
     public void clearUserState(Long chatId) {
-        userStates.remove(chatId);
+        sessionStore.remove(chatId);
     }
 }
-
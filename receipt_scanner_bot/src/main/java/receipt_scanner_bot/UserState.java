@@ -3,5 +3,7 @@ package receipt_scanner_bot;
 public enum UserState {
     DEFAULT,
     WAITING_FOR_RECEIPT,
-    WAITING_FOR_PRODUCT
+    WAITING_FOR_PRODUCT,
+    WAITING_FOR_IMPORT,
+    WAITING_FOR_PERIOD
 }
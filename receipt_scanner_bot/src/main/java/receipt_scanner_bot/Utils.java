@@ -2,18 +2,12 @@ package receipt_scanner_bot;
 
 public class Utils {
 	
+	// Первые maxWords слов через один пробел; разбиение то же, что text.split("\\s+")
 	public static String limitWords(String text, int maxWords) {
-        String[] words = text.split("\\s+");
-        if (words.length <= maxWords) {
+        if (MessageWriter.countWords(text, maxWords) <= maxWords) {
             return text;
         }
-        
-        StringBuilder result = new StringBuilder();
-        for (int i = 0; i < maxWords; i++) {
-            if (i > 0) result.append(" ");
-            result.append(words[i]);
-        }
-        return result.toString();
+        return new MessageWriter(text.length()).words(text, maxWords).toString();
     }
 
 }
@@ -0,0 +1,49 @@
+package receipt_scanner_bot;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+/**
+ * Приём апдейтов от Telegram в режиме webhook (bot.mode=webhook).
+ * Проверяет секрет из заголовка, передаёт апдейт в Bot, который ставит его в UpdateDispatcher,
+ * и сразу отвечает 200: Telegram не ждёт обработки и не повторяет доставку.
+ */
+@RestController
+@ConditionalOnProperty(name = "bot.mode", havingValue = "webhook")
+public class WebhookController {
+	
+	static final String SECRET_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+	
+	private final Bot bot;
+	private final byte[] secret;
+	
+	public WebhookController(Bot bot, @Value("${bot.webhook.secret}") String secret) {
+		if (secret.isBlank()) {
+			throw new IllegalStateException("bot.webhook.secret is required in webhook mode");
+		}
+		this.bot = bot;
+		this.secret = secret.getBytes(StandardCharsets.UTF_8);
+	}
+	
+	@PostMapping("${bot.webhook.path:/telegram/webhook}")
+	public ResponseEntity<Void> onUpdate(
+			@RequestHeader(name = SECRET_HEADER, required = false) String token,
+			@RequestBody Update update) {
+		// Сравнение за постоянное время, чтобы секрет нельзя было подобрать по времени ответа
+		if (token == null || !MessageDigest.isEqual(secret, token.getBytes(StandardCharsets.UTF_8))) {
+			return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+		}
+		bot.onUpdateReceived(update);
+		return ResponseEntity.ok().build();
+	}
+}
@@ -0,0 +1,44 @@
+package receipt_scanner_bot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
+
+// Регистрирует адрес webhook и секрет в Telegram при старте, если задан bot.webhook.url.
+// Несколько экземпляров за балансировщиком регистрируют один и тот же адрес, это безопасно
+@Component
+@ConditionalOnProperty(name = "bot.mode", havingValue = "webhook")
+public class WebhookRegistration implements ApplicationRunner {
+	
+	private static Logger log = LoggerFactory.getLogger(WebhookRegistration.class);
+	
+	private final Bot bot;
+	private final String url;
+	private final String secret;
+	
+	public WebhookRegistration(Bot bot,
+			@Value("${bot.webhook.url:}") String url,
+			@Value("${bot.webhook.secret}") String secret) {
+		this.bot = bot;
+		this.url = url;
+		this.secret = secret;
+	}
+	
+	@Override
+	public void run(ApplicationArguments args) throws Exception {
+		if (url.isBlank()) {
+			log.info("bot.webhook.url is empty, skipping setWebhook");
+			return;
+		}
+		bot.execute(SetWebhook.builder()
+				.url(url)
+				.secretToken(secret)
+				.build());
+		log.info("Webhook registered at {}", url);
+	}
+}
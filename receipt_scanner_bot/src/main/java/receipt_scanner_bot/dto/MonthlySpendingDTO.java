@@ -0,0 +1,14 @@
+package receipt_scanner_bot.dto;
+
+import java.time.YearMonth;
+
+import receipt_scanner_bot.Money;
+
+// Траты за месяц и изменение к предыдущему месяцу: null для первого месяца и после пустого
+public record MonthlySpendingDTO(
+	    YearMonth month,
+	    Money totalAmount,
+	    long purchaseCount,
+	    Money change,
+	    long changeBasisPoints
+	) {}
@@ -0,0 +1,16 @@
+package receipt_scanner_bot.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import receipt_scanner_bot.Money;
+
+// Статистика за период [from, to]: самые дорогие продукты и итоги по всем продуктам периода
+public record PeriodStatsDTO(
+	    LocalDate from,
+	    LocalDate to,
+	    List<ProductStatsDTO> items,
+	    Money totalAmount,
+	    int productCount,
+	    long purchaseCount
+	) {}
@@ -1,10 +1,13 @@
 package receipt_scanner_bot.dto;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 
+import receipt_scanner_bot.Money;
+
+// change - разница с предыдущей ценой, null, если сравнивать не с чем; процент в базисных пунктах
 public record PriceHistoryDTO(
 	    LocalDate date,
-	    BigDecimal price,
-	    String change
+	    Money price,
+	    Money change,
+	    long changeBasisPoints
 	) {}
@@ -1,16 +1,17 @@
 package receipt_scanner_bot.dto;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 
+import receipt_scanner_bot.Money;
+
 public record ProductDetailStatsDTO(
 	    String productName,
-	    BigDecimal minPrice,
-	    BigDecimal maxPrice,
-	    BigDecimal averagePrice,
-	    BigDecimal priceSpread,
-	    String trend,
+	    Money minPrice,
+	    Money maxPrice,
+	    Money averagePrice,
+	    Money priceSpread,
+	    TrendDTO trend,
 	    int recordCount,
 	    LocalDate firstDate,
 	    LocalDate lastDate,
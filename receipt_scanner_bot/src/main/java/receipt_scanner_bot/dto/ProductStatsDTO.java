@@ -1,11 +1,12 @@
 package receipt_scanner_bot.dto;
 
-import java.math.BigDecimal;
+import receipt_scanner_bot.Money;
+import receipt_scanner_bot.Quantity;
 
 public record ProductStatsDTO(
 	    String productName,
-	    BigDecimal totalQuantity,
-	    BigDecimal totalAmount,
+	    Quantity totalQuantity,
+	    Money totalAmount,
 	    boolean isWeightProduct
 	) {}
 
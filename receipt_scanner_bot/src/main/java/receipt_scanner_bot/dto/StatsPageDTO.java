@@ -0,0 +1,18 @@
+package receipt_scanner_bot.dto;
+
+import java.util.List;
+
+import receipt_scanner_bot.Money;
+
+// Страница /stats: номер страницы и ключи соседних страниц (null, если соседней страницы нет)
+public record StatsPageDTO(
+	    List<ProductStatsDTO> items,
+	    int page,
+	    int pageSize,
+	    Cursor previous,
+	    Cursor next
+	) {
+	
+	// Ключ строки, на которой граничит соседняя страница
+	public record Cursor(Money totalAmount, int productId) {}
+}
@@ -1,10 +1,11 @@
 package receipt_scanner_bot.dto;
 
-import java.math.BigDecimal;
+import receipt_scanner_bot.Money;
 
+// Изменение цены от первой покупки к последней; процент - в сотых долях (базисных пунктах)
 public record TrendDTO(
-	    BigDecimal changeAmount,
-	    BigDecimal changePercent,
+	    Money changeAmount,
+	    long changeBasisPoints,
 	    long daysBetween,
 	    String direction
 	) {}
@@ -0,0 +1,47 @@
+-- Схема в том виде, в каком её создавал spring.jpa.hibernate.ddl-auto=update.
+-- IF NOT EXISTS позволяет применить миграцию поверх уже существующей базы.
+
+CREATE TABLE IF NOT EXISTS purchase_details (
+    id                BIGINT         NOT NULL AUTO_INCREMENT,
+    chat_id           BIGINT         NOT NULL,
+    product_name      VARCHAR(255)   NOT NULL,
+    quantity          DECIMAL(10, 3) NOT NULL,
+    price             DECIMAL(10, 2) NOT NULL,
+    purchase_date     DATE           NOT NULL,
+    is_weight_product BIT            NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS product_stats (
+    id           BIGINT         NOT NULL AUTO_INCREMENT,
+    chat_id      BIGINT         NOT NULL,
+    product_name VARCHAR(255)   NOT NULL,
+    unit_price   DECIMAL(10, 2) NOT NULL,
+    stat_date    DATE           NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS product_totals (
+    id                BIGINT         NOT NULL AUTO_INCREMENT,
+    chat_id           BIGINT         NOT NULL,
+    product_name      VARCHAR(255)   NOT NULL,
+    total_quantity    DECIMAL(14, 3) NOT NULL,
+    total_amount      DECIMAL(14, 2) NOT NULL,
+    is_weight_product BIT            NOT NULL,
+    purchase_count    INT            NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_product_totals_chat_product UNIQUE (chat_id, product_name)
+);
+
+CREATE TABLE IF NOT EXISTS receipts (
+    id                BIGINT         NOT NULL AUTO_INCREMENT,
+    chat_id           BIGINT         NOT NULL,
+    fn                VARCHAR(16)    NOT NULL,
+    fd                BIGINT         NOT NULL,
+    fp                BIGINT         NOT NULL,
+    receipt_date_time DATETIME(6)    NOT NULL,
+    total_sum         DECIMAL(10, 2) NOT NULL,
+    uploaded_at       DATETIME(6)    NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_receipts_chat_fiscal_key UNIQUE (chat_id, fn, fd, fp)
+);
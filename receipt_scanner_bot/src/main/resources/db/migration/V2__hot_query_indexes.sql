@@ -0,0 +1,17 @@
+-- Покрывающие индексы под основные запросы: все они фильтруют по chat_id
+
+-- /product_stats: история цен продукта по дате и последняя цена
+CREATE INDEX idx_product_stats_chat_product_date
+    ON product_stats (chat_id, product_name, stat_date, unit_price);
+
+-- история покупок чата в хронологическом порядке
+CREATE INDEX idx_purchase_details_chat_date_product
+    ON purchase_details (chat_id, purchase_date, product_name);
+
+-- список названий продуктов чата и пересчёт product_totals без чтения самих строк
+CREATE INDEX idx_purchase_details_chat_product
+    ON purchase_details (chat_id, product_name, quantity, price, is_weight_product);
+
+-- /stats: продукты чата по убыванию суммы
+CREATE INDEX idx_product_totals_chat_amount
+    ON product_totals (chat_id, total_amount, product_name);
@@ -0,0 +1,72 @@
+-- Словарь названий продуктов: таблицы фактов ссылаются на компактный INT вместо VARCHAR(255).
+-- name сравнивается побайтно: с collation по умолчанию (utf8mb4_0900_ai_ci) уникальный ключ
+-- склеил бы "Молоко" и "МОЛОКО" в один id. Поиск без учёта регистра идёт по normalized_name
+
+CREATE TABLE product_names (
+    id              INT          NOT NULL AUTO_INCREMENT,
+    name            VARCHAR(255) COLLATE utf8mb4_bin NOT NULL,
+    normalized_name VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_product_names_name UNIQUE (name)
+);
+
+CREATE INDEX idx_product_names_normalized ON product_names (normalized_name);
+
+-- Без UNION и DISTINCT: они сравнивали бы названия по collation исходных колонок и теряли
+-- варианты написания. Повторы отсекает уникальный ключ
+INSERT IGNORE INTO product_names (name, normalized_name)
+SELECT product_name, LOWER(TRIM(product_name)) FROM purchase_details ORDER BY id;
+INSERT IGNORE INTO product_names (name, normalized_name)
+SELECT product_name, LOWER(TRIM(product_name)) FROM product_stats ORDER BY id;
+
+-- purchase_details
+DROP INDEX idx_purchase_details_chat_date_product ON purchase_details;
+DROP INDEX idx_purchase_details_chat_product ON purchase_details;
+
+ALTER TABLE purchase_details ADD COLUMN product_id INT;
+UPDATE purchase_details
+SET product_id = (SELECT n.id FROM product_names n WHERE n.name = purchase_details.product_name);
+ALTER TABLE purchase_details MODIFY product_id INT NOT NULL;
+ALTER TABLE purchase_details DROP COLUMN product_name;
+
+CREATE INDEX idx_purchase_details_chat_date_product
+    ON purchase_details (chat_id, purchase_date, product_id);
+CREATE INDEX idx_purchase_details_chat_product
+    ON purchase_details (chat_id, product_id, quantity, price, is_weight_product);
+
+-- product_stats
+DROP INDEX idx_product_stats_chat_product_date ON product_stats;
+
+ALTER TABLE product_stats ADD COLUMN product_id INT;
+UPDATE product_stats
+SET product_id = (SELECT n.id FROM product_names n WHERE n.name = product_stats.product_name);
+ALTER TABLE product_stats MODIFY product_id INT NOT NULL;
+ALTER TABLE product_stats DROP COLUMN product_name;
+
+CREATE INDEX idx_product_stats_chat_product_date
+    ON product_stats (chat_id, product_id, stat_date, unit_price);
+
+-- product_totals - производная таблица, пересоздаём и пересчитываем по purchase_details
+DROP TABLE product_totals;
+
+CREATE TABLE product_totals (
+    id                BIGINT         NOT NULL AUTO_INCREMENT,
+    chat_id           BIGINT         NOT NULL,
+    product_id        INT            NOT NULL,
+    total_quantity    DECIMAL(14, 3) NOT NULL,
+    total_amount      DECIMAL(14, 2) NOT NULL,
+    is_weight_product BIT            NOT NULL,
+    purchase_count    INT            NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_product_totals_chat_product UNIQUE (chat_id, product_id)
+);
+
+CREATE INDEX idx_product_totals_chat_amount
+    ON product_totals (chat_id, total_amount, product_id);
+
+INSERT INTO product_totals
+    (chat_id, product_id, total_quantity, total_amount, is_weight_product, purchase_count)
+SELECT chat_id, product_id, SUM(quantity), SUM(price),
+       MAX(CASE WHEN is_weight_product THEN 1 ELSE 0 END), COUNT(*)
+FROM purchase_details
+GROUP BY chat_id, product_id;
@@ -0,0 +1,10 @@
+-- Состояние диалога, общее для нескольких экземпляров бота (session.store=jdbc)
+
+CREATE TABLE user_sessions (
+    chat_id    BIGINT      NOT NULL,
+    state      VARCHAR(32) NOT NULL,
+    expires_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (chat_id)
+);
+
+CREATE INDEX idx_user_sessions_expires_at ON user_sessions (expires_at);
@@ -0,0 +1,41 @@
+-- Календарные агрегаты для статистики за период: по дням и по месяцам на (чат, продукт).
+-- Запрос за период берёт целые месяцы из product_monthly_totals и только края - из product_daily_totals.
+-- Обе таблицы производные, их можно пересчитать по purchase_details (DatabaseService.rebuildCalendarTotals)
+
+CREATE TABLE product_daily_totals (
+    chat_id           BIGINT         NOT NULL,
+    purchase_date     DATE           NOT NULL,
+    product_id        INT            NOT NULL,
+    total_quantity    DECIMAL(14, 3) NOT NULL,
+    total_amount      DECIMAL(14, 2) NOT NULL,
+    is_weight_product BIT            NOT NULL,
+    purchase_count    INT            NOT NULL,
+    PRIMARY KEY (chat_id, purchase_date, product_id)
+);
+
+-- purchase_month - год и месяц числом: 202403 для марта 2024
+CREATE TABLE product_monthly_totals (
+    chat_id           BIGINT         NOT NULL,
+    purchase_month    INT            NOT NULL,
+    product_id        INT            NOT NULL,
+    total_quantity    DECIMAL(14, 3) NOT NULL,
+    total_amount      DECIMAL(14, 2) NOT NULL,
+    is_weight_product BIT            NOT NULL,
+    purchase_count    INT            NOT NULL,
+    PRIMARY KEY (chat_id, purchase_month, product_id)
+);
+
+INSERT INTO product_daily_totals
+    (chat_id, purchase_date, product_id, total_quantity, total_amount, is_weight_product, purchase_count)
+SELECT chat_id, purchase_date, product_id, SUM(quantity), SUM(price),
+       MAX(CASE WHEN is_weight_product THEN 1 ELSE 0 END), COUNT(*)
+FROM purchase_details
+GROUP BY chat_id, purchase_date, product_id;
+
+INSERT INTO product_monthly_totals
+    (chat_id, purchase_month, product_id, total_quantity, total_amount, is_weight_product, purchase_count)
+SELECT chat_id, EXTRACT(YEAR FROM purchase_date) * 100 + EXTRACT(MONTH FROM purchase_date), product_id,
+       SUM(total_quantity), SUM(total_amount),
+       MAX(CASE WHEN is_weight_product THEN 1 ELSE 0 END), SUM(purchase_count)
+FROM product_daily_totals
+GROUP BY chat_id, EXTRACT(YEAR FROM purchase_date) * 100 + EXTRACT(MONTH FROM purchase_date), product_id;
@@ -0,0 +1,49 @@
+-- Одна таблица позиций чеков вместо purchase_details и product_stats: цена за единицу
+-- хранится рядом с количеством и суммой, каждая позиция пишется одной строкой.
+
+-- Строки обеих таблиц записывались парами в одном порядке: n-я позиция продукта за день
+-- в purchase_details соответствует n-й в product_stats
+CREATE TABLE line_item_prices (
+    line_item_id BIGINT         NOT NULL,
+    unit_price   DECIMAL(10, 2) NOT NULL,
+    PRIMARY KEY (line_item_id)
+);
+
+INSERT INTO line_item_prices (line_item_id, unit_price)
+SELECT d.id, s.unit_price
+FROM (SELECT id, chat_id, product_id, purchase_date,
+             ROW_NUMBER() OVER (PARTITION BY chat_id, product_id, purchase_date ORDER BY id) AS n
+      FROM purchase_details) d
+JOIN (SELECT chat_id, product_id, stat_date, unit_price,
+             ROW_NUMBER() OVER (PARTITION BY chat_id, product_id, stat_date ORDER BY id) AS n
+      FROM product_stats) s
+  ON s.chat_id = d.chat_id AND s.product_id = d.product_id
+ AND s.stat_date = d.purchase_date AND s.n = d.n;
+
+DROP INDEX idx_purchase_details_chat_date_product ON purchase_details;
+DROP INDEX idx_purchase_details_chat_product ON purchase_details;
+
+ALTER TABLE purchase_details RENAME TO line_items;
+ALTER TABLE line_items RENAME COLUMN price TO total_price;
+ALTER TABLE line_items ADD COLUMN unit_price DECIMAL(10, 2);
+
+-- Позиция без пары в product_stats получает цену, вычисленную из суммы и количества;
+-- строки product_stats без пары не переносятся: без количества и суммы это не позиция чека
+UPDATE line_items
+SET unit_price = COALESCE(
+    (SELECT p.unit_price FROM line_item_prices p WHERE p.line_item_id = line_items.id),
+    CASE WHEN quantity > 0 THEN ROUND(total_price / quantity, 2) ELSE total_price END);
+ALTER TABLE line_items MODIFY unit_price DECIMAL(10, 2) NOT NULL;
+
+DROP TABLE line_item_prices;
+DROP TABLE product_stats;
+
+-- история покупок чата по датам и пересчёт календарных агрегатов
+CREATE INDEX idx_line_items_chat_date_product
+    ON line_items (chat_id, purchase_date, product_id);
+
+-- /product_stats: история цен продукта и список продуктов чата.
+-- Прежний покрывающий индекс под пересчёт product_totals не переносится: пересчёт разовый,
+-- а каждая вставка платила за лишний индекс
+CREATE INDEX idx_line_items_chat_product_date
+    ON line_items (chat_id, product_id, purchase_date, unit_price);
@@ -0,0 +1,72 @@
+package receipt_scanner_bot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+class ClientTest {
+	
+	private MockWebServer server;
+	private Client client;
+	private SimpleMeterRegistry registry;
+	
+	@BeforeEach
+	void setUp() throws IOException {
+		server = new MockWebServer();
+		server.start();
+		registry = new SimpleMeterRegistry();
+		client = new Client(new OkHttpClient(), server.url("/api/v1/check/get").toString(), "token",
+				Duration.ofSeconds(2), 3, Duration.ofMillis(10), 3, Duration.ofMinutes(1), registry);
+	}
+	
+	@AfterEach
+	void tearDown() throws IOException {
+		server.shutdown();
+	}
+
+	@Test
+	void retriesServerErrors() throws Exception {
+		server.enqueue(new MockResponse().setResponseCode(503));
+		server.enqueue(new MockResponse().setResponseCode(502));
+		server.enqueue(new MockResponse().setBody("{\"code\":1}"));
+		
+		assertEquals("{\"code\":1}", client.getReceiptData("t=1"));
+		assertEquals(3, server.getRequestCount());
+		assertEquals(1, registry.get("fns.requests").tag("status", "503").timer().count());
+		assertEquals(1, registry.get("fns.requests").tag("status", "200").timer().count());
+		assertEquals(1, registry.get("fns.receipts").tag("outcome", "success").timer().count());
+	}
+	
+	@Test
+	void doesNotRetryClientErrors() {
+		server.enqueue(new MockResponse().setResponseCode(400));
+		
+		assertThrows(IOException.class, () -> client.getReceiptData("t=1"));
+		assertEquals(1, server.getRequestCount());
+		assertEquals(CircuitBreaker.State.CLOSED, client.getCircuitState());
+	}
+	
+	@Test
+	void opensCircuitAndFailsFast() {
+		for (int i = 0; i < 3; i++) {
+			server.enqueue(new MockResponse().setResponseCode(500));
+		}
+		
+		assertThrows(IOException.class, () -> client.getReceiptData("t=1"));
+		assertEquals(CircuitBreaker.State.OPEN, client.getCircuitState());
+		
+		assertThrows(IOException.class, () -> client.getReceiptData("t=1"));
+		assertEquals(3, server.getRequestCount());
+	}
+}
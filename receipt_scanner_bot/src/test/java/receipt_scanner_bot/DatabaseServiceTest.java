@@ -0,0 +1,401 @@
+package receipt_scanner_bot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import receipt_scanner_bot.dto.MonthlySpendingDTO;
+import receipt_scanner_bot.dto.PeriodStatsDTO;
+import receipt_scanner_bot.dto.PriceHistoryDTO;
+import receipt_scanner_bot.dto.ProductDetailStatsDTO;
+import receipt_scanner_bot.dto.ProductStatsDTO;
+import receipt_scanner_bot.dto.StatsPageDTO;
+import receipt_scanner_bot.dto.TrendDTO;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import({DatabaseService.class, ReceiptBatchWriter.class, CalendarRollupRepository.class, ProductDictionary.class,
+		ProductTotalsRebuildJob.class, SimpleMeterRegistry.class})
+class DatabaseServiceTest {
+	
+	private static final LocalDate MONDAY = LocalDate.of(2024, 3, 11);
+	private static final LocalDate FRIDAY = LocalDate.of(2024, 3, 15);
+	
+	@Autowired
+	private DatabaseService databaseService;
+	
+	@Autowired
+	private ProductTotalRepository productTotalRepository;
+	
+	@Autowired
+	private LineItemRepository lineItemRepository;
+	
+	@Autowired
+	private ProductDictionary productDictionary;
+	
+	@Autowired
+	private ProductTotalsRebuildJob productTotalsRebuildJob;
+	
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void maintainsTotalsIncrementally() {
+		databaseService.saveProducts(1L, List.of(
+				product("Молоко", "2", "89.99", MONDAY),
+				product("Бананы", "0.836", "129.90", MONDAY),
+				product("Молоко", "1", "89.99", MONDAY)));
+		databaseService.saveProducts(1L, List.of(
+				product("Бананы", "1.200", "119.90", FRIDAY)));
+		databaseService.saveProducts(2L, List.of(
+				product("Молоко", "1", "95.00", FRIDAY)));
+		
+		List<ProductStatsDTO> stats = databaseService.getStatsPage(1L, 10).items();
+		
+		assertEquals(2, stats.size());
+		assertEquals(new ProductStatsDTO("Молоко", Quantity.ofUnits(3), Money.parse("269.97"), false),
+				stats.get(0));
+		assertEquals(new ProductStatsDTO("Бананы", Quantity.ofMillis(2_036), Money.parse("252.48"), true),
+				stats.get(1));
+	}
+	
+	@Test
+	void rebuildMatchesIncrementalTotals() {
+		databaseService.saveProducts(3L, List.of(
+				product("Хлеб", "1", "45.00", MONDAY),
+				product("Сыр", "0.350", "899.00", MONDAY)));
+		databaseService.saveProducts(3L, List.of(
+				product("Хлеб", "2", "47.00", FRIDAY)));
+		StatsPageDTO incremental = databaseService.getStatsPage(3L, 10);
+		
+		assertEquals(2, databaseService.rebuildProductTotals(3L));
+		assertEquals(incremental, databaseService.getStatsPage(3L, 10));
+		assertTrue(databaseService.findAllChatIds().contains(3L));
+		assertFalse(databaseService.getStatsPage(3L, 10).items().isEmpty());
+	}
+	
+	// product_totals, которые ведёт saveProducts, совпадают с прежним GROUP BY по всей истории
+	@Test
+	void totalsMatchHistoryAggregateAfterSaves() {
+		Random random = new Random(7);
+		for (int receipt = 0; receipt < 20; receipt++) {
+			List<Product> products = new ArrayList<>();
+			for (int i = 0, n = 1 + random.nextInt(6); i < n; i++) {
+				String quantity = random.nextBoolean() ? String.valueOf(1 + random.nextInt(3)) : "0." + (100 + random.nextInt(900));
+				String price = (10 + random.nextInt(500)) + "." + (10 + random.nextInt(90));
+				products.add(product("Продукт " + random.nextInt(8), quantity, price, MONDAY.plusDays(receipt)));
+			}
+			databaseService.saveProducts(10L, products);
+		}
+		
+		List<ProductStatsDTO> aggregate = new ArrayList<>();
+		for (LineItemRepository.AggregateRow row : lineItemRepository.aggregateStatsByChatId(10L)) {
+			aggregate.add(new ProductStatsDTO(row.getProductName(), Quantity.of(row.getTotalQuantity()),
+					Money.of(row.getTotalAmount()), row.isWeightProduct()));
+		}
+		
+		assertFalse(aggregate.isEmpty());
+		assertEquals(aggregate, productTotalRepository.findStatsByChatId(10L));
+	}
+	
+	// При старте заполняются только чаты без product_totals, остальные не пересчитываются
+	@Test
+	void startupJobBackfillsChatsWithoutTotals() {
+		databaseService.saveProducts(11L, List.of(
+				product("Хлеб", "1", "45.00", MONDAY),
+				product("Бананы", "0.500", "120.00", FRIDAY)));
+		databaseService.saveProducts(12L, List.of(product("Чай", "1", "150.00", MONDAY)));
+		List<ProductStatsDTO> before = databaseService.getStatsForAllProducts(11L);
+		productTotalRepository.deleteByChatId(11L);
+		jdbcTemplate.update("UPDATE product_totals SET purchase_count = 99 WHERE chat_id = 12");
+		
+		assertEquals(List.of(11L), databaseService.findChatIdsWithoutTotals());
+		productTotalsRebuildJob.run(null);
+		
+		assertEquals(before, productTotalRepository.findStatsByChatId(11L));
+		assertTrue(databaseService.findChatIdsWithoutTotals().isEmpty());
+		assertEquals(99, jdbcTemplate.queryForObject(
+				"SELECT purchase_count FROM product_totals WHERE chat_id = 12", Integer.class));
+	}
+	
+	@Test
+	void aggregatesHistoryWhenTotalsAreMissing() {
+		databaseService.saveProducts(4L, List.of(
+				product("Хлеб", "1", "45.00", MONDAY),
+				product("Бананы", "0.500", "120.00", MONDAY)));
+		databaseService.saveProducts(4L, List.of(
+				product("Хлеб", "2", "47.00", FRIDAY)));
+		List<ProductStatsDTO> fromTotals = databaseService.getStatsForAllProducts(4L);
+		
+		productTotalRepository.deleteByChatId(4L);
+		
+		assertEquals(fromTotals, databaseService.getStatsForAllProducts(4L));
+	}
+	
+	// /stats читает только product_totals: история, записанная в обход saveProducts,
+	// появляется в отчёте после пересчёта (ProductTotalsRebuildJob)
+	@Test
+	void rebuildRestoresMissingTotals() {
+		databaseService.saveProducts(4L, List.of(
+				product("Хлеб", "1", "45.00", MONDAY),
+				product("Бананы", "0.500", "120.00", MONDAY)));
+		databaseService.saveProducts(4L, List.of(
+				product("Хлеб", "2", "47.00", FRIDAY)));
+		StatsPageDTO fromTotals = databaseService.getStatsPage(4L, 10);
+		
+		productTotalRepository.deleteByChatId(4L);
+		assertTrue(databaseService.getStatsPage(4L, 10).items().isEmpty());
+		
+		assertEquals(2, databaseService.rebuildProductTotals(4L));
+		assertEquals(fromTotals, databaseService.getStatsPage(4L, 10));
+	}
+	
+	@Test
+	void summarizesPriceHistoryInDatabase() {
+		String[][] history = {
+				{"2024-03-01", "100.00"}, {"2024-03-05", "110.00"}, {"2024-03-05", "99.00"},
+				{"2024-03-10", "120.00"}, {"2024-03-12", "120.00"}, {"2024-03-20", "90.00"},
+				{"2024-03-25", "95.50"}};
+		for (String[] point : history) {
+			databaseService.saveProducts(5L, List.of(product("Кофе", "1", point[1], LocalDate.parse(point[0]))));
+		}
+		
+		ProductDetailStatsDTO stats = databaseService.getStatsForProduct(5L, "Кофе").orElseThrow();
+		
+		assertEquals(Money.parse("90.00"), stats.minPrice());
+		assertEquals(Money.parse("120.00"), stats.maxPrice());
+		assertEquals(Money.parse("104.93"), stats.averagePrice());
+		assertEquals(Money.parse("30.00"), stats.priceSpread());
+		assertEquals(new TrendDTO(Money.parse("-4.50"), -450, 24, "DOWN"), stats.trend());
+		assertEquals(7, stats.recordCount());
+		assertEquals(LocalDate.of(2024, 3, 1), stats.firstDate());
+		assertEquals(LocalDate.of(2024, 3, 25), stats.lastDate());
+		assertEquals(List.of(
+				new PriceHistoryDTO(LocalDate.of(2024, 3, 5), Money.parse("99.00"), Money.parse("-11.00"), -1_000),
+				new PriceHistoryDTO(LocalDate.of(2024, 3, 10), Money.parse("120.00"), Money.parse("21.00"), 2_121),
+				new PriceHistoryDTO(LocalDate.of(2024, 3, 12), Money.parse("120.00"), Money.ZERO, 0),
+				new PriceHistoryDTO(LocalDate.of(2024, 3, 20), Money.parse("90.00"), Money.parse("-30.00"), -2_500),
+				new PriceHistoryDTO(LocalDate.of(2024, 3, 25), Money.parse("95.50"), Money.parse("5.50"), 611)),
+				stats.priceHistory());
+		
+		assertTrue(databaseService.getStatsForProduct(5L, "Чай").isEmpty());
+	}
+	
+	@Test
+	void singlePriceIsStable() {
+		databaseService.saveProducts(6L, List.of(product("Чай", "1", "150.00", MONDAY)));
+		
+		ProductDetailStatsDTO stats = databaseService.getStatsForProduct(6L, "Чай").orElseThrow();
+		
+		assertEquals(new TrendDTO(Money.ZERO, 0, 0, "STABLE"), stats.trend());
+		assertEquals(List.of(new PriceHistoryDTO(MONDAY, Money.parse("150.00"), null, 0)), stats.priceHistory());
+	}
+	
+	@Test
+	void sharesDictionaryEntriesAcrossChats() {
+		databaseService.saveProducts(7L, List.of(product("Кефир 1%", "1", "79.00", MONDAY)));
+		databaseService.saveProducts(8L, List.of(product("Кефир 1%", "2", "81.00", FRIDAY)));
+		
+		Integer productId = jdbcTemplate.queryForObject(
+				"SELECT id FROM product_names WHERE name = 'Кефир 1%'", Integer.class);
+		assertEquals(2, jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM line_items WHERE product_id = ?", Integer.class, productId));
+		assertEquals(1, jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM product_names WHERE name = 'Кефир 1%'", Integer.class));
+		
+		ProductDetailStatsDTO stats = databaseService.getStatsForProduct(8L, " кефир 1% ").orElseThrow();
+		assertEquals(Money.parse("81.00"), stats.minPrice());
+		assertTrue(databaseService.getStatsForProduct(9L, "Кефир 1%").isEmpty());
+	}
+	
+	// Новые названия ищутся пачками IN (...): больше одной пачки и написания, отличающиеся регистром
+	@Test
+	void resolvesNewNamesInChunks() {
+		databaseService.saveProducts(8L, List.of(product("Кефир", "1", "79.00", MONDAY)));
+		List<String> names = new ArrayList<>(List.of("Кефир", "кефир", "КЕФИР "));
+		for (int i = 0; i < 1_200; i++) {
+			names.add("Товар " + i);
+		}
+		
+		Map<String, Integer> ids = productDictionary.resolve(names);
+		
+		assertEquals(names.size(), ids.size());
+		assertEquals(names.size(), ids.values().stream().distinct().count());
+		for (String name : List.of("Кефир", "кефир", "КЕФИР ", "Товар 0", "Товар 1199")) {
+			assertEquals(ids.get(name), jdbcTemplate.queryForObject(
+					"SELECT id FROM product_names WHERE name = ?", Integer.class, name));
+		}
+	}
+	
+	@Test
+	void findsProductAmongSpellingsOfThisChat() {
+		databaseService.saveProducts(12L, List.of(product("Сметана 20%", "1", "99.00", MONDAY)));
+		databaseService.saveProducts(13L, List.of(product("СМЕТАНА 20%", "1", "105.00", FRIDAY)));
+		
+		// Написание с меньшим id покупали только в чате 12
+		assertEquals(Money.parse("105.00"), databaseService.getStatsForProduct(13L, "сметана 20%").orElseThrow().minPrice());
+		assertEquals(Money.parse("105.00"), databaseService.getStatsForProduct(13L, "Сметана 20%").orElseThrow().minPrice());
+		assertEquals(Money.parse("99.00"), databaseService.getStatsForProduct(12L, "СМЕТАНА 20%").orElseThrow().minPrice());
+	}
+	
+	@Test
+	void normalizesLikeMigration() {
+		for (String name : new String[] {"Молоко", "  МОЛОКО 3,2% ", "\tКефир\n", " \u00A0Сыр ", ""}) {
+			assertEquals(jdbcTemplate.queryForObject("SELECT LOWER(TRIM(?))", String.class, name),
+					ProductDictionary.normalize(name), "[" + name + "]");
+		}
+	}
+	
+	@Test
+	void pagesThroughTotalsByKeyset() {
+		List<Product> products = new ArrayList<>();
+		for (int i = 0; i < 23; i++) {
+			// Каждая третья сумма повторяется, чтобы граница страниц попадала на равные суммы
+			String price = String.valueOf(100 + (i / 3) * 10) + ".00";
+			products.add(product("Продукт " + i, "1", price, MONDAY));
+		}
+		databaseService.saveProducts(10L, products);
+		
+		StatsPageDTO first = databaseService.getStatsPage(10L, 10);
+		StatsPageDTO second = databaseService.getStatsPageAfter(10L, first.next(), 2, 10);
+		StatsPageDTO third = databaseService.getStatsPageAfter(10L, second.next(), 3, 10);
+		
+		assertEquals(List.of(10, 10, 3), List.of(first.items().size(), second.items().size(), third.items().size()));
+		assertNull(first.previous());
+		assertNull(third.next());
+		
+		List<ProductStatsDTO> all = new ArrayList<>();
+		all.addAll(first.items());
+		all.addAll(second.items());
+		all.addAll(third.items());
+		assertEquals(23, all.stream().map(ProductStatsDTO::productName).distinct().count());
+		for (int i = 1; i < all.size(); i++) {
+			assertTrue(all.get(i - 1).totalAmount().compareTo(all.get(i).totalAmount()) >= 0);
+		}
+		
+		StatsPageDTO backToSecond = databaseService.getStatsPageBefore(10L, third.previous(), 2, 10);
+		assertEquals(second, backToSecond);
+		StatsPageDTO backToFirst = databaseService.getStatsPageBefore(10L, second.previous(), 1, 10);
+		assertEquals(first, backToFirst);
+		
+		StatsPageDTO empty = databaseService.getStatsPage(11L, 10);
+		assertTrue(empty.items().isEmpty());
+		assertNull(empty.next());
+	}
+	
+	@Test
+	void periodStatsMatchRawPurchasesAcrossMonthBoundaries() {
+		Random random = new Random(23);
+		List<Product> products = new ArrayList<>();
+		LocalDate start = LocalDate.of(2024, 1, 20);
+		for (int i = 0; i < 200; i++) {
+			String quantity = random.nextBoolean() ? "1" : "0." + (100 + random.nextInt(900));
+			String price = (10 + random.nextInt(500)) + "." + (10 + random.nextInt(90));
+			products.add(product("Продукт " + random.nextInt(12), quantity, price,
+					start.plusDays(random.nextInt(90))));
+		}
+		databaseService.saveProducts(20L, products);
+		
+		LocalDate[][] ranges = {
+				{LocalDate.of(2024, 1, 25), LocalDate.of(2024, 3, 5)},
+				{LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 29)},
+				{LocalDate.of(2024, 1, 31), LocalDate.of(2024, 2, 1)},
+				{LocalDate.of(2024, 2, 10), LocalDate.of(2024, 2, 20)},
+				{LocalDate.of(2024, 2, 1), LocalDate.of(2024, 4, 30)},
+				{LocalDate.of(2023, 1, 1), LocalDate.of(2024, 12, 31)}};
+		for (LocalDate[] range : ranges) {
+			Map<String, Money> expected = new HashMap<>();
+			long purchases = 0;
+			for (Product product : products) {
+				if (!product.getDate().isBefore(range[0]) && !product.getDate().isAfter(range[1])) {
+					expected.merge(product.getName(), product.getTotalPrice(), Money::plus);
+					purchases++;
+				}
+			}
+			
+			PeriodStatsDTO stats = databaseService.getStatsForPeriod(20L, range[0], range[1], 100);
+			
+			Map<String, Money> actual = new HashMap<>();
+			for (ProductStatsDTO item : stats.items()) {
+				actual.put(item.productName(), item.totalAmount());
+			}
+			assertEquals(expected, actual, range[0] + " - " + range[1]);
+			assertEquals(expected.values().stream().reduce(Money.ZERO, Money::plus), stats.totalAmount());
+			assertEquals(purchases, stats.purchaseCount());
+			assertEquals(expected.size(), stats.productCount());
+		}
+		
+		PeriodStatsDTO top = databaseService.getStatsForPeriod(20L, start, start.plusDays(90), 3);
+		assertEquals(3, top.items().size());
+		assertEquals(12, top.productCount());
+	}
+	
+	@Test
+	void comparesMonthsAndFillsEmptyOnes() {
+		databaseService.saveProducts(21L, List.of(
+				product("Хлеб", "1", "40.00", LocalDate.of(2024, 1, 31)),
+				product("Хлеб", "2", "30.00", LocalDate.of(2024, 3, 1)),
+				product("Сыр", "0.500", "100.00", LocalDate.of(2024, 3, 15))));
+		
+		List<MonthlySpendingDTO> months = databaseService.getMonthlySpending(21L,
+				YearMonth.of(2024, 1), YearMonth.of(2024, 4));
+		
+		assertEquals(List.of(YearMonth.of(2024, 1), YearMonth.of(2024, 2), YearMonth.of(2024, 3), YearMonth.of(2024, 4)),
+				months.stream().map(MonthlySpendingDTO::month).toList());
+		assertEquals(List.of(Money.parse("40.00"), Money.ZERO, Money.parse("110.00"), Money.ZERO),
+				months.stream().map(MonthlySpendingDTO::totalAmount).toList());
+		assertEquals(List.of(1L, 0L, 2L, 0L), months.stream().map(MonthlySpendingDTO::purchaseCount).toList());
+		// После пустого месяца сравнивать не с чем
+		assertNull(months.get(0).change());
+		assertNull(months.get(2).change());
+		assertEquals(Money.parse("-40.00"), months.get(1).change());
+		assertEquals(-10_000, months.get(1).changeBasisPoints());
+	}
+	
+	@Test
+	void rebuildRestoresCalendarTotals() {
+		databaseService.saveProducts(22L, List.of(
+				product("Хлеб", "1", "45.00", LocalDate.of(2024, 2, 28)),
+				product("Сыр", "0.350", "899.00", LocalDate.of(2024, 3, 1)),
+				product("Хлеб", "2", "47.00", LocalDate.of(2024, 3, 20))));
+		LocalDate from = LocalDate.of(2024, 2, 1);
+		LocalDate to = LocalDate.of(2024, 3, 31);
+		PeriodStatsDTO incremental = databaseService.getStatsForPeriod(22L, from, to, 10);
+		
+		// Как если бы чек дописали в line_items в обход saveProducts
+		jdbcTemplate.update("DELETE FROM product_daily_totals WHERE chat_id = 22 AND purchase_date = '2024-03-01'");
+		jdbcTemplate.update("DELETE FROM product_monthly_totals WHERE chat_id = 22 AND purchase_month = 202403");
+		assertEquals(2 + 2, databaseService.rebuildCalendarTotals(22L, LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 1)));
+		assertEquals(incremental, databaseService.getStatsForPeriod(22L, from, to, 10));
+		
+		jdbcTemplate.update("DELETE FROM product_daily_totals WHERE chat_id = 22");
+		assertEquals(3 + 3, databaseService.rebuildCalendarTotals(22L));
+		assertEquals(incremental, databaseService.getStatsForPeriod(22L, from, to, 10));
+	}
+	
+	private static Product product(String name, String quantity, String unitPrice, LocalDate date) {
+		var q = Quantity.of(new BigDecimal(quantity));
+		var price = Money.parse(unitPrice);
+		return new Product(name, q, price, price.times(q), date);
+	}
+}
@@ -0,0 +1,82 @@
+package receipt_scanner_bot;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * proverkacheka для нагрузочного прогона: готовый чек из нескольких позиций из PRODUCTS
+ * с задержкой latency ± 50% и долей ответов 503, равной errorRate.
+ */
+class FakeProverkacheka extends Dispatcher {
+	
+	static final List<String> PRODUCTS = List.of(
+			"Молоко ПРОСТОКВАШИНО паст. 3,2% 930мл",
+			"Хлеб Бородинский нарезка 350г",
+			"Бананы весовые",
+			"Сыр РОССИЙСКИЙ 50% фасованный",
+			"Яйцо куриное С1 10шт",
+			"Огурцы среднеплодные гладкие",
+			"Вода питьевая СВЯТОЙ ИСТОЧНИК негаз. 1,5л",
+			"Кофе JACOBS MONARCH растворимый 190г",
+			"Шоколад ALPEN GOLD молочный 85г",
+			"Гречка ЯРМАРКА ядрица 900г");
+	
+	private final Duration latency;
+	private final double errorRate;
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+	
+	FakeProverkacheka(Duration latency, double errorRate) {
+		this.latency = latency;
+		this.errorRate = errorRate;
+	}
+	
+	long getRequests() {
+		return requests.get();
+	}
+	
+	long getErrors() {
+		return errors.get();
+	}
+
+	@Override
+	public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+		requests.incrementAndGet();
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		long delay = latency.toMillis() / 2 + random.nextLong(latency.toMillis() + 1);
+		if (delay > 0) {
+			Thread.sleep(delay);
+		}
+		if (random.nextDouble() < errorRate) {
+			errors.incrementAndGet();
+			return new MockResponse().setResponseCode(503);
+		}
+		return new MockResponse()
+				.setHeader("Content-Type", "application/json")
+				.setBody(receipt(random));
+	}
+	
+	private static String receipt(ThreadLocalRandom random) {
+		StringBuilder items = new StringBuilder();
+		int count = 3 + random.nextInt(6);
+		for (int i = 0; i < count; i++) {
+			long price = 3_000 + random.nextInt(50_000);
+			int quantity = 1 + random.nextInt(3);
+			if (i > 0) {
+				items.append(',');
+			}
+			items.append("{\"name\":\"").append(PRODUCTS.get(random.nextInt(PRODUCTS.size())))
+				.append("\",\"price\":").append(price)
+				.append(",\"quantity\":").append(quantity)
+				.append(",\"sum\":").append(price * quantity).append('}');
+		}
+		return "{\"code\":1,\"data\":{\"json\":{\"dateTime\":\"2024-03-" + (10 + random.nextInt(18)) + "T18:42:00\","
+				+ "\"items\":[" + items + "]}}}";
+	}
+}
@@ -0,0 +1,134 @@
+package receipt_scanner_bot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Bot API для нагрузочного прогона: отдаёт боту апдейты через getUpdates и записывает его ответы.
+ * Задержка команды - от постановки апдейта в очередь до первого sendMessage/editMessageText в этот чат,
+ * то есть вместе с ожиданием следующего getUpdates, как у настоящего Telegram.
+ */
+class FakeTelegramApi extends Dispatcher {
+	
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	
+	// Сколько getUpdates ждёт первый апдейт, прежде чем вернуть пустой ответ
+	private static final long POLL_WAIT_MILLIS = 100;
+	private static final int MAX_UPDATES_PER_POLL = 100;
+	
+	private record Pending(long chatId, String text, String command, long queuedAt) {}
+	
+	private final BlockingQueue<Pending> updates = new LinkedBlockingQueue<>();
+	private final Map<Long, Pending> awaitingReply = new ConcurrentHashMap<>();
+	private final AtomicLong updateIds = new AtomicLong();
+	private final AtomicLong unexpectedReplies = new AtomicLong();
+	private final LoadReport report;
+	private final LongConsumer onReply;
+	
+	FakeTelegramApi(LoadReport report, LongConsumer onReply) {
+		this.report = report;
+		this.onReply = onReply;
+	}
+	
+	// В чате одновременно ждёт ответа не больше одного апдейта
+	void sendUpdate(long chatId, String text, String command) {
+		Pending pending = new Pending(chatId, text, command, System.nanoTime());
+		awaitingReply.put(chatId, pending);
+		updates.add(pending);
+	}
+	
+	int getAwaitingReply() {
+		return awaitingReply.size();
+	}
+	
+	long getUnexpectedReplies() {
+		return unexpectedReplies.get();
+	}
+
+	@Override
+	public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+		String path = request.getPath();
+		if (path.endsWith("/getupdates")) {
+			return ok(pollUpdates());
+		}
+		if (path.endsWith("/sendmessage") || path.endsWith("/editmessagetext")) {
+			return ok(recordReply(request.getBody().readUtf8()));
+		}
+		// deleteWebhook при регистрации бота, answerCallbackQuery и прочее
+		return ok(MAPPER.getNodeFactory().booleanNode(true));
+	}
+	
+	private ArrayNode pollUpdates() throws InterruptedException {
+		ArrayNode result = MAPPER.createArrayNode();
+		Pending first = updates.poll(POLL_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+		if (first == null) {
+			return result;
+		}
+		List<Pending> batch = new ArrayList<>();
+		batch.add(first);
+		updates.drainTo(batch, MAX_UPDATES_PER_POLL - 1);
+		long date = System.currentTimeMillis() / 1000;
+		for (Pending pending : batch) {
+			long id = updateIds.incrementAndGet();
+			ObjectNode update = result.addObject();
+			update.put("update_id", id);
+			ObjectNode message = update.putObject("message");
+			message.put("message_id", id);
+			message.put("date", date);
+			message.put("text", pending.text());
+			message.putObject("chat").put("id", pending.chatId()).put("type", "private").put("first_name", "Load");
+			message.putObject("from").put("id", pending.chatId()).put("is_bot", false).put("first_name", "Load");
+		}
+		return result;
+	}
+	
+	private JsonNode recordReply(String body) {
+		long now = System.nanoTime();
+		long chatId;
+		try {
+			chatId = MAPPER.readTree(body).get("chat_id").asLong();
+		} catch (Exception e) {
+			throw new IllegalStateException("Unexpected Bot API request: " + body, e);
+		}
+		
+		Pending pending = awaitingReply.remove(chatId);
+		if (pending == null) {
+			unexpectedReplies.incrementAndGet();
+		} else {
+			report.record(pending.command(), now - pending.queuedAt());
+			onReply.accept(chatId);
+		}
+		
+		ObjectNode message = MAPPER.createObjectNode();
+		message.put("message_id", updateIds.incrementAndGet());
+		message.put("date", System.currentTimeMillis() / 1000);
+		message.putObject("chat").put("id", chatId).put("type", "private");
+		message.put("text", "ok");
+		return message;
+	}
+	
+	private static MockResponse ok(JsonNode result) {
+		ObjectNode response = MAPPER.createObjectNode();
+		response.put("ok", true);
+		response.set("result", result);
+		return new MockResponse()
+				.setHeader("Content-Type", "application/json")
+				.setBody(response.toString());
+	}
+}
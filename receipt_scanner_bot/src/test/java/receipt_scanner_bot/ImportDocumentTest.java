@@ -0,0 +1,50 @@
+package receipt_scanner_bot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class ImportDocumentTest {
+
+	@Test
+	void readsQrStringPerLine() {
+		var sources = ImportDocument.parse("""
+				t=20240315T1842&s=10.00&fn=7284440500123456&i=1&fp=2&n=1
+				
+				  t=20240316T1842&s=20.00&fn=7284440500123456&i=2&fp=3&n=1  \r
+				""");
+		
+		assertEquals(List.of(
+				ImportDocument.Source.qr("t=20240315T1842&s=10.00&fn=7284440500123456&i=1&fp=2&n=1"),
+				ImportDocument.Source.qr("t=20240316T1842&s=20.00&fn=7284440500123456&i=2&fp=3&n=1")), sources);
+	}
+	
+	@Test
+	void readsJsonArrayOfQrStringsAndResponses() {
+		var sources = ImportDocument.parse("""
+				["t=20240315T1842&s=10.00&fn=7284440500123456&i=1&fp=2&n=1",
+				 {"code":1,"data":{"json":{"dateTime":"2024-01-02T09:05:11","items":[]}}}]
+				""");
+		
+		assertEquals(2, sources.size());
+		assertEquals("t=20240315T1842&s=10.00&fn=7284440500123456&i=1&fp=2&n=1", sources.get(0).qr());
+		assertTrue(sources.get(1).response().startsWith("{\"code\":1,\"data\""));
+	}
+	
+	@Test
+	void readsSingleResponse() {
+		var sources = ImportDocument.parse("{\"code\":1,\"data\":{}}");
+		
+		assertEquals(List.of(ImportDocument.Source.response("{\"code\":1,\"data\":{}}")), sources);
+	}
+	
+	@Test
+	void rejectsBrokenJson() {
+		assertThrows(IllegalArgumentException.class, () -> ImportDocument.parse("[\"t=1\","));
+		assertThrows(IllegalArgumentException.class, () -> ImportDocument.parse("[1, 2]"));
+	}
+}
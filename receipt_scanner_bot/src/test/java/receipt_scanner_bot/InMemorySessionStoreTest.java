@@ -0,0 +1,49 @@
+package receipt_scanner_bot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class InMemorySessionStoreTest {
+
+	@Test
+	void expiresAbandonedStates() {
+		AtomicLong now = new AtomicLong();
+		var store = new InMemorySessionStore(Duration.ofMinutes(15), 100, now::get);
+
+		store.put(1L, UserState.WAITING_FOR_RECEIPT);
+		now.addAndGet(TimeUnit.MINUTES.toNanos(14));
+		assertEquals(Optional.of(UserState.WAITING_FOR_RECEIPT), store.get(1L));
+
+		now.addAndGet(TimeUnit.MINUTES.toNanos(2));
+		assertTrue(store.get(1L).isEmpty());
+		assertEquals(0, store.size());
+	}
+
+	@Test
+	void staysWithinSizeBound() {
+		var store = new InMemorySessionStore(Duration.ofMinutes(15), 100, System::nanoTime);
+
+		for (long chatId = 0; chatId < 1000; chatId++) {
+			store.put(chatId, UserState.WAITING_FOR_PRODUCT);
+		}
+
+		assertTrue(store.size() <= 100);
+	}
+
+	@Test
+	void removesOnReply() {
+		var store = new InMemorySessionStore(Duration.ofMinutes(15), 100, System::nanoTime);
+		store.put(2L, UserState.WAITING_FOR_PRODUCT);
+
+		store.remove(2L);
+
+		assertTrue(store.get(2L).isEmpty());
+	}
+}
@@ -0,0 +1,53 @@
+package receipt_scanner_bot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import(JdbcSessionStore.class)
+@TestPropertySource(properties = {"session.store=jdbc", "session.ttl=15m"})
+class JdbcSessionStoreTest {
+	
+	@Autowired
+	private JdbcSessionStore store;
+	
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void sharesStateThroughTable() {
+		store.put(1L, UserState.WAITING_FOR_RECEIPT);
+		assertEquals(Optional.of(UserState.WAITING_FOR_RECEIPT), store.get(1L));
+		
+		store.put(1L, UserState.WAITING_FOR_PRODUCT);
+		assertEquals(Optional.of(UserState.WAITING_FOR_PRODUCT), store.get(1L));
+		
+		store.remove(1L);
+		assertTrue(store.get(1L).isEmpty());
+	}
+	
+	@Test
+	void ignoresAndDeletesExpiredStates() {
+		store.put(2L, UserState.WAITING_FOR_RECEIPT);
+		store.put(3L, UserState.WAITING_FOR_PRODUCT);
+		jdbcTemplate.update("UPDATE user_sessions SET expires_at = TIMESTAMPADD(MINUTE, -1, CURRENT_TIMESTAMP) "
+				+ "WHERE chat_id = 2");
+		
+		assertTrue(store.get(2L).isEmpty());
+		assertEquals(1, store.deleteExpired());
+		assertEquals(Optional.of(UserState.WAITING_FOR_PRODUCT), store.get(3L));
+	}
+}
@@ -0,0 +1,52 @@
+package receipt_scanner_bot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+// Слияние purchase_details и product_stats в line_items
+class LineItemsMigrationTest {
+
+	@Test
+	void pairsPricesWithPurchases() {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource(
+				"jdbc:h2:mem:line_items_migration;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+		JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+
+		Flyway.configure().dataSource(dataSource).target("5").load().migrate();
+		jdbc.update("INSERT INTO product_names (id, name, normalized_name) VALUES (1, 'Молоко', 'молоко'), (2, 'Бананы', 'бананы')");
+		// Молоко дважды за день в одном чате, у второй покупки чата 2 нет строки цены,
+		// у цены в чате 3 нет покупки
+		jdbc.update("INSERT INTO purchase_details (chat_id, product_id, quantity, price, purchase_date, is_weight_product) "
+				+ "VALUES (1, 1, 2, 179.98, '2024-03-11', 0), (1, 2, 0.836, 108.60, '2024-03-11', 1), "
+				+ "(1, 1, 1, 91.50, '2024-03-11', 0), (2, 1, 2, 95.00, '2024-03-15', 0)");
+		jdbc.update("INSERT INTO product_stats (chat_id, product_id, unit_price, stat_date) "
+				+ "VALUES (1, 1, 89.99, '2024-03-11'), (1, 2, 129.90, '2024-03-11'), (1, 1, 91.50, '2024-03-11'), "
+				+ "(3, 1, 99.00, '2024-03-20')");
+
+		Flyway.configure().dataSource(dataSource).load().migrate();
+
+		List<Map<String, Object>> items = jdbc.queryForList(
+				"SELECT chat_id, unit_price, total_price FROM line_items ORDER BY id");
+		assertEquals(4, items.size());
+		assertPrice("89.99", items.get(0).get("unit_price"));
+		assertPrice("179.98", items.get(0).get("total_price"));
+		assertPrice("129.90", items.get(1).get("unit_price"));
+		assertPrice("91.50", items.get(2).get("unit_price"));
+		assertPrice("47.50", items.get(3).get("unit_price"));
+		assertEquals(0, jdbc.queryForObject(
+				"SELECT COUNT(*) FROM information_schema.tables WHERE table_name IN ('product_stats', 'purchase_details')",
+				Integer.class));
+	}
+
+	private static void assertPrice(String expected, Object actual) {
+		assertEquals(0, new BigDecimal(expected).compareTo((BigDecimal) actual), expected + " != " + actual);
+	}
+}
@@ -0,0 +1,172 @@
+package receipt_scanner_bot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import okhttp3.mockwebserver.MockWebServer;
+
+/**
+ * Нагрузочный прогон без сети: приложение целиком (long polling, H2), Telegram и proverkacheka подменены.
+ * Тысячи чатов шлют вперемешку /stats, /receipt_upload с QR-кодом и /product_stats с названием,
+ * в каждом чате следующий апдейт уходит только после ответа на предыдущий.
+ * В обычной сборке не запускается, только так:
+ *   mvn test -Pload -Dload.rate=300 -Dload.duration=60s -Dload.fns.latency=200ms
+ * Таблица печатается в консоль и в target/load-report.txt.
+ * Пул обработчиков апдейтов зависит от числа ядер (bot.dispatcher.threads), поэтому
+ * сравнивать стоит прогоны на одной и той же машине.
+ */
+@Tag("load")
+@SpringBootTest(properties = {"bot.mode=polling", "bot.token=LOAD",
+		// Лимиты Bot API на отправку здесь не проверяются, иначе прогон упрётся в 30 сообщений в секунду
+		"outbound.global-rate=100000", "outbound.chat-rate=1000", "outbound.chat-burst=1000",
+		"logging.level.okhttp3=WARN"})
+@ActiveProfiles("h2")
+class LoadHarnessTest {
+	
+	private static final int CHATS = Integer.getInteger("load.chats", 2000);
+	private static final double RATE = Double.parseDouble(System.getProperty("load.rate", "200"));
+	private static final Duration WARMUP = duration("load.warmup", "5s");
+	private static final Duration DURATION = duration("load.duration", "30s");
+	// Сколько после замера ждать ответы на уже отправленные апдейты
+	private static final Duration DRAIN_TIMEOUT = duration("load.drain-timeout", "30s");
+	
+	private static final long FIRST_CHAT_ID = 1_000_000L;
+	
+	private record Step(String text, String command) {}
+	
+	private static final LoadReport report = new LoadReport();
+	private static final Queue<Long> idleChats = new ConcurrentLinkedQueue<>();
+	private static final Map<Long, ChatScript> scripts = new ConcurrentHashMap<>();
+	private static final AtomicLong receiptNumbers = new AtomicLong();
+	
+	private static final FakeTelegramApi telegramApi = new FakeTelegramApi(report, idleChats::add);
+	private static final FakeProverkacheka fnsApi = new FakeProverkacheka(
+			duration("load.fns.latency", "100ms"),
+			Double.parseDouble(System.getProperty("load.fns.error-rate", "0.01")));
+	private static final MockWebServer telegram = new MockWebServer();
+	private static final MockWebServer fns = new MockWebServer();
+	
+	@DynamicPropertySource
+	static void standIns(DynamicPropertyRegistry registry) {
+		telegram.setDispatcher(telegramApi);
+		fns.setDispatcher(fnsApi);
+		registry.add("bot.api-url", () -> telegram.url("/bot").toString());
+		registry.add("fns.url", () -> fns.url("/api/v1/check/get").toString());
+	}
+	
+	@AfterAll
+	static void stopStandIns() throws IOException {
+		telegram.shutdown();
+		fns.shutdown();
+	}
+
+	@Test
+	void mixedTraffic() throws Exception {
+		for (long chatId = FIRST_CHAT_ID; chatId < FIRST_CHAT_ID + CHATS; chatId++) {
+			scripts.put(chatId, new ChatScript(new Random(chatId)));
+			idleChats.add(chatId);
+		}
+		
+		drive(WARMUP);
+		report.reset();
+		long skipped = drive(DURATION);
+		
+		long drainUntil = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+		while (telegramApi.getAwaitingReply() > 0 && System.nanoTime() < drainUntil) {
+			Thread.sleep(50);
+		}
+		
+		String result = String.format("Чатов: %d, целевая нагрузка: %.0f апд/с, прогрев %s, замер %s%n",
+				CHATS, RATE, WARMUP, DURATION)
+				+ report.format()
+				+ String.format("Не отправлено (все чаты ждали ответа): %d%n", skipped)
+				+ String.format("proverkacheka: запросов %d, из них 503: %d%n", fnsApi.getRequests(), fnsApi.getErrors());
+		System.out.println(result);
+		Files.writeString(Path.of("target", "load-report.txt"), result, StandardCharsets.UTF_8);
+		
+		assertTrue(report.total() > 0);
+		assertEquals(0, telegramApi.getAwaitingReply(), "updates left without a reply");
+		assertEquals(0, telegramApi.getUnexpectedReplies());
+	}
+	
+	// Открытая модель: апдейты уходят по расписанию RATE, а не по мере ответов
+	private long drive(Duration phase) throws InterruptedException {
+		long start = System.nanoTime();
+		long end = start + phase.toNanos();
+		long issued = 0;
+		long skipped = 0;
+		long now;
+		while ((now = System.nanoTime()) < end) {
+			long due = (long) ((now - start) / 1e9 * RATE);
+			for (; issued < due; issued++) {
+				Long chatId = idleChats.poll();
+				if (chatId == null) {
+					skipped += due - issued;
+					issued = due;
+					break;
+				}
+				Step step = scripts.get(chatId).next();
+				telegramApi.sendUpdate(chatId, step.text(), step.command());
+			}
+			Thread.sleep(1);
+		}
+		return skipped;
+	}
+	
+	private static Duration duration(String property, String defaultValue) {
+		return DurationStyle.detectAndParse(System.getProperty(property, defaultValue));
+	}
+	
+	// Сценарий одного чата: после /receipt_upload и /product_stats следующим сообщением идёт ответ на вопрос бота
+	private static class ChatScript {
+		
+		private final Random random;
+		private Step followUp;
+		
+		ChatScript(Random random) {
+			this.random = random;
+		}
+		
+		Step next() {
+			if (followUp != null) {
+				Step step = followUp;
+				followUp = null;
+				return step;
+			}
+			int dice = random.nextInt(100);
+			if (dice < 40) {
+				return new Step("/stats", "stats");
+			}
+			if (dice < 70) {
+				long number = receiptNumbers.incrementAndGet();
+				followUp = new Step("t=20240315T1842&s=100.00&fn=7284440500123456&i=" + number
+						+ "&fp=" + number + "&n=1", "receipt_qr");
+				return new Step("/receipt_upload", "receipt_upload");
+			}
+			followUp = new Step(FakeProverkacheka.PRODUCTS.get(random.nextInt(FakeProverkacheka.PRODUCTS.size())),
+					"product_name");
+			return new Step("/product_stats", "product_stats");
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package receipt_scanner_bot;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Задержки ответов по командам нагрузочного прогона и итоговая таблица:
+ * число ответов, пропускная способность и перцентили.
+ */
+class LoadReport {
+	
+	private final Map<String, long[]> latencies = new TreeMap<>();
+	private final Map<String, Integer> counts = new TreeMap<>();
+	private long startedAt = System.nanoTime();
+	
+	synchronized void record(String command, long latencyNanos) {
+		int count = counts.getOrDefault(command, 0);
+		long[] values = latencies.computeIfAbsent(command, c -> new long[1024]);
+		if (count == values.length) {
+			values = Arrays.copyOf(values, count * 2);
+			latencies.put(command, values);
+		}
+		values[count] = latencyNanos;
+		counts.put(command, count + 1);
+	}
+	
+	// Начало замера после прогрева: всё, что записано до этого, отбрасывается
+	synchronized void reset() {
+		latencies.clear();
+		counts.clear();
+		startedAt = System.nanoTime();
+	}
+	
+	synchronized long total() {
+		return counts.values().stream().mapToLong(Integer::longValue).sum();
+	}
+	
+	synchronized String format() {
+		double seconds = Duration.ofNanos(System.nanoTime() - startedAt).toMillis() / 1000.0;
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%-16s %8s %8s %9s %9s %9s %9s%n",
+				"command", "count", "rps", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+		for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+			int count = entry.getValue();
+			long[] sorted = Arrays.copyOf(latencies.get(entry.getKey()), count);
+			Arrays.sort(sorted);
+			sb.append(String.format("%-16s %8d %8.1f %9.1f %9.1f %9.1f %9.1f%n",
+					entry.getKey(), count, count / seconds,
+					millis(percentile(sorted, 0.50)), millis(percentile(sorted, 0.95)),
+					millis(percentile(sorted, 0.99)), millis(sorted[count - 1])));
+		}
+		sb.append(String.format("%-16s %8d %8.1f за %.1f с%n", "всего", total(), total() / seconds, seconds));
+		return sb.toString();
+	}
+	
+	private static long percentile(long[] sorted, double quantile) {
+		int index = (int) Math.ceil(quantile * sorted.length) - 1;
+		return sorted[Math.max(0, index)];
+	}
+	
+	private static double millis(long nanos) {
+		return nanos / 1_000_000.0;
+	}
+}
@@ -0,0 +1,47 @@
+package receipt_scanner_bot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import org.junit.jupiter.api.Test;
+
+class MoneyTest {
+
+	@Test
+	void roundsLikeBigDecimalHalfUp() {
+		long[][] cases = {{5, 2}, {-5, 2}, {7, 3}, {-7, 3}, {8, 3}, {10_493, 7}, {-45, 10_000}, {1, -2}};
+		for (long[] c : cases) {
+			long expected = BigDecimal.valueOf(c[0])
+					.divide(BigDecimal.valueOf(c[1]), 0, RoundingMode.HALF_UP).longValueExact();
+			assertEquals(expected, Money.divideHalfUp(c[0], c[1]), c[0] + " / " + c[1]);
+		}
+	}
+
+	@Test
+	void multipliesByQuantity() {
+		assertEquals(Money.parse("314.65"), Money.parse("899.00").times(Quantity.ofMillis(350)));
+		assertEquals(Money.parse("0.01"), Money.parse("0.01").times(Quantity.ofMillis(500)));
+		assertEquals(Money.parse("94.00"), Money.parse("47.00").times(Quantity.ofUnits(2)));
+	}
+
+	@Test
+	void printsAndParsesPlainString() {
+		assertEquals("1234.50", Money.parse("1234.5").toPlainString());
+		assertEquals("0.05", Money.ofKopecks(5).toPlainString());
+		assertEquals("-0.05", Money.ofKopecks(-5).toPlainString());
+		assertEquals(new BigDecimal("999999999999.99").toPlainString(), Money.parse("999999999999.99").toPlainString());
+		assertThrows(NumberFormatException.class, () -> Money.parse("1.005"));
+		assertThrows(NumberFormatException.class, () -> Money.parse("abc"));
+	}
+
+	@Test
+	void convertsQuantityAtThreeDigits() {
+		assertEquals(Quantity.ofMillis(836), Quantity.of(new BigDecimal("0.836")));
+		assertEquals(Quantity.ofMillis(1_001), Quantity.of(new BigDecimal("1.0005")));
+		assertEquals(2, Quantity.ofMillis(2_999).wholeUnits());
+		assertEquals(new BigDecimal("2.036"), Quantity.ofMillis(2_036).toBigDecimal());
+	}
+}
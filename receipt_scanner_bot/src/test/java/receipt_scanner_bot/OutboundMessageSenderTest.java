@@ -0,0 +1,165 @@
+package receipt_scanner_bot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.ApiResponse;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class OutboundMessageSenderTest {
+	
+	private OutboundMessageSender sender;
+	
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		sender.shutdown();
+	}
+
+	@Test
+	void batchesRepliesQueuedWhileChatIsBusy() throws Exception {
+		CountDownLatch firstSent = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		List<SendMessage> sent = new CopyOnWriteArrayList<>();
+		sender = new OutboundMessageSender(message -> {
+			sent.add((SendMessage) message);
+			firstSent.countDown();
+			await(release);
+			return null;
+		}, 100, 100, 10, 100, 3, 2, new SimpleMeterRegistry());
+		
+		sender.send(1L, "первый");
+		assertTrue(firstSent.await(5, TimeUnit.SECONDS));
+		sender.send(1L, "второй");
+		sender.send(1L, "третий");
+		release.countDown();
+		
+		waitUntil(() -> sent.size() == 2);
+		assertEquals("первый", sent.get(0).getText());
+		assertEquals("второй\n\nтретий", sent.get(1).getText());
+		assertEquals("1", sent.get(1).getChatId());
+		waitUntil(() -> sender.getPending() == 0 && sender.getSent() == 2);
+	}
+	
+	@Test
+	void keepsMessagesWithKeyboardSeparate() throws Exception {
+		CountDownLatch firstSent = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		List<SendMessage> sent = new CopyOnWriteArrayList<>();
+		sender = new OutboundMessageSender(message -> {
+			sent.add((SendMessage) message);
+			firstSent.countDown();
+			await(release);
+			return null;
+		}, 100, 100, 10, 100, 3, 2, new SimpleMeterRegistry());
+		
+		sender.send(6L, "первый");
+		assertTrue(firstSent.await(5, TimeUnit.SECONDS));
+		var withKeyboard = new SendMessage("6", "страница");
+		withKeyboard.setReplyMarkup(new InlineKeyboardMarkup(List.of(List.of(
+				InlineKeyboardButton.builder().text("Далее").callbackData("stats:n:2:1.00:1").build()))));
+		sender.send(6L, withKeyboard);
+		sender.send(6L, "после");
+		release.countDown();
+		
+		waitUntil(() -> sent.size() == 3);
+		assertEquals(withKeyboard, sent.get(1));
+		assertEquals("после", sent.get(2).getText());
+	}
+	
+	@Test
+	void retriesAfterTooManyRequests() throws Exception {
+		ApiResponse<?> tooMany = new ObjectMapper().readValue(
+				"{\"ok\":false,\"error_code\":429,\"description\":\"Too Many Requests: retry after 1\","
+				+ "\"parameters\":{\"retry_after\":1}}", ApiResponse.class);
+		List<Long> attempts = new CopyOnWriteArrayList<>();
+		var registry = new SimpleMeterRegistry();
+		sender = new OutboundMessageSender(message -> {
+			attempts.add(System.nanoTime());
+			if (attempts.size() == 1) {
+				throw new TelegramApiRequestException("Error sending message", tooMany);
+			}
+			return null;
+		}, 100, 100, 10, 100, 3, 2, registry);
+		
+		sender.send(2L, "ответ");
+		
+		waitUntil(() -> sender.getSent() == 1);
+		assertEquals(2, attempts.size());
+		assertTrue(attempts.get(1) - attempts.get(0) >= TimeUnit.MILLISECONDS.toNanos(900));
+		assertEquals(1, sender.getRetried());
+		assertEquals(0, sender.getDropped());
+		assertEquals(1, registry.get("bot.messages.send").tags("method", "sendmessage", "outcome", "error").timer().count());
+		assertEquals(1, registry.get("bot.messages.send").tags("method", "sendmessage", "outcome", "success").timer().count());
+	}
+	
+	@Test
+	void dropsOverflowAndFailedMessages() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		sender = new OutboundMessageSender(message -> {
+			await(release);
+			if (((SendMessage) message).getText().contains("сбой")) {
+				throw new TelegramApiRequestException("Bad Request: chat not found");
+			}
+			return null;
+		}, 100, 100, 10, 3, 3, 1, new SimpleMeterRegistry());
+		
+		// Пока чат занят отправкой, новые ответы копятся в очереди
+		sender.send(3L, "сбой");
+		waitUntil(() -> sender.getPending() == 0);
+		for (int i = 0; i < 5; i++) {
+			sender.send(3L, "сообщение " + i);
+		}
+		
+		assertEquals(2, sender.getDropped());
+		assertEquals(3, sender.getPending());
+		release.countDown();
+		waitUntil(() -> sender.getPending() == 0 && sender.getSent() == 1);
+		assertEquals(3, sender.getDropped());
+	}
+	
+	@Test
+	void respectsPerChatRate() throws Exception {
+		List<Long> sentAt = new CopyOnWriteArrayList<>();
+		sender = new OutboundMessageSender(message -> sentAt.add(System.nanoTime()), 100, 5, 1, 100, 3, 2,
+				new SimpleMeterRegistry());
+		
+		// Отправляем по одному, чтобы ответы не склеились
+		for (int i = 0; i < 3; i++) {
+			sender.send(5L, "ответ " + i);
+			int expected = i + 1;
+			waitUntil(() -> sentAt.size() == expected);
+		}
+		
+		assertTrue(sentAt.get(2) - sentAt.get(0) >= TimeUnit.MILLISECONDS.toNanos(350));
+	}
+	
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private static void waitUntil(java.util.function.BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.nanoTime() < deadline, "condition not met in time");
+			Thread.sleep(10);
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package receipt_scanner_bot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+
+class ParserTest {
+	
+	private final Parser parser = new Parser();
+
+	@Test
+	void parsesItemsListedBeforeDateTime() {
+		var json = """
+				{"code":1,"first":0,
+				 "data":{"json":{"user":"ООО Ромашка","items":[
+				   {"name":"Молоко ПРОСТОКВАШИНО паст. 3,2% 930мл","price":8999,"quantity":2,"sum":17998,"nds":2},
+				   {"name":"Бананы","price":12990,"quantity":0.836,"sum":10860,"productType":1}
+				 ],"totalSum":28858,"dateTime":"2024-03-15T18:42:00"},
+				 "html":"<table><tr><td>...</td></tr></table>"},
+				 "request":{"qrurl":"","qrfile":"","qrraw":"t=20240315T1842","manual":{"fn":"1"}}}
+				""";
+		
+		var products = parser.parse(json);
+		
+		assertEquals(2, products.size());
+		var milk = products.get(0);
+		assertEquals("Молоко ПРОСТОКВАШИНО паст. 3,2% 930мл", milk.getName());
+		assertEquals(Money.parse("89.99"), milk.getPricePerUnit());
+		assertEquals(Money.parse("179.98"), milk.getTotalPrice());
+		assertEquals(LocalDate.of(2024, 3, 15), milk.getDate());
+		assertFalse(milk.getIsWeightProduct());
+		
+		var bananas = products.get(1);
+		assertEquals(Quantity.ofMillis(836), bananas.getQuantity());
+		assertEquals(Money.parse("108.60"), bananas.getTotalPrice());
+		assertTrue(bananas.getIsWeightProduct());
+	}
+	
+	@Test
+	void parsesItemsListedAfterDateTime() {
+		var json = """
+				{"data":{"json":{"dateTime":"2024-01-02T09:05:11","items":[
+				  {"name":"Хлеб","price":4500,"quantity":1,"sum":4500}]}}}
+				""";
+		
+		var products = parser.parse(json);
+		
+		assertEquals(1, products.size());
+		assertEquals(LocalDate.of(2024, 1, 2), products.get(0).getDate());
+	}
+	
+	@Test
+	void reportsServerError() {
+		var error = assertThrows(IllegalArgumentException.class,
+				() -> parser.parse("{\"code\":0,\"data\":\"Чек некорректен\"}"));
+		assertEquals("Сервер вернул ошибку: Чек некорректен", error.getMessage());
+	}
+	
+	@Test
+	void rejectsBrokenResponses() {
+		assertThrows(IllegalArgumentException.class, () -> parser.parse("<html>502</html>"));
+		assertThrows(IllegalArgumentException.class, () -> parser.parse("{\"code\":1}"));
+		assertThrows(IllegalArgumentException.class,
+				() -> parser.parse("{\"data\":{\"json\":{\"items\":[]}}}"));
+		assertThrows(IllegalArgumentException.class,
+				() -> parser.parse("{\"data\":{\"json\":{\"dateTime\":\"2024-01-02T09:05:11\",\"items\":[{\"name\":\"Хлеб\"}]}}}"));
+	}
+	
+	@Test
+	void extractsFiscalKeyFromSavedResponse() {
+		var json = """
+				{"code":1,"data":{"json":{"fiscalDriveNumber":"7284440500123456","fiscalDocumentNumber":12345,
+				 "fiscalSign":3456789012,"operationType":1,"totalSum":123450,"dateTime":"2024-03-15T18:42:59",
+				 "items":[{"name":"Хлеб","price":123450,"quantity":1,"sum":123450}]}}}
+				""";
+		
+		var receipt = parser.parseReceipt(json);
+		
+		assertEquals(1, receipt.products().size());
+		assertEquals(new ReceiptQr.FiscalKey("7284440500123456", 12345, 3456789012L), receipt.qr().fiscalKey());
+		assertEquals(Money.parse("1234.50"), receipt.qr().sum());
+	}
+	
+	@Test
+	void leavesFiscalKeyEmptyWhenResponseLacksIt() {
+		var json = """
+				{"data":{"json":{"dateTime":"2024-01-02T09:05:11","items":[
+				  {"name":"Хлеб","price":4500,"quantity":1,"sum":4500}]}}}
+				""";
+		
+		assertNull(parser.parseReceipt(json).qr());
+	}
+}
@@ -0,0 +1,49 @@
+package receipt_scanner_bot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+// Перенос существующих строк со строковыми названиями на product_id
+class ProductDictionaryMigrationTest {
+
+	@Test
+	void movesFactTablesToProductIds() {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource(
+				"jdbc:h2:mem:dictionary_migration;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+		JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+
+		Flyway.configure().dataSource(dataSource).target("2").load().migrate();
+		jdbc.update("INSERT INTO purchase_details (chat_id, product_name, quantity, price, purchase_date, is_weight_product) "
+				+ "VALUES (1, 'Молоко', 2, 179.98, '2024-03-11', 0), (1, 'Бананы', 0.836, 108.60, '2024-03-11', 1), "
+				+ "(2, 'Молоко', 1, 95.00, '2024-03-15', 0), (2, 'МОЛОКО', 1, 97.00, '2024-03-16', 0)");
+		jdbc.update("INSERT INTO product_stats (chat_id, product_name, unit_price, stat_date) "
+				+ "VALUES (1, 'Молоко', 89.99, '2024-03-11'), (1, 'Бананы', 129.90, '2024-03-11'), "
+				+ "(2, 'Молоко', 95.00, '2024-03-15'), (2, 'МОЛОКО', 97.00, '2024-03-16')");
+
+		Flyway.configure().dataSource(dataSource).target("3").load().migrate();
+
+		// Написания, различающиеся регистром, остаются отдельными записями с общим normalized_name
+		assertEquals(3, jdbc.queryForObject("SELECT COUNT(*) FROM product_names", Integer.class));
+		assertEquals(List.of("молоко", "молоко"), jdbc.queryForList(
+				"SELECT normalized_name FROM product_names WHERE name IN ('Молоко', 'МОЛОКО')", String.class));
+		assertEquals(List.of("Молоко", "Бананы", "Молоко", "МОЛОКО"), jdbc.queryForList(
+				"SELECT n.name FROM product_stats s JOIN product_names n ON n.id = s.product_id ORDER BY s.id",
+				String.class));
+
+		List<Map<String, Object>> totals = jdbc.queryForList(
+				"SELECT t.chat_id, n.name, t.total_amount, t.purchase_count FROM product_totals t "
+				+ "JOIN product_names n ON n.id = t.product_id ORDER BY t.chat_id, t.total_amount DESC");
+		assertEquals(4, totals.size());
+		assertEquals("Молоко", totals.get(0).get("name"));
+		assertEquals(0, new BigDecimal("179.98").compareTo((BigDecimal) totals.get(0).get("total_amount")));
+		assertEquals(1, ((Number) totals.get(2).get("purchase_count")).intValue());
+	}
+}
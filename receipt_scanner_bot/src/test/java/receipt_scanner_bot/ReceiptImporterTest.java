@@ -0,0 +1,206 @@
+package receipt_scanner_bot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+// Импорт целиком: proverkacheka и Bot API подменены MockWebServer, запись в H2
+@SpringBootTest(properties = {"bot.mode=webhook", "bot.webhook.secret=test-secret", "bot.token=TEST",
+		"import.write-batch-size=2", "import.progress-interval=50ms"})
+@ActiveProfiles("h2")
+class ReceiptImporterTest {
+	
+	private static final long CHAT_ID = 777L;
+	// В этом чате обновление кэшей после записи падает
+	private static final long BROKEN_CACHE_CHAT_ID = 778L;
+	private static final long BROKEN_PARSE_CHAT_ID = 779L;
+	
+	private static final String MILK_QR = "t=20240315T1842&s=179.98&fn=7284440500123456&i=1&fp=1001&n=1";
+	private static final String BREAD_QR = "t=20240316T0905&s=45.00&fn=7284440500123456&i=2&fp=1002&n=1";
+	// Разбор этого ответа падает не с IllegalArgumentException
+	private static final String BROKEN_PARSE_QR = "t=20240318T1000&s=10.00&fn=7284440500123456&i=4&fp=1004&n=1";
+	
+	private static final MockWebServer telegram = new MockWebServer();
+	private static final MockWebServer fns = new MockWebServer();
+	
+	@Autowired
+	private ReceiptImporter receiptImporter;
+	
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+	
+	@DynamicPropertySource
+	static void mockServers(DynamicPropertyRegistry registry) {
+		telegram.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				return new MockResponse()
+						.setHeader("Content-Type", "application/json")
+						.setBody("{\"ok\":true,\"result\":{\"message_id\":31,\"date\":1710150001,"
+								+ "\"chat\":{\"id\":777,\"type\":\"private\"},\"text\":\"ok\"}}");
+			}
+		});
+		fns.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				String body = request.getBody().readUtf8();
+				if (body.contains(MILK_QR)) {
+					return receipt("2024-03-15T18:42:00", "Молоко", 8999, 2, 17998);
+				}
+				if (body.contains(BREAD_QR)) {
+					return receipt("2024-03-16T09:05:00", "Хлеб", 4500, 1, 4500);
+				}
+				if (body.contains(BROKEN_PARSE_QR)) {
+					return new MockResponse().setBody("{\"broken\":true}");
+				}
+				return new MockResponse().setBody("{\"code\":0,\"data\":\"Чек некорректен\"}");
+			}
+		});
+		registry.add("bot.api-url", () -> telegram.url("/bot").toString());
+		registry.add("fns.url", () -> fns.url("/api/v1/check/get").toString());
+	}
+	
+	@TestConfiguration
+	static class BrokenCacheConfig {
+		@Bean
+		@Primary
+		ProductNameIndex brokenProductNameIndex(LineItemRepository lineItemRepository) {
+			return new ProductNameIndex(lineItemRepository, 10, Duration.ofMinutes(1)) {
+				@Override
+				public void addNames(Long chatId, Collection<String> names) {
+					if (chatId == BROKEN_CACHE_CHAT_ID) {
+						throw new IllegalStateException("index is broken");
+					}
+					super.addNames(chatId, names);
+				}
+			};
+		}
+		
+		@Bean
+		@Primary
+		Parser brokenParser() {
+			return new Parser() {
+				@Override
+				List<Product> parse(String jsonToParse) {
+					if (jsonToParse.contains("\"broken\"")) {
+						throw new IllegalStateException("parser is broken");
+					}
+					return super.parse(jsonToParse);
+				}
+			};
+		}
+	}
+	
+	@AfterAll
+	static void stopServers() throws IOException {
+		telegram.shutdown();
+		fns.shutdown();
+	}
+
+	@Test
+	void importsDocumentAndReportsProgressInOneMessage() throws Exception {
+		String savedResponse = "{\"code\":1,\"data\":{\"json\":{\"fiscalDriveNumber\":\"7284440500123456\","
+				+ "\"fiscalDocumentNumber\":3,\"fiscalSign\":1003,\"operationType\":1,\"totalSum\":9900,"
+				+ "\"dateTime\":\"2024-03-17T12:00:00\","
+				+ "\"items\":[{\"name\":\"Сыр\",\"price\":9900,\"quantity\":1,\"sum\":9900}]}}}";
+		var sources = ImportDocument.parse("[\"" + MILK_QR + "\", \"" + BREAD_QR + "\", \"" + MILK_QR + "\", "
+				+ "\"не QR-код\", " + savedResponse + "]");
+		
+		var result = receiptImporter.start(CHAT_ID, sources).orElseThrow().get(10, TimeUnit.SECONDS);
+		
+		assertEquals(new ReceiptImporter.ImportResult(5, 3, 1, 1), result);
+		assertEquals(3, jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM receipts WHERE chat_id = ?", Integer.class, CHAT_ID));
+		
+		// Первое сообщение отправляется, дальше оно только редактируется
+		RecordedRequest first = telegram.takeRequest(5, TimeUnit.SECONDS);
+		assertNotNull(first);
+		assertEquals("/botTEST/sendmessage", first.getPath());
+		String summary = null;
+		RecordedRequest request;
+		while ((request = telegram.takeRequest(5, TimeUnit.SECONDS)) != null) {
+			assertEquals("/botTEST/editmessagetext", request.getPath());
+			String body = request.getBody().readUtf8();
+			if (body.contains("Импорт завершён")) {
+				summary = body;
+				break;
+			}
+		}
+		assertNotNull(summary);
+		assertTrue(summary.contains("\"message_id\":31"), summary);
+		assertTrue(summary.contains("сохранено: 3"), summary);
+		
+		// Повторный импорт не обращается к proverkacheka за уже загруженными чеками
+		int fetched = fns.getRequestCount();
+		var again = receiptImporter.start(CHAT_ID, List.of(ImportDocument.Source.qr(MILK_QR)))
+				.orElseThrow().get(10, TimeUnit.SECONDS);
+		assertEquals(new ReceiptImporter.ImportResult(1, 0, 1, 0), again);
+		assertEquals(fetched, fns.getRequestCount());
+	}
+	
+	@Test
+	void cacheFailureAfterWriteDoesNotLockImport() throws Exception {
+		var sources = List.of(ImportDocument.Source.qr(MILK_QR), ImportDocument.Source.qr(BREAD_QR));
+		
+		var result = receiptImporter.start(BROKEN_CACHE_CHAT_ID, sources).orElseThrow().get(10, TimeUnit.SECONDS);
+		assertEquals(new ReceiptImporter.ImportResult(2, 2, 0, 0), result);
+		awaitSummary(BROKEN_CACHE_CHAT_ID);
+		
+		// Чат не остался занят: следующий импорт запускается
+		var again = receiptImporter.start(BROKEN_CACHE_CHAT_ID, List.of(ImportDocument.Source.qr(MILK_QR)))
+				.orElseThrow().get(10, TimeUnit.SECONDS);
+		assertEquals(new ReceiptImporter.ImportResult(1, 0, 1, 0), again);
+		awaitSummary(BROKEN_CACHE_CHAT_ID);
+	}
+	
+	@Test
+	void unexpectedParseFailureCountsAsFailedReceipt() throws Exception {
+		var sources = List.of(ImportDocument.Source.qr(BROKEN_PARSE_QR), ImportDocument.Source.qr(BREAD_QR));
+		
+		var result = receiptImporter.start(BROKEN_PARSE_CHAT_ID, sources).orElseThrow().get(10, TimeUnit.SECONDS);
+		
+		assertEquals(new ReceiptImporter.ImportResult(2, 1, 0, 1), result);
+		awaitSummary(BROKEN_PARSE_CHAT_ID);
+	}
+	
+	// Итоговое сообщение импорта в чате; остальные запросы к Bot API пропускаются
+	private static void awaitSummary(long chatId) throws InterruptedException {
+		RecordedRequest request;
+		while ((request = telegram.takeRequest(5, TimeUnit.SECONDS)) != null) {
+			String body = request.getBody().readUtf8();
+			if (body.contains("Импорт завершён") && body.contains(String.valueOf(chatId))) {
+				return;
+			}
+		}
+		throw new AssertionError("No import summary for chat " + chatId);
+	}
+	
+	private static MockResponse receipt(String dateTime, String name, long price, int quantity, long sum) {
+		return new MockResponse().setBody("{\"code\":1,\"data\":{\"json\":{\"dateTime\":\"" + dateTime + "\","
+				+ "\"items\":[{\"name\":\"" + name + "\",\"price\":" + price + ",\"quantity\":" + quantity
+				+ ",\"sum\":" + sum + "}]}}}");
+	}
+}
@@ -0,0 +1,48 @@
+package receipt_scanner_bot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+
+class ReceiptQrTest {
+
+	@Test
+	void parsesQrString() {
+		var qr = ReceiptQr.parse(" t=20240315T1842&s=1234.50&fn=7284440500123456&i=12345&fp=3456789012&n=1\n");
+		
+		assertEquals("t=20240315T1842&s=1234.50&fn=7284440500123456&i=12345&fp=3456789012&n=1", qr.raw());
+		assertEquals(LocalDateTime.of(2024, 3, 15, 18, 42), qr.dateTime());
+		assertEquals(Money.parse("1234.50"), qr.sum());
+		assertEquals(new ReceiptQr.FiscalKey("7284440500123456", 12345, 3456789012L), qr.fiscalKey());
+		assertEquals(1, qr.operationType());
+	}
+	
+	@Test
+	void acceptsSecondsAndAnyParameterOrder() {
+		var qr = ReceiptQr.parse("fn=7284440500123456&i=1&fp=2&n=2&t=20240315T184259&s=10");
+		
+		assertEquals(LocalDateTime.of(2024, 3, 15, 18, 42, 59), qr.dateTime());
+		assertEquals(2, qr.operationType());
+	}
+	
+	@Test
+	void rejectsMalformedStrings() {
+		assertThrows(IllegalArgumentException.class, () -> ReceiptQr.parse(""));
+		assertThrows(IllegalArgumentException.class, () -> ReceiptQr.parse("привет"));
+		// нет fp
+		assertThrows(IllegalArgumentException.class,
+				() -> ReceiptQr.parse("t=20240315T1842&s=1.00&fn=7284440500123456&i=1&n=1"));
+		// короткий fn
+		assertThrows(IllegalArgumentException.class,
+				() -> ReceiptQr.parse("t=20240315T1842&s=1.00&fn=72844405&i=1&fp=2&n=1"));
+		// несуществующая дата
+		assertThrows(IllegalArgumentException.class,
+				() -> ReceiptQr.parse("t=20241345T1842&s=1.00&fn=7284440500123456&i=1&fp=2&n=1"));
+		// повтор параметра
+		assertThrows(IllegalArgumentException.class,
+				() -> ReceiptQr.parse("t=20240315T1842&s=1.00&s=2.00&fn=7284440500123456&i=1&fp=2&n=1"));
+	}
+}
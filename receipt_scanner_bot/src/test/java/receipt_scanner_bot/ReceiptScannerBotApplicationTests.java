@@ -2,8 +2,11 @@ package receipt_scanner_bot;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
 
-@SpringBootTest
+// Webhook без bot.webhook.url: контекст поднимается без обращений к Telegram
+@SpringBootTest(properties = {"bot.mode=webhook", "bot.webhook.secret=test-secret"})
+@ActiveProfiles("h2")
 class ReceiptScannerBotApplicationTests {
 
 	@Test
@@ -0,0 +1,115 @@
+package receipt_scanner_bot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Основная база и две реплики - отдельные базы H2, в каждой своя метка
+class ReplicaRoutingDataSourceTest {
+
+	private final SwitchableDataSource firstReplica = new SwitchableDataSource(database("replica_a"));
+	private final SwitchableDataSource secondReplica = new SwitchableDataSource(database("replica_b"));
+	private final ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(database("primary"),
+			List.of(firstReplica, secondReplica), 1, new SimpleMeterRegistry());
+
+	private final DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+	private final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+	private final TransactionTemplate readOnly = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+	private final TransactionTemplate readWrite = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+	@BeforeEach
+	void setUp() {
+		readOnly.setReadOnly(true);
+	}
+
+	@Test
+	void readOnlyTransactionsGoToReplicasInTurn() {
+		routing.checkHealth();
+
+		Set<String> seen = new HashSet<>();
+		for (int i = 0; i < 4; i++) {
+			seen.add(readOnly.execute(status -> marker()));
+		}
+
+		assertEquals(Set.of("replica_a", "replica_b"), seen);
+		assertEquals("primary", readWrite.execute(status -> marker()));
+		assertEquals("primary", marker());
+	}
+
+	@Test
+	void fallsBackToPrimaryWhileReplicasAreDown() {
+		// До первой проверки реплики не используются
+		assertEquals("primary", readOnly.execute(status -> marker()));
+
+		secondReplica.available = false;
+		routing.checkHealth();
+		assertEquals(1, routing.healthyReplicas());
+		assertEquals("replica_a", readOnly.execute(status -> marker()));
+
+		// Отказ при получении соединения выключает реплику, не дожидаясь проверки
+		firstReplica.available = false;
+		assertEquals("primary", readOnly.execute(status -> marker()));
+		assertEquals(0, routing.healthyReplicas());
+
+		firstReplica.available = true;
+		secondReplica.available = true;
+		routing.checkHealth();
+		assertEquals(2, routing.healthyReplicas());
+	}
+
+	@Test
+	void readsPrimaryRightAfterWrite() {
+		routing.checkHealth();
+
+		assertEquals("primary", ReplicaRoutingDataSource.onPrimary(() -> readOnly.execute(status -> marker())));
+		assertEquals("replica", readOnly.execute(status -> marker()).substring(0, 7));
+	}
+
+	private String marker() {
+		return jdbcTemplate.queryForObject("SELECT name FROM marker", String.class);
+	}
+
+	private static DataSource database(String name) {
+		var dataSource = new DriverManagerDataSource("jdbc:h2:mem:routing_" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+		var jdbc = new JdbcTemplate(dataSource);
+		jdbc.execute("CREATE TABLE IF NOT EXISTS marker (name VARCHAR(16))");
+		jdbc.update("DELETE FROM marker");
+		jdbc.update("INSERT INTO marker VALUES (?)", name);
+		return dataSource;
+	}
+
+	// Реплика, которую можно "выключить"
+	private static class SwitchableDataSource extends DelegatingDataSource {
+
+		volatile boolean available = true;
+
+		SwitchableDataSource(DataSource target) {
+			super(target);
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			if (!available) {
+				throw new SQLException("Replica is down");
+			}
+			return super.getConnection();
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package receipt_scanner_bot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class StatsCacheTest {
+	
+	private final StatsCache cache = new StatsCache(100, Duration.ofMinutes(5), Duration.ofSeconds(10));
+
+	@Test
+	void invalidatesOnlyTheUploadingChat() {
+		AtomicInteger loads = new AtomicInteger();
+		
+		cache.get(1L, "stats", () -> "chat 1 v" + loads.incrementAndGet());
+		cache.get(1L, "product:Молоко", () -> "milk v" + loads.incrementAndGet());
+		cache.get(2L, "stats", () -> "chat 2 v" + loads.incrementAndGet());
+		assertEquals("chat 1 v1", cache.get(1L, "stats", () -> "unexpected"));
+		
+		cache.invalidateChat(1L);
+		
+		assertEquals("chat 1 v4", cache.get(1L, "stats", () -> "chat 1 v" + loads.incrementAndGet()));
+		assertEquals("chat 2 v3", cache.get(2L, "stats", () -> "unexpected"));
+		assertEquals(2, cache.stats().hitCount());
+		assertEquals(4, cache.stats().missCount());
+	}
+	
+	// Импорт коммитит и сбрасывает кэш из своего потока, пока /stats ещё считает ответ по старым данным
+	@Test
+	void dropsAnswerLoadedBeforeConcurrentInvalidation() {
+		AtomicInteger loads = new AtomicInteger();
+		Thread importer = new Thread(() -> cache.invalidateChat(1L));
+		
+		String answer = cache.get(1L, "stats", () -> {
+			if (loads.incrementAndGet() == 1) {
+				importer.start();
+				join(importer);
+				return "before import";
+			}
+			return "after import";
+		});
+		
+		assertEquals("after import", answer);
+		assertEquals("after import", cache.get(1L, "stats", () -> "unexpected"));
+		assertEquals(2, loads.get());
+	}
+	
+	private static void join(Thread thread) {
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
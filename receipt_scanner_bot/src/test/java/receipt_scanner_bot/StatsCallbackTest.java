@@ -0,0 +1,35 @@
+package receipt_scanner_bot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import receipt_scanner_bot.dto.StatsPageDTO;
+
+class StatsCallbackTest {
+
+	@Test
+	void roundTripsWithinCallbackDataLimit() {
+		var callback = new StatsCallback(true, 99999,
+				new StatsPageDTO.Cursor(Money.parse("999999999999.99"), Integer.MAX_VALUE));
+
+		String data = callback.encode();
+
+		assertEquals("stats:n:99999:999999999999.99:2147483647", data);
+		assertTrue(data.getBytes(StandardCharsets.UTF_8).length <= 64);
+		assertEquals(callback, StatsCallback.parse(data).orElseThrow());
+	}
+
+	@Test
+	void ignoresForeignAndBrokenData() {
+		assertTrue(StatsCallback.parse(null).isEmpty());
+		assertTrue(StatsCallback.parse("other:n:1:1.00:1").isEmpty());
+		assertTrue(StatsCallback.parse("stats:x:2:1.00:1").isEmpty());
+		assertTrue(StatsCallback.parse("stats:n:2:abc:1").isEmpty());
+		assertTrue(StatsCallback.parse("stats:p:0:1.00:1").isEmpty());
+		assertTrue(StatsCallback.parse("stats:n:2:1.00").isEmpty());
+	}
+}
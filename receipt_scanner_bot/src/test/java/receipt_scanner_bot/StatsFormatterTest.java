@@ -0,0 +1,322 @@
+package receipt_scanner_bot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import receipt_scanner_bot.dto.MonthlySpendingDTO;
+import receipt_scanner_bot.dto.PriceHistoryDTO;
+import receipt_scanner_bot.dto.ProductDetailStatsDTO;
+import receipt_scanner_bot.dto.ProductStatsDTO;
+import receipt_scanner_bot.dto.StatsPageDTO;
+import receipt_scanner_bot.dto.TrendDTO;
+
+// Тексты MessageWriter сверяются с прежней реализацией на String.format поверх BigDecimal
+class StatsFormatterTest {
+
+	private static final String[] WORDS = {"Молоко", "Хлеб", "ПЕЛЬМЕНИ", "3,2%", "0.9л", "", "х"};
+	private static final String[] SPACES = {" ", "  ", "\t", "\n", " \r\n", "\u00A0", "\u000B"};
+
+	private final StatsFormatter formatter = new StatsFormatter();
+	private final Random random = new Random(42);
+
+	@Test
+	void allProductsStatsMatchLegacyFormatting() {
+		for (int run = 0; run < 200; run++) {
+			List<ProductStatsDTO> stats = new ArrayList<>();
+			for (int i = 0, n = 1 + random.nextInt(30); i < n; i++) {
+				boolean weight = random.nextBoolean();
+				stats.add(new ProductStatsDTO(name(), weight ? quantity() : Quantity.ofUnits(random.nextInt(100)), money(), weight));
+			}
+
+			assertEquals(Legacy.formatAllProductsStats(stats), formatter.formatAllProductsStats(stats));
+		}
+	}
+
+	@Test
+	void statsPageMatchesLegacyFormatting() {
+		for (int run = 0; run < 200; run++) {
+			List<ProductStatsDTO> stats = new ArrayList<>();
+			for (int i = 0, n = 1 + random.nextInt(30); i < n; i++) {
+				boolean weight = random.nextBoolean();
+				stats.add(new ProductStatsDTO(name(), weight ? quantity() : Quantity.ofUnits(random.nextInt(100)), money(), weight));
+			}
+			StatsPageDTO page = new StatsPageDTO(stats, 1 + random.nextInt(5), stats.size(), null, null);
+
+			assertEquals(Legacy.formatStatsPage(page), formatter.formatStatsPage(page));
+		}
+	}
+
+	@Test
+	void productDetailStatsMatchLegacyFormatting() {
+		for (int run = 0; run < 200; run++) {
+			List<PriceHistoryDTO> history = new ArrayList<>();
+			for (int i = 0, n = random.nextInt(8); i < n; i++) {
+				boolean compared = random.nextInt(4) != 0;
+				history.add(new PriceHistoryDTO(date(), money(), compared ? money() : null, compared ? units() : 0));
+			}
+			ProductDetailStatsDTO stats = new ProductDetailStatsDTO(name(), money(), money(), money(), money(), trend(),
+					random.nextInt(10_000), date(), date(), history);
+
+			assertEquals(Legacy.formatProductDetailStats(stats), formatter.formatProductDetailStats(stats));
+		}
+	}
+
+	@Test
+	void monthlySpendingMatchesLegacyFormatting() {
+		for (int run = 0; run < 200; run++) {
+			List<MonthlySpendingDTO> months = new ArrayList<>();
+			YearMonth month = YearMonth.from(date());
+			for (int i = 0, n = 1 + random.nextInt(12); i < n; i++) {
+				boolean compared = i > 0 && random.nextInt(4) != 0;
+				months.add(new MonthlySpendingDTO(month.plusMonths(i), money(), 1 + random.nextInt(100),
+						compared ? money() : null, compared ? units() : 0));
+			}
+
+			assertEquals(Legacy.formatMonthlySpending(months), formatter.formatMonthlySpending(months));
+		}
+	}
+
+	@Test
+	void importProgressMatchesLegacyFormatting() {
+		for (int run = 0; run < 200; run++) {
+			int total = random.nextInt(2_000);
+			int saved = random.nextInt(total + 1);
+			int duplicates = random.nextInt(total - saved + 1);
+			int failed = total - saved - duplicates;
+			int processed = random.nextInt(total + 1);
+
+			assertEquals(String.format("⏳ Импорт чеков: %d из %d%n" +
+					"💾 сохранено: %d, ⚠️ уже были загружены: %d, ❌ с ошибками: %d",
+					processed, total, saved, duplicates, failed),
+					formatter.formatImportProgress(processed, total, saved, duplicates, failed));
+			assertEquals(String.format("✅ Импорт завершён: %d из %d%n" +
+					"💾 сохранено: %d, ⚠️ уже были загружены: %d, ❌ с ошибками: %d",
+					total, total, saved, duplicates, failed),
+					formatter.formatImportFinished(new ReceiptImporter.ImportResult(total, saved, duplicates, failed)));
+		}
+	}
+
+	@Test
+	void productsMatchLegacyFormatting() {
+		for (int run = 0; run < 200; run++) {
+			List<Product> products = new ArrayList<>();
+			for (int i = 0, n = 1 + random.nextInt(20); i < n; i++) {
+				Quantity quantity = random.nextBoolean() ? quantity() : Quantity.ofUnits(1 + random.nextInt(9));
+				products.add(new Product(name(), quantity, money(), money(), date()));
+			}
+
+			assertEquals(Legacy.formatProducts(products), formatter.formatProducts(products));
+		}
+	}
+
+	@Test
+	void roundsHalfUpLikeFormatter() {
+		for (long millis : new long[] {0, 5, 15, 125, 500, 1_005, 2_675, 2_500, -125, -400, -2_500,
+				999_999, 123_456_789_012_995L}) {
+			Quantity quantity = Quantity.ofMillis(millis);
+			for (int digits = 0; digits <= 3; digits++) {
+				assertEquals(String.format("%." + digits + "f", quantity.toBigDecimal().doubleValue()),
+						new MessageWriter(16).quantity(quantity, digits).toString(), millis + " digits " + digits);
+			}
+		}
+		for (long kopecks : new long[] {0, 1, 5, 99, 100, 105, -1, -105, 99_999_999_999_999L}) {
+			Money money = Money.ofKopecks(kopecks);
+			assertEquals(String.format("%.2f", money.toBigDecimal().doubleValue()),
+					new MessageWriter(16).money(money).toString());
+		}
+		for (long basisPoints : new long[] {0, 4, 5, 15, 25, 449, 450, 2_121, -4, -5, -25, -1_000, 99_999_995L}) {
+			assertEquals(String.format("%.1f", BigDecimal.valueOf(basisPoints, 2)),
+					new MessageWriter(16).percent(basisPoints).toString(), String.valueOf(basisPoints));
+		}
+	}
+
+	@Test
+	void limitsWordsLikeRegexSplit() {
+		for (String text : new String[] {"", " ", "  ", " a", "a ", " a b c", "a\tb\nc", "a b c", "one two"}) {
+			for (int max = 1; max <= 3; max++) {
+				assertEquals(Legacy.limitWords(text, max), Utils.limitWords(text, max), "[" + text + "] " + max);
+			}
+		}
+		for (int run = 0; run < 1000; run++) {
+			String text = name();
+			assertEquals(Legacy.limitWords(text, 2), Utils.limitWords(text, 2), "[" + text + "]");
+		}
+	}
+
+	private String name() {
+		StringBuilder name = new StringBuilder();
+		if (random.nextInt(5) == 0) {
+			name.append(SPACES[random.nextInt(SPACES.length)]);
+		}
+		for (int i = 0, n = 1 + random.nextInt(4); i < n; i++) {
+			if (i > 0) {
+				name.append(SPACES[random.nextInt(SPACES.length)]);
+			}
+			name.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return name.toString();
+	}
+
+	// Значения вокруг границ округления: много пятёрок в младших разрядах
+	private long units() {
+		return switch (random.nextInt(4)) {
+			case 0 -> random.nextInt(1000) * 10L + 5;
+			case 1 -> random.nextInt(100_000_000);
+			case 2 -> -random.nextInt(10_000);
+			default -> random.nextInt(10);
+		};
+	}
+	
+	private Money money() {
+		return Money.ofKopecks(units());
+	}
+	
+	private Quantity quantity() {
+		return Quantity.ofMillis(Math.abs(units()));
+	}
+
+	private TrendDTO trend() {
+		Money change = money();
+		String direction = change.signum() > 0 ? "UP" : change.signum() < 0 ? "DOWN" : "STABLE";
+		return new TrendDTO(change, units(), random.nextInt(1_000), direction);
+	}
+
+	private LocalDate date() {
+		return LocalDate.of(1990 + random.nextInt(40), 1, 1).plusDays(random.nextInt(365));
+	}
+
+	// Реализация до MessageWriter
+	private static final class Legacy {
+
+		static String formatAllProductsStats(List<ProductStatsDTO> stats) {
+			StringBuilder result = new StringBuilder();
+			result.append("📊 ОБЩАЯ СТАТИСТИКА ПО ВСЕМ ПРОДУКТАМ:\n\n");
+			appendProducts(result, stats, 1);
+			return result.toString();
+		}
+
+		static String formatStatsPage(StatsPageDTO page) {
+			StringBuilder result = new StringBuilder();
+			result.append(String.format("📊 ОБЩАЯ СТАТИСТИКА ПО ВСЕМ ПРОДУКТАМ (стр. %d):\n\n", page.page()));
+			appendProducts(result, page.items(), (page.page() - 1) * page.pageSize() + 1);
+			return result.toString();
+		}
+
+		private static void appendProducts(StringBuilder result, List<ProductStatsDTO> stats, int rank) {
+			for (ProductStatsDTO stat : stats) {
+				String quantityText = stat.isWeightProduct()
+						? String.format("%.3f кг", stat.totalQuantity().toBigDecimal().doubleValue())
+						: String.format("%.0f шт.", stat.totalQuantity().toBigDecimal().doubleValue());
+				result.append(String.format("%d.  →  %.2f ₽    (%s)\n",
+						rank, stat.totalAmount().toBigDecimal().doubleValue(), quantityText));
+				result.append(String.format("   %s\n\n", stat.productName()));
+				rank++;
+			}
+		}
+
+		static String formatProductDetailStats(ProductDetailStatsDTO stats) {
+			StringBuilder result = new StringBuilder();
+			result.append(String.format("📊 СТАТИСТИКА: %s\n\n", stats.productName().toUpperCase()));
+			result.append("💰 Диапазон цен: ");
+			result.append(String.format("%.2f - %.2f руб.\n",
+					stats.minPrice().toBigDecimal().doubleValue(), stats.maxPrice().toBigDecimal().doubleValue()));
+			result.append(String.format("   • Средняя: %.2f руб.\n", stats.averagePrice().toBigDecimal().doubleValue()));
+			result.append(String.format("   • Разброс: %.2f руб.\n\n", stats.priceSpread().toBigDecimal().doubleValue()));
+			result.append(" Общий тренд:\n");
+			result.append(formatTrend(stats.trend()) + "\n");
+			result.append(String.format("   • Количество записей: %d\n", stats.recordCount()));
+			result.append(String.format("   • Период наблюдений: %s - %s\n\n",
+					stats.firstDate(), stats.lastDate()));
+			result.append("🔄 Последние изменения цен:\n");
+			int displayCount = Math.min(stats.priceHistory().size(), 5);
+			List<PriceHistoryDTO> recentPrices = stats.priceHistory().subList(
+					stats.priceHistory().size() - displayCount, stats.priceHistory().size());
+			for (PriceHistoryDTO price : recentPrices) {
+				result.append(String.format("   • %s: %.2f руб. %s\n",
+						price.date(), price.price().toBigDecimal(), priceChange(price.change(), price.changeBasisPoints())));
+			}
+			return result.toString();
+		}
+
+		static String formatMonthlySpending(List<MonthlySpendingDTO> months) {
+			StringBuilder result = new StringBuilder();
+			result.append("📅 ТРАТЫ ПО МЕСЯЦАМ:\n\n");
+			for (MonthlySpendingDTO month : months) {
+				result.append(String.format("   • %02d.%04d: %.2f ₽ %s\n", month.month().getMonthValue(), month.month().getYear(),
+						month.totalAmount().toBigDecimal(), priceChange(month.change(), month.changeBasisPoints())));
+			}
+			return result.toString();
+		}
+
+		// Прежние DatabaseService.formatTrend и calculatePriceChange
+		static String formatTrend(TrendDTO trend) {
+			BigDecimal percent = BigDecimal.valueOf(trend.changeBasisPoints(), 2);
+			return switch (trend.direction()) {
+				case "UP" -> String.format("📈 Рост +%.2f руб. (+%.1f%%) за %d дней",
+						trend.changeAmount().toBigDecimal(), percent, trend.daysBetween());
+				case "DOWN" -> String.format("📉 Снижение %.2f руб. (%.1f%%) за %d дней",
+						trend.changeAmount().toBigDecimal(), percent, trend.daysBetween());
+				default -> "➡️ Цена стабильна";
+			};
+		}
+
+		static String priceChange(Money change, long basisPoints) {
+			if (change == null) return "";
+			BigDecimal percent = BigDecimal.valueOf(basisPoints, 2);
+			if (change.signum() > 0) {
+				return String.format("( ↑ +%.1f%%)", percent);
+			} else if (change.signum() < 0) {
+				return String.format("( ↓ %.1f%%)", percent);
+			} else {
+				return "(→ 0%)";
+			}
+		}
+
+		static String formatProducts(List<Product> products) {
+			StringBuilder sb = new StringBuilder();
+			sb.append("✅ Чек успешно обработан и сохранен!\n\n");
+			sb.append("📦 Купленные продукты:\n");
+			for (Product p : products) {
+				sb.append("• ");
+				sb.append(productToString(p));
+				sb.append("\n");
+			}
+			sb.append("\n💾 Данные сохранены в базу для статистики.");
+			return sb.toString();
+		}
+
+		static String productToString(Product p) {
+			String formattedDate = p.getDate().format(DateTimeFormatter.ofPattern("dd-MM-yyyy"));
+			String limitedName = limitWords(p.getName(), 2);
+			String formattedQuantity = p.getIsWeightProduct() ? "кг." : "шт.";
+			String quantityValue = p.isWeightProduct()
+					? String.format("%.3f", p.getQuantity().toBigDecimal().doubleValue())
+					: String.valueOf(p.getQuantity().toBigDecimal().intValue());
+			return String.format("%s: %s %s х %.2f руб = %.2f руб, дата: %s",
+					limitedName, quantityValue, formattedQuantity,
+					p.getPricePerUnit().toBigDecimal().doubleValue(), p.getTotalPrice().toBigDecimal().doubleValue(), formattedDate);
+		}
+
+		static String limitWords(String text, int maxWords) {
+			String[] words = text.split("\\s+");
+			if (words.length <= maxWords) {
+				return text;
+			}
+			StringBuilder result = new StringBuilder();
+			for (int i = 0; i < maxWords; i++) {
+				if (i > 0) result.append(" ");
+				result.append(words[i]);
+			}
+			return result.toString();
+		}
+	}
+}
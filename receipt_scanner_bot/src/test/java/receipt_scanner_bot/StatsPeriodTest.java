@@ -0,0 +1,42 @@
+package receipt_scanner_bot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+
+class StatsPeriodTest {
+	
+	// Четверг
+	private static final LocalDate TODAY = LocalDate.of(2024, 3, 14);
+
+	@Test
+	void parsesNamedPeriods() {
+		assertEquals(new StatsPeriod(LocalDate.of(2024, 3, 11), TODAY), StatsPeriod.parse("Неделя", TODAY).orElseThrow());
+		assertEquals(new StatsPeriod(LocalDate.of(2024, 3, 1), TODAY), StatsPeriod.parse(" месяц ", TODAY).orElseThrow());
+		assertEquals(new StatsPeriod(LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 29)),
+				StatsPeriod.parse("прошлый месяц", TODAY).orElseThrow());
+	}
+
+	@Test
+	void parsesDatesAndMonths() {
+		assertEquals(new StatsPeriod(LocalDate.of(2024, 1, 25), LocalDate.of(2024, 3, 5)),
+				StatsPeriod.parse("25.01.2024 - 05.03.2024", TODAY).orElseThrow());
+		assertEquals(new StatsPeriod(LocalDate.of(2023, 12, 1), LocalDate.of(2023, 12, 31)),
+				StatsPeriod.parse("12.2023", TODAY).orElseThrow());
+		assertEquals(new StatsPeriod(LocalDate.of(2024, 2, 29), LocalDate.of(2024, 2, 29)),
+				StatsPeriod.parse("29.02.2024", TODAY).orElseThrow());
+	}
+
+	@Test
+	void rejectsBrokenInput() {
+		assertTrue(StatsPeriod.parse(null, TODAY).isEmpty());
+		assertTrue(StatsPeriod.parse("вчера", TODAY).isEmpty());
+		assertTrue(StatsPeriod.parse("30.02.2024", TODAY).isEmpty());
+		assertTrue(StatsPeriod.parse("05.03.2024-25.01.2024", TODAY).isEmpty());
+		assertTrue(StatsPeriod.parse("01.01.12345", TODAY).isEmpty());
+		assertTrue(StatsPeriod.parse("13.2024", TODAY).isEmpty());
+	}
+}
@@ -0,0 +1,32 @@
+package receipt_scanner_bot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class TokenBucketTest {
+
+	@Test
+	void allowsBurstThenRefillsAtRate() {
+		AtomicLong now = new AtomicLong();
+		TokenBucket bucket = new TokenBucket(3, 2, now::get);
+
+		assertEquals(0, bucket.tryAcquire());
+		assertEquals(0, bucket.tryAcquire());
+		assertEquals(0, bucket.tryAcquire());
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(500), bucket.tryAcquire());
+
+		now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+		assertEquals(0, bucket.tryAcquire());
+
+		// Простой не копит токенов больше ёмкости
+		now.addAndGet(TimeUnit.SECONDS.toNanos(60));
+		for (int i = 0; i < 3; i++) {
+			assertEquals(0, bucket.tryAcquire());
+		}
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(500), bucket.tryAcquire());
+	}
+}
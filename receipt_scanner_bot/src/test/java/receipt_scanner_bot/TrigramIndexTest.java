@@ -0,0 +1,52 @@
+package receipt_scanner_bot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TrigramIndexTest {
+	
+	private final TrigramIndex index = new TrigramIndex(List.of(
+			"Молоко ПРОСТОКВАШИНО паст. 3,2% 930мл",
+			"Молоко ДОМИК В ДЕРЕВНЕ у/паст. 2,5% 1,4л",
+			"Коктейль молочный ЧУДО шоколад 2%",
+			"Хлеб Бородинский нарезка 350г",
+			"Зелёный чай GREENFIELD 100пак"));
+
+	@Test
+	void findsNoisyNamesByPartialQuery() {
+		List<TrigramIndex.Match> matches = index.search("молоко простоквашино", 3);
+		
+		assertEquals("Молоко ПРОСТОКВАШИНО паст. 3,2% 930мл", matches.get(0).name());
+		assertEquals(1.0, matches.get(0).score());
+	}
+	
+	@Test
+	void toleratesTyposAndYo() {
+		assertEquals("Хлеб Бородинский нарезка 350г", index.search("хлеб бородинскй", 1).get(0).name());
+		assertEquals("Зелёный чай GREENFIELD 100пак", index.search("зеленый чай", 1).get(0).name());
+	}
+	
+	@Test
+	void ranksByOverlapThenLength() {
+		List<TrigramIndex.Match> matches = index.search("молоко", 5);
+		
+		assertEquals(3, matches.size());
+		assertEquals("Молоко ПРОСТОКВАШИНО паст. 3,2% 930мл", matches.get(0).name());
+		assertEquals("Молоко ДОМИК В ДЕРЕВНЕ у/паст. 2,5% 1,4л", matches.get(1).name());
+		assertEquals("Коктейль молочный ЧУДО шоколад 2%", matches.get(2).name());
+	}
+	
+	@Test
+	void addsNamesIncrementally() {
+		assertTrue(index.search("сыр российский", 5).isEmpty());
+		
+		index.addAll(List.of("Сыр РОССИЙСКИЙ 50%", "Хлеб Бородинский нарезка 350г"));
+		
+		assertEquals(6, index.size());
+		assertEquals("Сыр РОССИЙСКИЙ 50%", index.search("сыр российский", 5).get(0).name());
+	}
+}
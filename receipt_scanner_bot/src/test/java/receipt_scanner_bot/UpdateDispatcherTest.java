@@ -0,0 +1,81 @@
+package receipt_scanner_bot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class UpdateDispatcherTest {
+	
+	private final UpdateDispatcher dispatcher = new UpdateDispatcher(8);
+	
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		dispatcher.shutdown();
+	}
+
+	@Test
+	void keepsOrderWithinChat() throws InterruptedException {
+		int chats = 20;
+		int updatesPerChat = 200;
+		Map<Long, List<Integer>> seen = new ConcurrentHashMap<>();
+		CountDownLatch done = new CountDownLatch(chats * updatesPerChat);
+		
+		for (int i = 0; i < updatesPerChat; i++) {
+			for (long chatId = 0; chatId < chats; chatId++) {
+				int seq = i;
+				long id = chatId;
+				dispatcher.dispatch(id, () -> {
+					seen.computeIfAbsent(id, k -> Collections.synchronizedList(new ArrayList<>())).add(seq);
+					done.countDown();
+				});
+			}
+		}
+		
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		for (List<Integer> order : seen.values()) {
+			for (int i = 0; i < updatesPerChat; i++) {
+				assertEquals(i, order.get(i));
+			}
+		}
+	}
+	
+	@Test
+	void keepsProcessingChatAfterError() throws InterruptedException {
+		CountDownLatch next = new CountDownLatch(1);
+		
+		dispatcher.dispatch(3L, () -> {
+			throw new OutOfMemoryError("test");
+		});
+		dispatcher.dispatch(3L, next::countDown);
+		
+		assertTrue(next.await(5, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	void slowChatDoesNotBlockOthers() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch fastDone = new CountDownLatch(1);
+		
+		dispatcher.dispatch(1L, () -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		dispatcher.dispatch(2L, fastDone::countDown);
+		
+		assertTrue(fastDone.await(5, TimeUnit.SECONDS));
+		release.countDown();
+	}
+}
@@ -0,0 +1,134 @@
+package receipt_scanner_bot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalManagementPort;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+// Записанные апдейты отправляются на webhook, Bot API подменён MockWebServer
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+		properties = {"bot.mode=webhook", "bot.webhook.secret=test-secret", "bot.token=TEST"})
+@ActiveProfiles("h2")
+@AutoConfigureObservability
+class WebhookControllerTest {
+	
+	private static final MockWebServer telegram = new MockWebServer();
+	
+	@Autowired
+	private TestRestTemplate rest;
+	
+	@LocalManagementPort
+	private int managementPort;
+	
+	@DynamicPropertySource
+	static void telegramApi(DynamicPropertyRegistry registry) {
+		registry.add("bot.api-url", () -> telegram.url("/bot").toString());
+	}
+	
+	@AfterAll
+	static void stopTelegram() throws IOException {
+		telegram.shutdown();
+	}
+
+	@Test
+	void acceptsUpdateAndRepliesThroughBotApi() throws Exception {
+		telegram.enqueue(new MockResponse()
+				.setHeader("Content-Type", "application/json")
+				.setBody("{\"ok\":true,\"result\":{\"message_id\":18,\"date\":1710150001,"
+						+ "\"chat\":{\"id\":42,\"type\":\"private\"},\"text\":\"ok\"}}"));
+		
+		ResponseEntity<Void> response = post("updates/start.json", "test-secret");
+		
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		RecordedRequest sent = telegram.takeRequest(5, TimeUnit.SECONDS);
+		assertNotNull(sent);
+		assertEquals("/botTEST/sendmessage", sent.getPath());
+		String body = sent.getBody().readUtf8();
+		assertTrue(body.contains("\"chat_id\":\"42\""), body);
+		assertTrue(body.contains("Добро пожаловать, Анна!"), body);
+	}
+	
+	@Test
+	void answersPageButtonAndEditsMessage() throws Exception {
+		for (int i = 0; i < 2; i++) {
+			telegram.enqueue(new MockResponse()
+					.setHeader("Content-Type", "application/json")
+					.setBody("{\"ok\":true,\"result\":true}"));
+		}
+		
+		assertEquals(HttpStatus.OK, post("updates/stats_next.json", "test-secret").getStatusCode());
+		
+		Set<String> paths = new HashSet<>();
+		for (int i = 0; i < 2; i++) {
+			RecordedRequest sent = telegram.takeRequest(5, TimeUnit.SECONDS);
+			assertNotNull(sent);
+			paths.add(sent.getPath());
+			if (sent.getPath().endsWith("/editmessagetext")) {
+				String body = sent.getBody().readUtf8();
+				assertTrue(body.contains("\"message_id\":18"), body);
+				assertTrue(body.contains("На этой странице больше нет продуктов"), body);
+			}
+		}
+		assertEquals(Set.of("/botTEST/answercallbackquery", "/botTEST/editmessagetext"), paths);
+	}
+	
+	@Test
+	void exposesStageHistogramsForPrometheus() throws Exception {
+		telegram.enqueue(new MockResponse()
+				.setHeader("Content-Type", "application/json")
+				.setBody("{\"ok\":true,\"result\":{\"message_id\":19,\"date\":1710150001,"
+						+ "\"chat\":{\"id\":42,\"type\":\"private\"},\"text\":\"ok\"}}"));
+		assertEquals(HttpStatus.OK, post("updates/start.json", "test-secret").getStatusCode());
+		assertNotNull(telegram.takeRequest(5, TimeUnit.SECONDS));
+		
+		String metrics = rest.getForObject("http://localhost:" + managementPort + "/actuator/prometheus", String.class);
+		
+		assertTrue(metrics.contains("bot_updates_seconds_bucket{application=\"receipt-scanner-bot\",command=\"start\""), metrics);
+		assertTrue(metrics.contains("bot_dispatcher_queued"), metrics);
+	}
+	
+	@Test
+	void rejectsWrongSecret() throws Exception {
+		int before = telegram.getRequestCount();
+		
+		assertEquals(HttpStatus.UNAUTHORIZED, post("updates/start.json", "wrong").getStatusCode());
+		assertEquals(HttpStatus.UNAUTHORIZED, post("updates/start.json", null).getStatusCode());
+		assertEquals(before, telegram.getRequestCount());
+	}
+	
+	private ResponseEntity<Void> post(String recordedUpdate, String secret) throws IOException {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		if (secret != null) {
+			headers.set(WebhookController.SECRET_HEADER, secret);
+		}
+		String json = new ClassPathResource(recordedUpdate).getContentAsString(StandardCharsets.UTF_8);
+		return rest.postForEntity("/telegram/webhook", new HttpEntity<>(json, headers), Void.class);
+	}
+}